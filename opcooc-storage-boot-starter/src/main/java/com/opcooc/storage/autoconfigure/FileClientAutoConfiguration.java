@@ -17,6 +17,7 @@
 package com.opcooc.storage.autoconfigure;
 
 
+import com.opcooc.storage.ReactiveStorageClient;
 import com.opcooc.storage.StorageClient;
 import com.opcooc.storage.aop.StorageAnnotationAdvisor;
 import com.opcooc.storage.aop.StorageAnnotationInterceptor;
@@ -27,9 +28,11 @@ import com.opcooc.storage.processor.StorageSessionProcessor;
 import com.opcooc.storage.processor.StorageSpelExpressionProcessor;
 import com.opcooc.storage.provider.ClientSourceProvider;
 import com.opcooc.storage.provider.YmlClientSourceProvider;
+import com.opcooc.storage.utils.StorageExecutors;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -38,6 +41,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Role;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author shenqicheng
@@ -66,9 +70,21 @@ public class FileClientAutoConfiguration {
         StorageClient clientSource = new StorageClient();
         clientSource.setPrimary(properties.getPrimary());
         clientSource.setClientProvider(clientSourceProvider);
+        clientSource.setAsyncExecutor(asyncExecutor(properties.getAsync()));
         return clientSource;
     }
 
+    private ExecutorService asyncExecutor(FileClientProperties.AsyncProperty async) {
+        if (async.isVirtualThreads()) {
+            if (StorageExecutors.isVirtualThreadSupported()) {
+                return StorageExecutors.newVirtualThreadPerTaskExecutor();
+            }
+            log.warn("opcooc-storage - virtual threads are not supported by the current JDK, fall back to thread pool");
+        }
+        int threads = async.getThreads() == null ? Math.max(4, Runtime.getRuntime().availableProcessors() * 2) : async.getThreads();
+        return StorageExecutors.newBoundedThreadPool("opcooc-storage-async", threads, async.getQueueCapacity());
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public StorageProcessorManager storageProcessorManager() {
@@ -90,4 +106,15 @@ public class FileClientAutoConfiguration {
         return advisor;
     }
 
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Flux")
+    static class ReactiveStorageClientConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ReactiveStorageClient reactiveStorageClient(StorageClient storageClient) {
+            return new ReactiveStorageClient(storageClient);
+        }
+    }
+
 }
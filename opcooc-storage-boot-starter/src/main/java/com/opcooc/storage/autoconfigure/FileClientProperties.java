@@ -63,6 +63,11 @@ public class FileClientProperties {
      */
     private Integer order = Ordered.HIGHEST_PRECEDENCE;
 
+    /**
+     * 异步客户端配置
+     */
+    private AsyncProperty async = new AsyncProperty();
+
     @Getter
     @Setter
     public static class ExtendRequestProperty extends StorageProperty {
@@ -72,4 +77,23 @@ public class FileClientProperties {
         private Class<? extends FileClient> client;
     }
 
+    @Getter
+    @Setter
+    public static class AsyncProperty {
+        /**
+         * 线程数, 为空时为 CPU 核数的2倍(最少4个)
+         */
+        private Integer threads;
+
+        /**
+         * 等待队列容量, 队列满时提交的任务以异常完成
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * 是否使用虚拟线程(需要 JDK 21+, 不支持时回退到线程池)
+         */
+        private boolean virtualThreads = false;
+    }
+
 }
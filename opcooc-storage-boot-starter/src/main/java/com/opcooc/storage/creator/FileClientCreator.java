@@ -61,6 +61,34 @@ public class FileClientCreator {
         }
     }
 
+    /**
+     * 按配置为 client 添加装饰, 由内到外依次为 本地磁盘缓存、并发读取合并、元数据缓存
+     *
+     * @param name     client 名称
+     * @param client   client
+     * @param property 配置
+     * @return 装饰后的 client
+     */
+    public static FileClient decorate(String name, FileClient client, StorageProperty property) {
+        if (client == null) {
+            return null;
+        }
+        FileClient decorated = client;
+        if (property.getLocalCache() != null && property.getLocalCache().isEnabled()) {
+            decorated = new LocalCacheFileClient(decorated, property.getLocalCache(), name);
+            log.debug("opcooc-storage - client [{}] local cache enabled", name);
+        }
+        if (property.getSingleFlight() != null && property.getSingleFlight().isEnabled()) {
+            decorated = new SingleFlightFileClient(decorated, property.getSingleFlight());
+            log.debug("opcooc-storage - client [{}] single-flight enabled", name);
+        }
+        if (property.getMetadataCache() != null && property.getMetadataCache().isEnabled()) {
+            decorated = new MetadataCacheFileClient(decorated, property.getMetadataCache());
+            log.debug("opcooc-storage - client [{}] metadata cache enabled", name);
+        }
+        return decorated;
+    }
+
     public static FileClient getExtendClient(FileClientProperties.ExtendRequestProperty property) {
         // 反射获取 Request 对象，所以必须实现 1 个参数的构造方法
         try {
@@ -37,7 +37,7 @@ public abstract class AbstractClientSourceProvider implements ClientSourceProvid
         Map<String, FileClient> map = new HashMap<>(clientSourceMap.size());
         for (Map.Entry<String, StorageProperty> item : clientSourceMap.entrySet()) {
             String key = item.getKey().toUpperCase();
-            FileClient client = FileClientCreator.getClient(key, item.getValue());
+            FileClient client = FileClientCreator.decorate(key, FileClientCreator.getClient(key, item.getValue()), item.getValue());
             if (client != null) {
                 map.put(key, client);
             }
@@ -52,7 +52,7 @@ public abstract class AbstractClientSourceProvider implements ClientSourceProvid
         Map<String, FileClient> map = new HashMap<>(clientSourceMap.size());
         for (Map.Entry<String, FileClientProperties.ExtendRequestProperty> item : clientSourceMap.entrySet()) {
             String key = item.getKey().toUpperCase();
-            FileClient client = FileClientCreator.getExtendClient(item.getValue());
+            FileClient client = FileClientCreator.decorate(key, FileClientCreator.getExtendClient(item.getValue()), item.getValue());
             if (client != null) {
                 map.put(key, client);
             }
@@ -0,0 +1,390 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage;
+
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.opcooc.storage.client.AbstractS3Client;
+import com.opcooc.storage.client.DelegatingFileClient;
+import com.opcooc.storage.client.FileClient;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.MigrationOptions;
+import com.opcooc.storage.config.MigrationResult;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.StorageExecutors;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 跨 client 迁移引擎
+ * <p>
+ * 按 key 升序列举源对象, 多个对象并发从源 client 流式读取后直接上传到目标 client, 不落地临时文件, 也不经过本地缓存等装饰器;
+ * 对象按已知长度上传, 大对象按顺序分片上传, 源对象的内容类型及用户元数据等随对象复制; 目标对象已存在且大小(及 ETag)一致时跳过.
+ * 检查点记录按列举顺序已连续完成的最后一个 key, 出现失败后检查点不再前进, 再次执行时从失败处继续, 已完成的对象会被跳过
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class ObjectMigrator {
+
+    /**
+     * 检查点写入的最小间隔(毫秒)
+     */
+    private static final long CHECKPOINT_INTERVAL = 1000L;
+
+    private final String srcSource;
+
+    private final FileClient source;
+
+    private final String srcBucketName;
+
+    private final String prefix;
+
+    private final String dstSource;
+
+    private final FileClient target;
+
+    private final String dstBucketName;
+
+    private final MigrationOptions options;
+
+    private final Path checkpointFile;
+
+    private final LongAdder migrated = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder totalBytes = new LongAdder();
+
+    private final Map<String, Exception> failed = new ConcurrentHashMap<>();
+
+    /**
+     * 按列举顺序进行中的对象, 用于推进检查点, 由 this 保护
+     */
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+
+    private String lastKey;
+
+    private boolean blocked;
+
+    private long lastSaved;
+
+    ObjectMigrator(String srcSource, FileClient source, String srcBucketName, String prefix,
+                   String dstSource, FileClient target, String dstBucketName, MigrationOptions options) {
+        this.srcSource = srcSource;
+        this.source = source;
+        this.srcBucketName = srcBucketName;
+        this.prefix = prefix == null ? "" : prefix;
+        this.dstSource = dstSource;
+        this.target = target;
+        this.dstBucketName = dstBucketName;
+        this.options = options;
+        this.checkpointFile = options.getCheckpointFile() == null ? null : Paths.get(options.getCheckpointFile());
+    }
+
+    MigrationResult migrate() {
+        long start = System.currentTimeMillis();
+        lastKey = loadCheckpoint();
+        log.info("opcooc-storage - migrate [{}:{}/{}] to [{}:{}], start after: [{}]",
+                srcSource, srcBucketName, prefix, dstSource, dstBucketName, lastKey);
+
+        int concurrency = Math.max(1, options.getConcurrency());
+        // 限制已提交未完成的对象数, 列举不会领先迁移太多
+        Semaphore permits = new Semaphore(concurrency * 2);
+        ExecutorService executor = StorageExecutors.newFixedThreadPool("opcooc-storage-migrate", concurrency);
+        try (Stream<FileBasicInfo> objects = source.streamObjects(srcBucketName, prefix, true, lastKey)) {
+            Iterator<FileBasicInfo> iterator = objects.iterator();
+            while (iterator.hasNext()) {
+                FileBasicInfo info = iterator.next();
+                if (info.isFolder()) {
+                    continue;
+                }
+                permits.acquire();
+                Task task = begin(info.getKey());
+                try {
+                    executor.execute(() -> {
+                        try {
+                            migrateObject(info);
+                            complete(task, true);
+                        } catch (Exception e) {
+                            log.warn("opcooc-storage - migrate [{}] failed", info.getKey(), e);
+                            failed.put(info.getKey(), e);
+                            complete(task, false);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } finally {
+            awaitTermination(executor);
+            synchronized (this) {
+                saveCheckpoint();
+            }
+        }
+
+        MigrationResult result = new MigrationResult();
+        result.setMigratedCount(migrated.sum());
+        result.setSkippedCount(skipped.sum());
+        result.setTotalBytes(totalBytes.sum());
+        result.getFailed().putAll(failed);
+        result.setLastKey(lastKey);
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        log.info("opcooc-storage - migrate [{}:{}/{}] to [{}:{}] finished, migrated: [{}], skipped: [{}], failed: [{}], bytes: [{}]",
+                srcSource, srcBucketName, prefix, dstSource, dstBucketName,
+                result.getMigratedCount(), result.getSkippedCount(), failed.size(), result.getTotalBytes());
+        return result;
+    }
+
+    private void migrateObject(FileBasicInfo info) {
+        String objectName = info.getKey();
+        if (matches(info)) {
+            log.debug("opcooc-storage - migrate [{}] skipped, target already matches", objectName);
+            skipped.increment();
+            return;
+        }
+        try {
+            copy(objectName);
+        } finally {
+            // 绕过了目标 client 的装饰器直接写入, 需使其缓存失效
+            if (target instanceof DelegatingFileClient) {
+                ((DelegatingFileClient) target).invalidate(dstBucketName, objectName);
+            }
+        }
+        migrated.increment();
+        totalBytes.add(info.getSize() == null ? 0 : info.getSize());
+        log.debug("opcooc-storage - migrate [{}] success, size: [{}]", objectName, info.getSize());
+    }
+
+    /**
+     * 读写均使用最内层的 client, 迁移的数据不进入本地缓存; 两端均为 S3 client 时按已知长度上传并复制源对象元数据
+     */
+    private void copy(String objectName) {
+        FileClient from = DelegatingFileClient.unwrap(source);
+        FileClient to = DelegatingFileClient.unwrap(target);
+        if (from instanceof AbstractS3Client && to instanceof AbstractS3Client) {
+            ((AbstractS3Client) to).transferFrom((AbstractS3Client) from, srcBucketName, objectName, dstBucketName, objectName);
+            return;
+        }
+        InputStream input = from.getStreamObject(srcBucketName, objectName);
+        try {
+            to.uploadObject(dstBucketName, objectName, input);
+        } catch (RuntimeException e) {
+            //上传失败时直接断开源连接, 避免关闭时读完剩余内容
+            if (input instanceof S3ObjectInputStream) {
+                ((S3ObjectInputStream) input).abort();
+            }
+            throw e;
+        } finally {
+            try {
+                input.close();
+            } catch (IOException e) {
+                log.debug("opcooc-storage - close source stream [{}] failed: {}", objectName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 目标对象是否已存在且与源对象一致
+     */
+    private boolean matches(FileBasicInfo info) {
+        FileBasicInfo existing;
+        try {
+            existing = target.getObjectMetadata(dstBucketName, info.getKey());
+        } catch (ObjectNotFoundException e) {
+            return false;
+        }
+        if (!Objects.equals(existing.getSize(), info.getSize())) {
+            return false;
+        }
+        if (!options.isCompareEtag()) {
+            return true;
+        }
+        String srcEtag = normalize(info.getEtag());
+        String dstEtag = normalize(existing.getEtag());
+        // 分片上传的 ETag 与分片大小相关, 不同 client 之间不可比较, 只比较大小
+        if (srcEtag == null || dstEtag == null || srcEtag.contains("-") || dstEtag.contains("-")) {
+            return true;
+        }
+        return srcEtag.equalsIgnoreCase(dstEtag);
+    }
+
+    private static String normalize(String etag) {
+        if (etag == null || etag.isEmpty()) {
+            return null;
+        }
+        return etag.startsWith("\"") && etag.endsWith("\"") && etag.length() > 1 ? etag.substring(1, etag.length() - 1) : etag;
+    }
+
+    //--------------------------------------checkpoint start--------------------------------------
+
+    private synchronized Task begin(String objectName) {
+        Task task = new Task(objectName);
+        if (!blocked) {
+            pending.add(task);
+        }
+        return task;
+    }
+
+    /**
+     * 标记对象完成, 按列举顺序推进检查点; 出现失败后检查点停在失败对象之前
+     */
+    private synchronized void complete(Task task, boolean success) {
+        if (blocked) {
+            return;
+        }
+        task.done = true;
+        task.success = success;
+        boolean advanced = false;
+        while (!pending.isEmpty() && pending.peek().done) {
+            Task head = pending.poll();
+            if (!head.success) {
+                blocked = true;
+                pending.clear();
+                break;
+            }
+            lastKey = head.objectName;
+            advanced = true;
+        }
+        long now = System.currentTimeMillis();
+        if (advanced && now - lastSaved >= CHECKPOINT_INTERVAL) {
+            saveCheckpoint();
+            lastSaved = now;
+        }
+    }
+
+    private String loadCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(checkpointFile)) {
+            properties.load(input);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+        Properties expected = identity();
+        for (String name : expected.stringPropertyNames()) {
+            if (!expected.getProperty(name).equals(properties.getProperty(name))) {
+                throw new StorageException("checkpoint file [%s] belongs to another migration, [%s] is [%s], expected [%s]",
+                        checkpointFile, name, properties.getProperty(name), expected.getProperty(name));
+            }
+        }
+        return properties.getProperty("startAfter");
+    }
+
+    /**
+     * 先写临时文件再替换, 避免中断时检查点损坏
+     */
+    private void saveCheckpoint() {
+        if (checkpointFile == null || lastKey == null) {
+            return;
+        }
+        Properties properties = identity();
+        properties.setProperty("startAfter", lastKey);
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            if (checkpointFile.getParent() != null) {
+                Files.createDirectories(checkpointFile.getParent());
+            }
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                properties.store(output, "opcooc-storage migration checkpoint");
+            }
+            try {
+                Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("opcooc-storage - save migration checkpoint [{}] failed", checkpointFile, e);
+        }
+    }
+
+    private Properties identity() {
+        Properties properties = new Properties();
+        properties.setProperty("source", srcSource);
+        properties.setProperty("sourceBucket", srcBucketName);
+        properties.setProperty("prefix", prefix);
+        properties.setProperty("target", dstSource);
+        properties.setProperty("targetBucket", dstBucketName);
+        return properties;
+    }
+
+    //--------------------------------------checkpoint end--------------------------------------
+
+    /**
+     * 等待已提交的对象迁移结束
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // 中断时取消进行中的迁移, 仍等待任务结束后再写检查点
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task {
+
+        private final String objectName;
+
+        private boolean done;
+
+        private boolean success;
+
+        private Task(String objectName) {
+            this.objectName = objectName;
+        }
+    }
+}
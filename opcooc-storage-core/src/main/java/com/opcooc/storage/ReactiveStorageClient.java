@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage;
+
+import com.opcooc.storage.client.FileClient;
+import com.opcooc.storage.client.ReactiveFileClient;
+import com.opcooc.storage.utils.StorageAttributeContextHolder;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 响应式客户端入口, 按 {@link StorageClient} 的路由规则获取 {@link ReactiveFileClient}
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public class ReactiveStorageClient {
+
+    private final StorageClient storageClient;
+
+    private final Scheduler scheduler;
+
+    private final Map<FileClient, ReactiveFileClient> clientMap = new ConcurrentHashMap<>();
+
+    public ReactiveStorageClient(StorageClient storageClient) {
+        this(storageClient, Schedulers.boundedElastic());
+    }
+
+    public ReactiveStorageClient(StorageClient storageClient, Scheduler scheduler) {
+        this.storageClient = storageClient;
+        this.scheduler = scheduler;
+    }
+
+    public ReactiveFileClient op() {
+        return op(StorageAttributeContextHolder.client());
+    }
+
+    public ReactiveFileClient op(String source) {
+        return clientMap.computeIfAbsent(storageClient.getClient(source), this::createClient);
+    }
+
+    private ReactiveFileClient createClient(FileClient client) {
+        // 响应式读写直接使用底层 S3 client, 写入后由装饰器使本地缓存等失效
+        return new ReactiveFileClient(client, scheduler);
+    }
+}
@@ -17,10 +17,15 @@
 package com.opcooc.storage;
 
 import cn.hutool.core.util.StrUtil;
+import com.opcooc.storage.client.AsyncFileClient;
+import com.opcooc.storage.client.DefaultAsyncFileClient;
 import com.opcooc.storage.client.FileClient;
+import com.opcooc.storage.config.MigrationOptions;
+import com.opcooc.storage.config.MigrationResult;
 import com.opcooc.storage.exception.StorageException;
 import com.opcooc.storage.provider.ClientSourceProvider;
 import com.opcooc.storage.utils.StorageAttributeContextHolder;
+import com.opcooc.storage.utils.StorageExecutors;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
@@ -28,6 +33,7 @@ import org.springframework.beans.factory.InitializingBean;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author shenqicheng
@@ -36,6 +42,11 @@ import java.util.Map;
 @Slf4j
 public class StorageClient implements InitializingBean, DisposableBean {
 
+    /**
+     * 默认异步线程池的队列容量
+     */
+    private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1024;
+
     private final Map<String, FileClient> clientMap = new LinkedHashMap<>();
 
     @Setter
@@ -43,6 +54,12 @@ public class StorageClient implements InitializingBean, DisposableBean {
     @Setter
     private ClientSourceProvider clientProvider;
 
+    /**
+     * 异步客户端线程池, 未设置时首次使用创建默认的有界线程池, 随 StorageClient 销毁关闭
+     */
+    @Setter
+    private volatile ExecutorService asyncExecutor;
+
 
     public FileClient op() {
         return getClient(StorageAttributeContextHolder.client());
@@ -52,6 +69,63 @@ public class StorageClient implements InitializingBean, DisposableBean {
         return getClient(source);
     }
 
+    public AsyncFileClient opAsync() {
+        return new DefaultAsyncFileClient(op(), getAsyncExecutor());
+    }
+
+    public AsyncFileClient opAsync(String source) {
+        return new DefaultAsyncFileClient(op(source), getAsyncExecutor());
+    }
+
+    /**
+     * 将源 client 存储桶中指定前缀的所有对象流式迁移到目标 client 的存储桶, 使用默认选项
+     *
+     * @param srcSource     源 client 名称
+     * @param srcBucketName 源存储桶名称
+     * @param prefix        指定前缀
+     * @param dstSource     目标 client 名称
+     * @param dstBucketName 目标存储桶名称
+     * @return 迁移结果
+     */
+    public MigrationResult migrate(String srcSource, String srcBucketName, String prefix, String dstSource, String dstBucketName) {
+        return migrate(srcSource, srcBucketName, prefix, dstSource, dstBucketName, new MigrationOptions());
+    }
+
+    /**
+     * 将源 client 存储桶中指定前缀的所有对象流式迁移到目标 client 的存储桶
+     * <p>
+     * 对象不落地临时文件, 目标已存在且一致的对象跳过; 指定检查点文件时可在中断后继续
+     * </p>
+     *
+     * @param srcSource     源 client 名称
+     * @param srcBucketName 源存储桶名称
+     * @param prefix        指定前缀
+     * @param dstSource     目标 client 名称
+     * @param dstBucketName 目标存储桶名称
+     * @param options       迁移选项
+     * @return 迁移结果
+     */
+    public MigrationResult migrate(String srcSource, String srcBucketName, String prefix, String dstSource, String dstBucketName,
+                                   MigrationOptions options) {
+        FileClient source = getNamedClient(srcSource);
+        FileClient target = getNamedClient(dstSource);
+        if (source == target && srcBucketName.equals(dstBucketName)) {
+            throw new StorageException("migrate source and target could not be the same bucket");
+        }
+        return new ObjectMigrator(srcSource, source, srcBucketName, prefix, dstSource, target, dstBucketName, options).migrate();
+    }
+
+    /**
+     * 按名称获取 client, 不存在时不回退到默认 client
+     */
+    private FileClient getNamedClient(String source) {
+        FileClient client = clientMap.get(source);
+        if (client == null) {
+            throw new StorageException("could not find a client named [%s]", source);
+        }
+        return client;
+    }
+
     public Map<String, FileClient> getCurrentClients() {
         return clientMap;
     }
@@ -125,9 +199,27 @@ public class StorageClient implements InitializingBean, DisposableBean {
             closeClient(item.getValue());
             log.debug("opcooc-storage - the client named [{}] closed success", item.getKey());
         }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
         log.info("opcooc-storage - client all closed success,bye");
     }
 
+    private ExecutorService getAsyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+                    executor = StorageExecutors.newBoundedThreadPool("opcooc-storage-async", threads, DEFAULT_ASYNC_QUEUE_CAPACITY);
+                    asyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     private void closeClient(FileClient client) {
         client.shutdown();
     }
@@ -18,13 +18,24 @@ package com.opcooc.storage.client;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.config.BatchDeleteResult;
+import com.opcooc.storage.config.BatchUploadResult;
+import com.opcooc.storage.config.ListPartitioner;
+import com.opcooc.storage.config.PostPolicyCondition;
 import com.opcooc.storage.config.ResultConverter;
 import com.opcooc.storage.config.StorageProperty;
+import com.opcooc.storage.config.UploadSource;
 import com.opcooc.storage.exception.*;
+import com.opcooc.storage.support.ContentTypeResolver;
+import com.opcooc.storage.support.DefaultContentTypeResolver;
 import com.opcooc.storage.config.ClientSource;
 import com.opcooc.storage.config.FileBasicInfo;
 import com.opcooc.storage.utils.*;
@@ -32,12 +43,24 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.stream.Collectors.toList;
 
@@ -48,7 +71,20 @@ import static java.util.stream.Collectors.toList;
 @Slf4j
 public abstract class AbstractS3Client implements FileClient {
 
-    private static final String ERROR_MESSAGE = "bucketName: [%s], file [%s] does not exist";
+    /**
+     * 单个数组的最大长度
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * 存储桶不存在的错误码
+     */
+    private static final String NO_SUCH_BUCKET = "NoSuchBucket";
+
+    /**
+     * 表单直传的最大文件大小(5GB)
+     */
+    private static final long MAX_POST_SIZE = 5L * 1024 * 1024 * 1024;
 
     /**
      * client
@@ -65,6 +101,46 @@ public abstract class AbstractS3Client implements FileClient {
      */
     protected final ClientSource source;
 
+    /**
+     * Content-Type 解析器
+     */
+    protected final ContentTypeResolver contentTypeResolver;
+
+    /**
+     * 签名URL缓存, 未启用时为空
+     */
+    private final PresignedUrlCache presignedUrlCache;
+
+    /**
+     * 批量签名使用的本地 SigV4 签名器, 首次批量签名时根据 SDK 的签名结果创建
+     */
+    private volatile SigV4Presigner presigner;
+
+    /**
+     * 是否已确定批量签名方式
+     */
+    private volatile boolean presignerResolved;
+
+    /**
+     * 已确认存在的存储桶 key: 存储桶名称 value: 缓存过期时间
+     */
+    private final ConcurrentMap<String, Long> bucketCache = new ConcurrentHashMap<>();
+
+    /**
+     * 分片缓冲区池
+     */
+    private final PartBufferPool partBufferPool;
+
+    /**
+     * 分片传输线程池, 首次使用时创建
+     */
+    private volatile ExecutorService transferExecutor;
+
+    /**
+     * 后台任务线程池(并发列举、批量上传), 首次使用时创建
+     */
+    private volatile ExecutorService workerExecutor;
+
     public AbstractS3Client(StorageProperty config, ClientSource source) {
         this.config = config;
         this.source = source;
@@ -72,6 +148,56 @@ public abstract class AbstractS3Client implements FileClient {
         StorageChecker.checkS3Config(config, source);
         // 初始化client
         this.client = init(config);
+        int partSize = (int) Math.min(Math.max(MultipartUploader.MIN_PART_SIZE, config.getMultipartPartSize()), MAX_ARRAY_SIZE);
+        this.partBufferPool = new PartBufferPool(partSize, config.getMultipartMaxInFlight(), config.getMultipartBufferWaitTimeout());
+        this.contentTypeResolver = config.getContentTypeResolver() == null
+                ? new DefaultContentTypeResolver() : ReflectUtil.newInstance(config.getContentTypeResolver());
+        this.presignedUrlCache = config.getPresignCache() != null && config.getPresignCache().isEnabled()
+                ? new PresignedUrlCache(config.getPresignCache()) : null;
+    }
+
+    /**
+     * 根据配置构建 HTTP 客户端配置, 未配置的项保持 SDK 默认值
+     *
+     * @param config 配置
+     * @return HTTP 客户端配置
+     */
+    protected ClientConfiguration buildClientConfiguration(StorageProperty config) {
+        ClientConfiguration clientConfiguration = new ClientConfiguration();
+        if (config.getMaxConnections() != null) {
+            clientConfiguration.setMaxConnections(config.getMaxConnections());
+        }
+        if (config.getConnectionTtl() != null) {
+            clientConfiguration.setConnectionTTL(config.getConnectionTtl());
+        }
+        if (config.getConnectionTimeout() != null) {
+            clientConfiguration.setConnectionTimeout(config.getConnectionTimeout());
+        }
+        if (config.getSocketTimeout() != null) {
+            clientConfiguration.setSocketTimeout(config.getSocketTimeout());
+        }
+        if (config.getRequestTimeout() != null) {
+            clientConfiguration.setRequestTimeout(config.getRequestTimeout());
+        }
+        if (config.getClientExecutionTimeout() != null) {
+            clientConfiguration.setClientExecutionTimeout(config.getClientExecutionTimeout());
+        }
+        if (config.getConnectionMaxIdleMillis() != null) {
+            clientConfiguration.setConnectionMaxIdleMillis(config.getConnectionMaxIdleMillis());
+        }
+        if (config.getValidateAfterInactivityMillis() != null) {
+            clientConfiguration.setValidateAfterInactivityMillis(config.getValidateAfterInactivityMillis());
+        }
+        if (config.getTcpKeepAlive() != null) {
+            clientConfiguration.setUseTcpKeepAlive(config.getTcpKeepAlive());
+        }
+        if (config.getMaxErrorRetry() != null) {
+            clientConfiguration.setMaxErrorRetry(config.getMaxErrorRetry());
+        }
+        if (config.getUseGzip() != null) {
+            clientConfiguration.setUseGzip(config.getUseGzip());
+        }
+        return clientConfiguration;
     }
 
     /**
@@ -82,6 +208,46 @@ public abstract class AbstractS3Client implements FileClient {
      */
     protected abstract AmazonS3 init(StorageProperty config);
 
+    /**
+     * 获取分片传输线程池
+     *
+     * @return 线程池
+     */
+    protected ExecutorService getTransferExecutor() {
+        ExecutorService executor = transferExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = transferExecutor;
+                if (executor == null) {
+                    executor = StorageExecutors.newFixedThreadPool(
+                            "opcooc-storage-" + source.name().toLowerCase() + "-transfer", config.getTransferConcurrency());
+                    transferExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 获取后台任务线程池, 按需创建线程, 每次调用的并发数由调用方限制.
+     * 与分片传输线程池分开, 任务中等待分片传输完成不会占满传输线程
+     *
+     * @return 线程池
+     */
+    protected ExecutorService getWorkerExecutor() {
+        ExecutorService executor = workerExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = workerExecutor;
+                if (executor == null) {
+                    executor = StorageExecutors.newCachedThreadPool("opcooc-storage-" + source.name().toLowerCase() + "-worker");
+                    workerExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     @Override
     public void createFolder(String bucketName, String path) {
         log.debug("opcooc-storage - bucketName: [{}], create folder path: [{}]", bucketName, path);
@@ -99,7 +265,36 @@ public abstract class AbstractS3Client implements FileClient {
     @Override
     public String getBucketName() {
         String bucket = StorageAttributeContextHolder.bucket();
-        return createBucket(StrUtil.isBlank(bucket) ? config.getBucketName() : bucket);
+        return ensureBucket(StrUtil.isBlank(bucket) ? config.getBucketName() : bucket);
+    }
+
+    /**
+     * 确认存储桶存在(不存在则创建), 结果在 bucketCacheTtl 内缓存
+     * <p>
+     * 同一存储桶的并发调用会等待第一个调用完成, 保证只发起一次检查/创建请求
+     * </p>
+     *
+     * @param bucketName 存储桶名称
+     * @return 存储桶名称
+     */
+    protected String ensureBucket(String bucketName) {
+        long ttl = config.getBucketCacheTtl();
+        if (ttl <= 0) {
+            return createBucket(bucketName);
+        }
+        Long expireAt = bucketCache.get(bucketName);
+        if (expireAt != null && expireAt > System.currentTimeMillis()) {
+            return bucketName;
+        }
+        bucketCache.compute(bucketName, (name, current) -> {
+            long now = System.currentTimeMillis();
+            if (current != null && current > now) {
+                return current;
+            }
+            createBucket(name);
+            return now + ttl;
+        });
+        return bucketName;
     }
 
     @Override
@@ -120,27 +315,93 @@ public abstract class AbstractS3Client implements FileClient {
 
     @Override
     public void deleteBucket(String bucketName) {
+        log.debug("opcooc-storage - delete bucketName: [{}]", bucketName);
         try {
-            ObjectListing objectListing = client.listObjects(bucketName);
-            while (true) {
-                for (S3ObjectSummary s3ObjectSummary : objectListing.getObjectSummaries()) {
-                    client.deleteObject(bucketName, s3ObjectSummary.getKey());
-                    log.debug("opcooc-storage - bucketName: [{}], delete object: [{}] success", bucketName, s3ObjectSummary.getKey());
-                }
+            abortMultipartUploads(bucketName);
 
-                if (objectListing.isTruncated()) {
-                    objectListing = client.listNextBatchOfObjects(objectListing);
-                } else {
-                    break;
+            //列举与批量删除并行: 每页最多1000个key作为一批提交, 列举下一页时上一批在传输线程池中删除
+            BatchDeleter deleter = new BatchDeleter(client, getTransferExecutor(), config.getTransferConcurrency(), false);
+            if (isVersioningEnabled(bucketName)) {
+                VersionListing listing = client.listVersions(new ListVersionsRequest()
+                        .withBucketName(bucketName)
+                        .withMaxResults(BatchDeleter.MAX_BATCH_SIZE));
+                while (true) {
+                    deleter.submit(bucketName, listing.getVersionSummaries().stream()
+                            .map(version -> new DeleteObjectsRequest.KeyVersion(version.getKey(), version.getVersionId()))
+                            .collect(toList()));
+                    if (!listing.isTruncated()) {
+                        break;
+                    }
+                    listing = client.listNextBatchOfVersions(listing);
                 }
+            } else {
+                ListObjectsV2Request req = new ListObjectsV2Request()
+                        .withBucketName(bucketName)
+                        .withMaxKeys(BatchDeleter.MAX_BATCH_SIZE);
+                ListObjectsV2Result result;
+                do {
+                    result = client.listObjectsV2(req);
+                    deleter.submit(bucketName, result.getObjectSummaries().stream()
+                            .map(object -> new DeleteObjectsRequest.KeyVersion(object.getKey()))
+                            .collect(toList()));
+                    req.setContinuationToken(result.getNextContinuationToken());
+                } while (result.isTruncated());
+            }
+
+            BatchDeleteResult result = deleter.await();
+            log.debug("opcooc-storage - bucketName: [{}], delete [{}] objects", bucketName, result.getDeletedCount());
+            if (!result.isSuccess()) {
+                result.getFailed().forEach(failure -> log.warn("opcooc-storage - bucketName: [{}], delete object: [{}], versionId: [{}] failed: [{}] {}",
+                        bucketName, failure.getKey(), failure.getVersionId(), failure.getCode(), failure.getMessage()));
+                BatchDeleteResult.Failure first = result.getFailed().get(0);
+                throw new StorageException("bucketName: [%s], [%s] objects could not be deleted, first failure: [%s] [%s] %s",
+                        bucketName, result.getFailed().size(), first.getKey(), first.getCode(), first.getMessage());
             }
             client.deleteBucket(bucketName);
+        } catch (StorageException e) {
+            throw e;
         } catch (Exception e) {
             throw new StorageException(e);
+        } finally {
+            bucketCache.remove(bucketName);
         }
 
     }
 
+    /**
+     * 判断存储桶是否开启过版本控制(包括已暂停), 不支持版本控制的服务视为未开启
+     */
+    private boolean isVersioningEnabled(String bucketName) {
+        try {
+            String status = client.getBucketVersioningConfiguration(bucketName).getStatus();
+            return !BucketVersioningConfiguration.OFF.equals(status);
+        } catch (Exception e) {
+            log.debug("opcooc-storage - bucketName: [{}], get versioning configuration failed, treat as unversioned", bucketName, e);
+            return false;
+        }
+    }
+
+    /**
+     * 中止存储桶中未完成的分片上传
+     */
+    private void abortMultipartUploads(String bucketName) {
+        try {
+            ListMultipartUploadsRequest req = new ListMultipartUploadsRequest(bucketName);
+            MultipartUploadListing listing;
+            do {
+                listing = client.listMultipartUploads(req);
+                for (MultipartUpload upload : listing.getMultipartUploads()) {
+                    client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, upload.getKey(), upload.getUploadId()));
+                    log.debug("opcooc-storage - bucketName: [{}], abort multipart upload: [{}], key: [{}]", bucketName, upload.getUploadId(), upload.getKey());
+                }
+                req.setKeyMarker(listing.getNextKeyMarker());
+                req.setUploadIdMarker(listing.getNextUploadIdMarker());
+            } while (listing.isTruncated());
+        } catch (Exception e) {
+            log.warn("opcooc-storage - bucketName: [{}], abort multipart uploads failed", bucketName, e);
+        }
+    }
+
     @Override
     public List<String> listBuckets() {
         try {
@@ -168,10 +429,11 @@ public abstract class AbstractS3Client implements FileClient {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
         try {
             ObjectMetadata metadata = new ObjectMetadata();
-            metadata.setContentLength(stream.available());
-            metadata.setContentType(StorageUtil.TIKA.detect(objectName));
-            client.putObject(bucketName, objectName, stream, metadata);
-            return getObjectMetadata(bucketName, objectName);
+            metadata.setContentType(contentTypeResolver.resolve(objectName));
+            //流长度未知, 按分片读取上传, 不足一个分片时直接上传
+            FileBasicInfo info = new MultipartUploader(client, getTransferExecutor(), partBufferPool)
+                    .upload(bucketName, objectName, stream, metadata);
+            return uploadResult(info);
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -181,8 +443,12 @@ public abstract class AbstractS3Client implements FileClient {
     public FileBasicInfo uploadObject(String bucketName, String objectName, File file) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
         try {
-            client.putObject(bucketName, objectName, file);
-            return getObjectMetadata(bucketName, objectName);
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentTypeResolver.resolve(file.getName()));
+            //大文件按分片并发上传
+            FileBasicInfo info = new MultipartUploader(client, getTransferExecutor(), partBufferPool)
+                    .upload(bucketName, objectName, file, metadata, config.getMultipartThreshold());
+            return uploadResult(info);
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -197,14 +463,131 @@ public abstract class AbstractS3Client implements FileClient {
         }
     }
 
+    @Override
+    public BatchUploadResult uploadObjects(String bucketName, Map<String, UploadSource> sources) {
+        return uploadObjects(bucketName, sources, config.getBatchConcurrency());
+    }
+
+    @Override
+    public BatchUploadResult uploadObjects(String bucketName, Map<String, UploadSource> sources, int concurrency) {
+        log.debug("opcooc-storage - bucketName: [{}], objects: [{}], concurrency: [{}]", bucketName, sources.size(), concurrency);
+        return new BatchUploader(this, getWorkerExecutor(), concurrency).upload(bucketName, sources);
+    }
+
+    /**
+     * 上传字节数组, 长度已知, 直接使用 putObject 上传
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param bytes      文件内容
+     * @return 文件上传后的信息
+     */
+    FileBasicInfo uploadBytes(String bucketName, String objectName, byte[] bytes) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], size: [{}]", bucketName, objectName, bytes.length);
+        try {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentTypeResolver.resolve(objectName));
+            metadata.setContentLength(bytes.length);
+            PutObjectResult result = client.putObject(new PutObjectRequest(bucketName, objectName, new ByteArrayInputStream(bytes), metadata));
+            return uploadResult(uploadedInfo(bucketName, objectName, bytes.length, result.getETag(), result.getVersionId()));
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * 上传完成后的文件信息, 开启 uploadFetchMetadata 时以服务端元数据为准
+     *
+     * @param info 由上传响应构建的文件信息
+     * @return 文件信息
+     */
+    protected FileBasicInfo uploadResult(FileBasicInfo info) {
+        if (config.isUploadFetchMetadata()) {
+            return getObjectMetadata(info.getBucketName(), info.getKey());
+        }
+        return info;
+    }
+
+    /**
+     * 由上传响应构建文件信息, 最后修改时间取本地上传完成时间
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param size       文件大小
+     * @param etag       ETag
+     * @param versionId  版本号
+     * @return 文件信息
+     */
+    static FileBasicInfo uploadedInfo(String bucketName, String objectName, long size, String etag, String versionId) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setBucketName(bucketName);
+        info.setKey(objectName);
+        info.setSize(size);
+        info.setEtag(etag);
+        info.setVersionId(versionId);
+        info.setLastModified(new Date());
+        return info;
+    }
+
     @Override
     public void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName) {
+        copyObject(bucketName, objectName, srcBucketName, srcObjectName, -1L);
+    }
+
+    @Override
+    public void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName, long size) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], srcBucketName: [{}], srcObjectName: [{}] copy success",
                 bucketName, objectName, srcBucketName, srcObjectName);
         try {
-            client.copyObject(new CopyObjectRequest(bucketName, objectName, srcBucketName, srcObjectName));
+            //bucketName / objectName 为源对象, srcBucketName / srcObjectName 为目标对象
+            new MultipartCopier(client, getTransferExecutor(), config.getTransferConcurrency())
+                    .copy(bucketName, objectName, srcBucketName, srcObjectName, size, config.getMultipartCopyThreshold(), config.getMultipartCopyPartSize());
+        } catch (Exception e) {
+            throw convertException(e, bucketName, objectName);
+        }
+    }
+
+    /**
+     * 从另一个 client 复制对象, 源对象流式读取后直接上传, 内容类型, 缓存控制及用户元数据等随对象复制.
+     * 长度已知, 小于分片阈值时直接 putObject 上传, 否则按顺序分片上传, 不经过缓冲区池
+     *
+     * @param source        源 client
+     * @param srcBucketName 源存储桶名称
+     * @param srcObjectName 源文件完整路径
+     * @param bucketName    目标存储桶名称
+     * @param objectName    目标文件完整路径
+     * @return 目标文件信息
+     */
+    public FileBasicInfo transferFrom(AbstractS3Client source, String srcBucketName, String srcObjectName,
+                                      String bucketName, String objectName) {
+        log.debug("opcooc-storage - srcBucketName: [{}], srcObjectName: [{}], bucketName: [{}], objectName: [{}]",
+                srcBucketName, srcObjectName, bucketName, objectName);
+        S3Object s3Object;
+        try {
+            s3Object = source.client.getObject(srcBucketName, srcObjectName);
         } catch (Exception e) {
+            throw source.convertException(e, srcBucketName, srcObjectName);
+        }
+        S3ObjectInputStream input = s3Object.getObjectContent();
+        try {
+            ObjectMetadata sourceMetadata = s3Object.getObjectMetadata();
+            ObjectMetadata metadata = MultipartCopier.copyMetadata(sourceMetadata);
+            if (metadata.getContentType() == null) {
+                metadata.setContentType(contentTypeResolver.resolve(objectName));
+            }
+            FileBasicInfo info = new MultipartUploader(client, getTransferExecutor(), partBufferPool)
+                    .upload(bucketName, objectName, input, sourceMetadata.getContentLength(), metadata, config.getMultipartThreshold());
+            return uploadResult(info);
+        } catch (Exception e) {
+            //上传失败时直接断开源连接, 避免关闭时读完剩余内容
+            input.abort();
             throw new StorageException(e);
+        } finally {
+            try {
+                s3Object.close();
+            } catch (IOException e) {
+                log.debug("opcooc-storage - close source object [{}] failed: {}", srcObjectName, e.getMessage());
+            }
         }
     }
 
@@ -220,31 +603,42 @@ public abstract class AbstractS3Client implements FileClient {
     }
 
     private <T> List<T> listConvertObjects(String bucketName, String prefix, boolean recursive, ResultConverter<T> resultConverter) {
-        ListObjectsV2Request req = new ListObjectsV2Request()
-                .withBucketName(bucketName)
-                .withPrefix(prefix)
-                .withMaxKeys(1000);
-
-        ListObjectsV2Result result;
+        log.debug("opcooc-storage - bucketName: [{}], prefix: [{}], recursive: [{}]", bucketName, prefix, recursive);
         List<T> objectList = new ArrayList<>();
-        do {
-            result = client.listObjectsV2(req);
-
-            for (S3ObjectSummary object : result.getObjectSummaries()) {
-                FileBasicInfo info = new FileBasicInfo();
-                info.setKey(object.getKey());
-                info.setSize(object.getSize());
-                info.setBucketName(bucketName);
-                info.setLastModified(object.getLastModified());
-                objectList.add(resultConverter.convert(info));
-            }
-            // If there are more than maxKeys keys in the bucket, get a continuation token
-            // and list the next objects.
-            req.setContinuationToken(result.getNextContinuationToken());
-        } while (result.isTruncated());
+        new ObjectListingIterator(client, bucketName, prefix, recursive, null)
+                .forEachRemaining(info -> objectList.add(resultConverter.convert(info)));
         return objectList;
     }
 
+    @Override
+    public Stream<FileBasicInfo> streamObjects(String bucketName, String prefix, boolean recursive) {
+        log.debug("opcooc-storage - bucketName: [{}], prefix: [{}], recursive: [{}]", bucketName, prefix, recursive);
+        ObjectListingIterator iterator = new ObjectListingIterator(client, bucketName, prefix, recursive, getTransferExecutor());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public Stream<FileBasicInfo> streamObjects(String bucketName, String prefix, boolean recursive, String startAfter) {
+        log.debug("opcooc-storage - bucketName: [{}], prefix: [{}], recursive: [{}], startAfter: [{}]", bucketName, prefix, recursive, startAfter);
+        ObjectListingIterator iterator = new ObjectListingIterator(client, bucketName, prefix, recursive, startAfter, getTransferExecutor());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public <T> Stream<T> streamObjects(String bucketName, String prefix, boolean recursive, ResultConverter<T> resultConverter) {
+        Assert.notNull(resultConverter, "'resultConverter' cannot be null");
+        return streamObjects(bucketName, prefix, recursive).map(resultConverter::convert);
+    }
+
+    @Override
+    public Stream<FileBasicInfo> parallelStreamObjects(String bucketName, String prefix, ListPartitioner partitioner,
+                                                       int concurrency, boolean sorted) {
+        log.debug("opcooc-storage - bucketName: [{}], prefix: [{}], concurrency: [{}], sorted: [{}]", bucketName, prefix, concurrency, sorted);
+        return new ParallelObjectLister(client, bucketName, concurrency, getWorkerExecutor()).stream(prefix, partitioner, sorted);
+    }
+
     @Override
     public FileBasicInfo getObjectMetadata(String bucketName, String objectName) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
@@ -252,16 +646,18 @@ public abstract class AbstractS3Client implements FileClient {
         try {
             ObjectMetadata object = client.getObjectMetadata(bucketName, objectName);
             if (object == null) {
-                throw new StorageException(ERROR_MESSAGE, bucketName, objectName);
+                throw new ObjectNotFoundException(bucketName, objectName);
             }
             info.setKey(objectName);
             info.setSize(object.getContentLength());
             info.setBucketName(bucketName);
             info.setLastModified(object.getLastModified());
+            info.setEtag(object.getETag());
+            info.setVersionId(object.getVersionId());
             log.debug("opcooc-storage - objectMetadata: [{}]", info.toString());
             return info;
         } catch (Exception e) {
-            throw new StorageException(e);
+            throw convertException(e, bucketName, objectName);
         }
     }
 
@@ -276,14 +672,11 @@ public abstract class AbstractS3Client implements FileClient {
     public InputStream getStreamObject(String bucketName, String objectName) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
         try {
-            //判断对象是否存在
-            if (!objectExist(bucketName, objectName)) {
-                throw new StorageException(ERROR_MESSAGE, bucketName, objectName);
-            }
+            //直接发起GET请求, 对象不存在时由404转换为 ObjectNotFoundException
             S3Object s3Object = client.getObject(bucketName, objectName);
             return s3Object.getObjectContent();
         } catch (Exception e) {
-            throw new StorageException(e);
+            throw convertException(e, bucketName, objectName);
         }
     }
 
@@ -301,42 +694,137 @@ public abstract class AbstractS3Client implements FileClient {
     public File getFileObject(String bucketName, String objectName, File file) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
         try {
-            //判断对象是否存在
-            if (!objectExist(bucketName, objectName)) {
-                throw new StorageException(ERROR_MESSAGE, bucketName, objectName);
+            if (config.isRangeDownload()) {
+                return new RangeDownloader(client, getTransferExecutor(), partBufferPool.bufferSize(), config.getRangeDownloadRetries())
+                        .download(bucketName, objectName, file);
             }
             client.getObject(new GetObjectRequest(bucketName, objectName), file);
             return file;
         } catch (Exception e) {
-            throw new StorageException(e);
+            throw convertException(e, bucketName, objectName);
         }
     }
 
+    @Override
+    public long transferObject(String bucketName, String objectName, OutputStream output) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
+        return transferObject(bucketName, objectName,
+                input -> IoUtils.copy(input, output, config.getIoBufferSize()));
+    }
+
+    @Override
+    public long transferObject(String bucketName, String objectName, WritableByteChannel channel) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
+        return transferObject(bucketName, objectName,
+                input -> IoUtils.copy(input, channel, config.getIoBufferSize()));
+    }
+
+    private long transferObject(String bucketName, String objectName, Transfer transfer) {
+        try (S3Object object = client.getObject(bucketName, objectName)) {
+            S3ObjectInputStream input = object.getObjectContent();
+            try {
+                return transfer.apply(input);
+            } catch (Exception e) {
+                //写出失败(如下游断开)时直接断开连接, 避免关闭时读完剩余内容
+                input.abort();
+                throw e;
+            }
+        } catch (Exception e) {
+            throw convertException(e, bucketName, objectName);
+        }
+    }
+
+    /**
+     * 从对象输入流写出到目标
+     */
+    @FunctionalInterface
+    private interface Transfer {
+        long apply(InputStream input) throws IOException;
+    }
+
     @Override
     public String getFilePathObject(String bucketName, String objectName, String filePath) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], filePath: [{}]", bucketName, objectName, filePath);
+        boolean exist = FileUtil.exist(filePath);
         try {
-            //判断对象是否存在
-            if (!objectExist(bucketName, objectName)) {
-                throw new StorageException(ERROR_MESSAGE, bucketName, objectName);
-            }
             getFileObject(bucketName, objectName, FileUtil.touch(filePath));
             return filePath;
         } catch (Exception e) {
-            throw new StorageException(e);
+            //下载失败时清理本次创建的空文件
+            if (!exist) {
+                FileUtil.del(filePath);
+            }
+            throw convertException(e, bucketName, objectName);
         }
     }
 
     @Override
     public byte[] getByteObject(String bucketName, String objectName) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
-        try (InputStream inputStream = getStreamObject(bucketName, objectName)) {
-            return IoUtils.toByteArray(inputStream);
+        try (S3Object object = client.getObject(bucketName, objectName)) {
+            //已知长度时一次分配, 避免 ByteArrayOutputStream 扩容复制
+            Long length = contentLength(object);
+            if (length != null && length <= MAX_ARRAY_SIZE) {
+                return IoUtils.toByteArray(object.getObjectContent(), length.intValue());
+            }
+            return IoUtils.toByteArray(object.getObjectContent());
         } catch (Exception e) {
-            throw new StorageException(e);
+            throw convertException(e, bucketName, objectName);
+        }
+    }
+
+    @Override
+    public ByteBuffer getByteObject(String bucketName, String objectName, ByteBuffer buffer) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], buffer remaining: [{}]", bucketName, objectName, buffer.remaining());
+        try (S3Object object = client.getObject(bucketName, objectName)) {
+            S3ObjectInputStream input = object.getObjectContent();
+            Long length = contentLength(object);
+            if (length != null && length > buffer.remaining()) {
+                input.abort();
+                throw new StorageException("bucketName: [%s], objectName: [%s] size [%s] exceeds buffer remaining [%s]",
+                        bucketName, objectName, length, buffer.remaining());
+            }
+            IoUtils.read(input, buffer);
+            if (length == null && !buffer.hasRemaining() && input.read() != IoUtils.EOF) {
+                input.abort();
+                throw new StorageException("bucketName: [%s], objectName: [%s] size exceeds buffer capacity", bucketName, objectName);
+            }
+            buffer.flip();
+            return buffer;
+        } catch (Exception e) {
+            throw convertException(e, bucketName, objectName);
+        }
+    }
+
+    /**
+     * 条件读取对象, 服务端 ETag 与指定值一致(304)时返回空
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param etag       本地已有版本的 ETag, 为空时直接读取
+     * @return 对象, 未变更时返回空
+     */
+    S3Object getObjectIfNoneMatch(String bucketName, String objectName, String etag) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], etag: [{}]", bucketName, objectName, etag);
+        try {
+            GetObjectRequest request = new GetObjectRequest(bucketName, objectName);
+            if (etag != null) {
+                request.withNonmatchingETagConstraint(etag);
+            }
+            return client.getObject(request);
+        } catch (Exception e) {
+            throw convertException(e, bucketName, objectName);
         }
     }
 
+    /**
+     * 响应头中的 Content-Length, 不存在时(如 chunked 响应)返回空
+     */
+    private static Long contentLength(S3Object object) {
+        ObjectMetadata metadata = object.getObjectMetadata();
+        return metadata.getRawMetadataValue(Headers.CONTENT_LENGTH) == null ? null : metadata.getContentLength();
+    }
+
     @Override
     public void deleteObject(String bucketName, String objectName) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
@@ -349,16 +837,32 @@ public abstract class AbstractS3Client implements FileClient {
 
     @Override
     public void deleteObjects(String bucketName, List<String> objectNames) {
+        BatchDeleteResult result = batchDeleteObjects(bucketName, objectNames);
+        if (!result.isSuccess()) {
+            BatchDeleteResult.Failure first = result.getFailed().get(0);
+            throw new StorageException("bucketName: [%s], [%s] objects could not be deleted, first failure: [%s] [%s] %s",
+                    bucketName, result.getFailed().size(), first.getKey(), first.getCode(), first.getMessage());
+        }
+    }
+
+    @Override
+    public BatchDeleteResult batchDeleteObjects(String bucketName, List<String> objectNames) {
         if (objectNames == null || objectNames.isEmpty()) {
-            return;
+            return new BatchDeleteResult();
         }
 
-        log.debug("opcooc-storage - bucketName: [{}], objectNames: [{}]", bucketName, objectNames);
+        log.debug("opcooc-storage - bucketName: [{}], objectNames: [{}]", bucketName, objectNames.size());
 
         try {
-            List<DeleteObjectsRequest.KeyVersion> objects = objectNames.stream().map(DeleteObjectsRequest.KeyVersion::new).collect(toList());
-            DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName).withKeys(objects);
-            client.deleteObjects(request);
+            //按1000个key分批, 在传输线程池中并发删除
+            BatchDeleter deleter = new BatchDeleter(client, getTransferExecutor(), config.getTransferConcurrency(), true);
+            for (int from = 0; from < objectNames.size(); from += BatchDeleter.MAX_BATCH_SIZE) {
+                List<String> batch = objectNames.subList(from, Math.min(from + BatchDeleter.MAX_BATCH_SIZE, objectNames.size()));
+                deleter.submit(bucketName, batch.stream().map(DeleteObjectsRequest.KeyVersion::new).collect(toList()));
+            }
+            BatchDeleteResult result = deleter.await();
+            log.debug("opcooc-storage - bucketName: [{}], deleted: [{}], failed: [{}]", bucketName, result.getDeletedCount(), result.getFailed().size());
+            return result;
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -368,6 +872,10 @@ public abstract class AbstractS3Client implements FileClient {
     public String getDownloadUrl(String bucketName, String objectName, Date expiration) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], expiration: [{}]", bucketName, objectName, expiration);
         try {
+            if (presignedUrlCache != null) {
+                return presignedUrlCache.get(HttpMethod.GET, bucketName, objectName, null, expiration,
+                        exp -> client.generatePresignedUrl(bucketName, objectName, exp).toExternalForm());
+            }
             URL url = client.generatePresignedUrl(bucketName, objectName, expiration);
             return url.toExternalForm();
         } catch (Exception e) {
@@ -375,33 +883,194 @@ public abstract class AbstractS3Client implements FileClient {
         }
     }
 
+    @Override
+    public Map<String, String> getDownloadUrls(String bucketName, List<String> objectNames, Date expiration) {
+        log.debug("opcooc-storage - bucketName: [{}], objects: [{}], expiration: [{}]", bucketName, objectNames.size(), expiration);
+        Map<String, String> urls = new LinkedHashMap<>(Math.max(16, objectNames.size() * 4 / 3 + 1));
+        if (objectNames.isEmpty()) {
+            return urls;
+        }
+        try {
+            SigV4Presigner sigV4Presigner = getPresigner(bucketName, objectNames.get(0));
+            if (sigV4Presigner == null) {
+                for (String objectName : objectNames) {
+                    urls.put(objectName, client.generatePresignedUrl(bucketName, objectName, expiration).toExternalForm());
+                }
+                return urls;
+            }
+            long now = System.currentTimeMillis();
+            SigV4Presigner.Session session = sigV4Presigner.session(now, (expiration.getTime() - now) / 1000);
+            for (String objectName : objectNames) {
+                urls.put(objectName, session.presign(client.getUrl(bucketName, objectName)));
+            }
+            return urls;
+        } catch (Exception e) {
+            throw convertException(e, bucketName, null);
+        }
+    }
+
+    /**
+     * 获取本地 SigV4 签名器, 首次调用时用 SDK 签名一个样本并校验本地签名结果一致, 不一致时返回空(使用 SDK 逐个签名)
+     */
+    private SigV4Presigner getPresigner(String bucketName, String objectName) {
+        if (!presignerResolved) {
+            synchronized (this) {
+                if (!presignerResolved) {
+                    URL sample = client.generatePresignedUrl(bucketName, objectName, new Date(System.currentTimeMillis() + 5 * 60 * 1000));
+                    presigner = SigV4Presigner.fromSample(sample, config.getSecretKey());
+                    if (presigner == null) {
+                        log.warn("opcooc-storage - client [{}] presigned url does not match local SigV4 signing, fall back to sdk", source.name());
+                    }
+                    presignerResolved = true;
+                }
+            }
+        }
+        return presigner;
+    }
+
     @Override
     public Map<String, String> postUrl(String bucketName, String objectName, Date expiration) {
-        throw new StorageException("method not implement!");
+        return postUrl(bucketName, objectName, expiration, null);
+    }
+
+    @Override
+    public Map<String, String> postUrl(String bucketName, String objectName, Date expiration, PostPolicyCondition condition) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], expiration: [{}], condition: [{}]", bucketName, objectName, expiration, condition);
+        PostPolicyCondition policyCondition = condition == null ? new PostPolicyCondition() : condition;
+        String keyPrefix = policyCondition.getKeyPrefix();
+        if (StrUtil.isEmpty(objectName) && StrUtil.isEmpty(keyPrefix)) {
+            throw new StorageException("post policy requires objectName or keyPrefix");
+        }
+        if (expiration.getTime() <= System.currentTimeMillis()) {
+            throw new StorageException("post policy expiration must be in the future, current: [%s]", expiration);
+        }
+        try {
+            // 未指定文件完整路径时由服务端将 ${filename} 替换为浏览器上传的文件名
+            String key = StrUtil.isEmpty(objectName) ? keyPrefix + "${filename}" : objectName;
+            String contentType = policyCondition.getContentType();
+            if (contentType == null && policyCondition.getContentTypePrefix() == null && !StrUtil.isEmpty(objectName)) {
+                contentType = contentTypeResolver.resolve(objectName);
+            }
+
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put(POST_URL, client.getUrl(bucketName, "").toExternalForm());
+            fields.put("key", key);
+
+            PostPolicyBuilder policy = new PostPolicyBuilder().eq("bucket", bucketName);
+            if (StrUtil.isEmpty(keyPrefix)) {
+                policy.eq("key", key);
+            } else {
+                policy.startsWith("key", keyPrefix);
+            }
+            if (contentType != null) {
+                policy.eq("Content-Type", contentType);
+                fields.put("Content-Type", contentType);
+            } else if (policyCondition.getContentTypePrefix() != null) {
+                policy.startsWith("Content-Type", policyCondition.getContentTypePrefix());
+            }
+            if (policyCondition.getMinContentLength() != null || policyCondition.getMaxContentLength() != null) {
+                long min = policyCondition.getMinContentLength() == null ? 0 : policyCondition.getMinContentLength();
+                long max = policyCondition.getMaxContentLength() == null ? MAX_POST_SIZE : policyCondition.getMaxContentLength();
+                policy.contentLengthRange(min, max);
+            }
+            return signPostPolicy(bucketName, key, expiration, policy, fields);
+        } catch (Exception e) {
+            throw convertException(e, bucketName, objectName);
+        }
+    }
+
+    /**
+     * 签名 POST policy 并写入表单字段, 默认使用 SigV4, 签名参数(区域、服务)与 SDK 签名URL一致
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 表单中的文件完整路径
+     * @param expiration 过期时间
+     * @param policy     已添加存储桶、文件路径、类型、大小等条件的 policy
+     * @param fields     表单字段
+     * @return 表单字段
+     */
+    Map<String, String> signPostPolicy(String bucketName, String objectName, Date expiration, PostPolicyBuilder policy, Map<String, String> fields) {
+        SigV4Presigner sigV4Presigner = getPresigner(bucketName, objectName);
+        if (sigV4Presigner == null) {
+            throw new StorageException("client [%s] does not support SigV4 post policy", source.name());
+        }
+        String amzDate = SigV4Presigner.amzDate(System.currentTimeMillis());
+        String credential = sigV4Presigner.credential(amzDate);
+        String encoded = policy.eq("x-amz-algorithm", SigV4Presigner.ALGORITHM)
+                .eq("x-amz-credential", credential)
+                .eq("x-amz-date", amzDate)
+                .build(expiration);
+        fields.put("x-amz-algorithm", SigV4Presigner.ALGORITHM);
+        fields.put("x-amz-credential", credential);
+        fields.put("x-amz-date", amzDate);
+        fields.put("policy", encoded);
+        fields.put("x-amz-signature", sigV4Presigner.signPolicy(amzDate, encoded));
+        return fields;
     }
 
     @Override
     public String getUploadUrl(String bucketName, String objectName, Date expiration, boolean specType) {
         log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], expiration: [{}], specType: [{}]", bucketName, objectName, expiration, specType);
         try {
-            GeneratePresignedUrlRequest generatePresignedUrlRequest =
-                    new GeneratePresignedUrlRequest(bucketName, objectName)
-                            .withMethod(HttpMethod.PUT)
-                            .withExpiration(expiration);
-            if (specType) {
-                //强制前端需要在的上传方法添加对应的 Request Header( key: Content-Type, value: {fileType} )
-                //不开启需要前端自行添加没有强制要求
-                //用于解决文件上传到文件服务器之后没有对应的文件类型问题
-                String fileType = StorageUtil.TIKA.detect(objectName);
-                generatePresignedUrlRequest.putCustomRequestHeader(StorageConstant.CONTENT_TYPE, fileType);
+            //强制前端需要在的上传方法添加对应的 Request Header( key: Content-Type, value: {fileType} )
+            //不开启需要前端自行添加没有强制要求
+            //用于解决文件上传到文件服务器之后没有对应的文件类型问题
+            String fileType = specType ? contentTypeResolver.resolve(objectName) : null;
+            if (presignedUrlCache != null) {
+                return presignedUrlCache.get(HttpMethod.PUT, bucketName, objectName, fileType, expiration,
+                        exp -> generateUploadUrl(bucketName, objectName, exp, fileType));
             }
-            URL url = client.generatePresignedUrl(generatePresignedUrlRequest);
-            return url.toExternalForm();
+            return generateUploadUrl(bucketName, objectName, expiration, fileType);
         } catch (Exception e) {
             throw new StorageException(e);
         }
     }
 
+    private String generateUploadUrl(String bucketName, String objectName, Date expiration, String fileType) {
+        GeneratePresignedUrlRequest generatePresignedUrlRequest =
+                new GeneratePresignedUrlRequest(bucketName, objectName)
+                        .withMethod(HttpMethod.PUT)
+                        .withExpiration(expiration);
+        if (fileType != null) {
+            generatePresignedUrlRequest.putCustomRequestHeader(StorageConstant.CONTENT_TYPE, fileType);
+        }
+        URL url = client.generatePresignedUrl(generatePresignedUrlRequest);
+        return url.toExternalForm();
+    }
+
+    /**
+     * 转换异常, 404 转换为 ObjectNotFoundException, 已经是 StorageException 的直接返回
+     *
+     * @param e          异常
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @return StorageException
+     */
+    protected StorageException convertException(Exception e, String bucketName, String objectName) {
+        if (e instanceof StorageException) {
+            return (StorageException) e;
+        }
+        if (isNotFound(e)) {
+            return new ObjectNotFoundException(bucketName, objectName);
+        }
+        return new StorageException(e);
+    }
+
+    /**
+     * 判断是否为文件不存在异常
+     * 存储桶不存在(NoSuchBucket)同样返回 404, 这类配置错误不能当作文件不存在处理;
+     * HEAD 请求没有响应体, 错误码由 SDK 填充为 "404 Not Found", 因此只排除 NoSuchBucket
+     *
+     * @param e 异常
+     * @return 结果
+     */
+    protected static boolean isNotFound(Exception e) {
+        if (!(e instanceof AmazonServiceException)) {
+            return false;
+        }
+        AmazonServiceException ase = (AmazonServiceException) e;
+        return ase.getStatusCode() == 404 && !NO_SUCH_BUCKET.equals(ase.getErrorCode());
+    }
 
     @Override
     public void shutdown() {
@@ -409,6 +1078,11 @@ public abstract class AbstractS3Client implements FileClient {
         log.debug("opcooc-storage - shutdown [{}] client", source.name());
 
         try {
+            for (ExecutorService executor : new ExecutorService[]{transferExecutor, workerExecutor}) {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
             client.shutdown();
         } catch (Exception e) {
             throw new StorageException(e);
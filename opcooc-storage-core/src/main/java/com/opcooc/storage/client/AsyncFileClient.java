@@ -0,0 +1,393 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.BatchDeleteResult;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.PostPolicyCondition;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 异步文件客户端, 在独立的线程池中执行 {@link FileClient} 的操作并返回 {@link CompletableFuture}
+ * <p>
+ * 提交时会捕获当前线程的 {@code @Storage} 路由信息并在执行线程上恢复, 未指定存储桶的方法与同步调用使用相同的存储桶
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public interface AsyncFileClient {
+
+    /**
+     * 获得同步客户端
+     *
+     * @return 同步客户端
+     */
+    FileClient getClient();
+
+    /**
+     * 异步执行客户端操作
+     *
+     * @param action 操作
+     * @param <T>    返回值类型
+     * @return 操作结果, 执行异常或线程池拒绝时异常完成
+     */
+    <T> CompletableFuture<T> supplyAsync(Function<FileClient, T> action);
+
+    /**
+     * 异步执行无返回值的客户端操作
+     *
+     * @param action 操作
+     * @return 操作完成的 future
+     */
+    default CompletableFuture<Void> runAsync(Consumer<FileClient> action) {
+        return supplyAsync(client -> {
+            action.accept(client);
+            return null;
+        });
+    }
+
+    //--------------------------------------upload file start--------------------------------------
+
+    /**
+     * 上传文件(流), 流在上传完成前不能关闭
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param stream     文件流
+     * @return 文件信息
+     */
+    default CompletableFuture<FileBasicInfo> uploadObject(String bucketName, String objectName, InputStream stream) {
+        return supplyAsync(client -> client.uploadObject(bucketName, objectName, stream));
+    }
+
+    /**
+     * 上传文件(流), 流在上传完成前不能关闭
+     *
+     * @param objectName 文件完整路径
+     * @param stream     文件流
+     * @return 文件信息
+     */
+    default CompletableFuture<FileBasicInfo> uploadObject(String objectName, InputStream stream) {
+        return supplyAsync(client -> client.uploadObject(objectName, stream));
+    }
+
+    /**
+     * 上传文件(文件)
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param file       文件
+     * @return 文件信息
+     */
+    default CompletableFuture<FileBasicInfo> uploadObject(String bucketName, String objectName, File file) {
+        return supplyAsync(client -> client.uploadObject(bucketName, objectName, file));
+    }
+
+    /**
+     * 上传文件(文件)
+     *
+     * @param objectName 文件完整路径
+     * @param file       文件
+     * @return 文件信息
+     */
+    default CompletableFuture<FileBasicInfo> uploadObject(String objectName, File file) {
+        return supplyAsync(client -> client.uploadObject(objectName, file));
+    }
+
+    //--------------------------------------upload file end--------------------------------------
+
+    //--------------------------------------copy file start--------------------------------------
+
+    /**
+     * 复制文件
+     *
+     * @param bucketName    储桶名称
+     * @param objectName    文件完整路径
+     * @param srcBucketName 源储桶名称
+     * @param srcObjectName 源文件完整路径
+     * @return 复制完成的 future
+     */
+    default CompletableFuture<Void> copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName) {
+        return runAsync(client -> client.copyObject(bucketName, objectName, srcBucketName, srcObjectName));
+    }
+
+    //--------------------------------------copy file end--------------------------------------
+
+    //--------------------------------------get file start--------------------------------------
+
+    /**
+     * 获取文件信息
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 文件信息
+     */
+    default CompletableFuture<FileBasicInfo> getObjectMetadata(String bucketName, String objectName) {
+        return supplyAsync(client -> client.getObjectMetadata(bucketName, objectName));
+    }
+
+    /**
+     * 获取文件信息
+     *
+     * @param objectName 文件完整路径
+     * @return 文件信息
+     */
+    default CompletableFuture<FileBasicInfo> getObjectMetadata(String objectName) {
+        return supplyAsync(client -> client.getObjectMetadata(objectName));
+    }
+
+    /**
+     * 判断文件是否存在
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 是否存在
+     */
+    default CompletableFuture<Boolean> objectExist(String bucketName, String objectName) {
+        return supplyAsync(client -> client.objectExist(bucketName, objectName));
+    }
+
+    /**
+     * 判断文件是否存在
+     *
+     * @param objectName 文件完整路径
+     * @return 是否存在
+     */
+    default CompletableFuture<Boolean> objectExist(String objectName) {
+        return supplyAsync(client -> client.objectExist(objectName));
+    }
+
+    /**
+     * 获得文件字节数组
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 文件字节数组
+     */
+    default CompletableFuture<byte[]> getByteObject(String bucketName, String objectName) {
+        return supplyAsync(client -> client.getByteObject(bucketName, objectName));
+    }
+
+    /**
+     * 获得文件字节数组
+     *
+     * @param objectName 文件完整路径
+     * @return 文件字节数组
+     */
+    default CompletableFuture<byte[]> getByteObject(String objectName) {
+        return supplyAsync(client -> client.getByteObject(objectName));
+    }
+
+    /**
+     * 下载文件到本地文件
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param file       本地文件
+     * @return 本地文件
+     */
+    default CompletableFuture<File> getFileObject(String bucketName, String objectName, File file) {
+        return supplyAsync(client -> client.getFileObject(bucketName, objectName, file));
+    }
+
+    /**
+     * 下载文件到本地文件
+     *
+     * @param objectName 文件完整路径
+     * @param file       本地文件
+     * @return 本地文件
+     */
+    default CompletableFuture<File> getFileObject(String objectName, File file) {
+        return supplyAsync(client -> client.getFileObject(objectName, file));
+    }
+
+    /**
+     * 将文件内容写入输出流, 不关闭输出流
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param output     输出流
+     * @return 写入的字节数
+     */
+    default CompletableFuture<Long> transferObject(String bucketName, String objectName, OutputStream output) {
+        return supplyAsync(client -> client.transferObject(bucketName, objectName, output));
+    }
+
+    /**
+     * 将文件内容写入输出流, 不关闭输出流
+     *
+     * @param objectName 文件完整路径
+     * @param output     输出流
+     * @return 写入的字节数
+     */
+    default CompletableFuture<Long> transferObject(String objectName, OutputStream output) {
+        return supplyAsync(client -> client.transferObject(objectName, output));
+    }
+
+    //--------------------------------------get file end--------------------------------------
+
+    //--------------------------------------delete file start--------------------------------------
+
+    /**
+     * 删除文件
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 删除完成的 future
+     */
+    default CompletableFuture<Void> deleteObject(String bucketName, String objectName) {
+        return runAsync(client -> client.deleteObject(bucketName, objectName));
+    }
+
+    /**
+     * 删除文件
+     *
+     * @param objectName 文件完整路径
+     * @return 删除完成的 future
+     */
+    default CompletableFuture<Void> deleteObject(String objectName) {
+        return runAsync(client -> client.deleteObject(objectName));
+    }
+
+    /**
+     * 删除文件集合
+     *
+     * @param bucketName  储桶名称
+     * @param objectNames 文件完整路径集合
+     * @return 删除完成的 future
+     */
+    default CompletableFuture<Void> deleteObjects(String bucketName, List<String> objectNames) {
+        return runAsync(client -> client.deleteObjects(bucketName, objectNames));
+    }
+
+    /**
+     * 删除文件集合
+     *
+     * @param objectNames 文件完整路径集合
+     * @return 删除完成的 future
+     */
+    default CompletableFuture<Void> deleteObjects(List<String> objectNames) {
+        return runAsync(client -> client.deleteObjects(objectNames));
+    }
+
+    /**
+     * 批量删除文件集合, 单个文件删除失败不抛出异常而是记录在结果中
+     *
+     * @param bucketName  储桶名称
+     * @param objectNames 文件完整路径集合
+     * @return 删除结果
+     */
+    default CompletableFuture<BatchDeleteResult> batchDeleteObjects(String bucketName, List<String> objectNames) {
+        return supplyAsync(client -> client.batchDeleteObjects(bucketName, objectNames));
+    }
+
+    /**
+     * 批量删除文件集合, 单个文件删除失败不抛出异常而是记录在结果中
+     *
+     * @param objectNames 文件完整路径集合
+     * @return 删除结果
+     */
+    default CompletableFuture<BatchDeleteResult> batchDeleteObjects(List<String> objectNames) {
+        return supplyAsync(client -> client.batchDeleteObjects(objectNames));
+    }
+
+    //--------------------------------------delete file end--------------------------------------
+
+    //--------------------------------------presigned url start--------------------------------------
+
+    /**
+     * 生成签名的URL，以使用get的HTTP方法访问文件
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param expiration 过期时间
+     * @return 签名url
+     */
+    default CompletableFuture<String> getDownloadUrl(String bucketName, String objectName, Date expiration) {
+        return supplyAsync(client -> client.getDownloadUrl(bucketName, objectName, expiration));
+    }
+
+    /**
+     * 生成签名的URL，以使用get的HTTP方法访问文件(默认为5分钟)
+     *
+     * @param objectName 文件完整路径
+     * @return 签名url
+     */
+    default CompletableFuture<String> getDownloadUrl(String objectName) {
+        return supplyAsync(client -> client.getDownloadUrl(objectName));
+    }
+
+    /**
+     * 生成签名的URL，以使用put的HTTP方法上传文件
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param expiration 过期时间
+     * @param specType   是否强制要求上传时携带 Content-Type
+     * @return 签名url
+     */
+    default CompletableFuture<String> getUploadUrl(String bucketName, String objectName, Date expiration, boolean specType) {
+        return supplyAsync(client -> client.getUploadUrl(bucketName, objectName, expiration, specType));
+    }
+
+    /**
+     * 生成签名的URL，以使用put的HTTP方法上传文件(默认为5分钟)
+     *
+     * @param objectName 文件完整路径
+     * @return 签名url
+     */
+    default CompletableFuture<String> getUploadUrl(String objectName) {
+        return supplyAsync(client -> client.getUploadUrl(objectName));
+    }
+
+    /**
+     * 生成POST表单上传所需的参数
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param expiration 过期时间
+     * @return 表单参数
+     */
+    default CompletableFuture<Map<String, String>> postUrl(String bucketName, String objectName, Date expiration) {
+        return supplyAsync(client -> client.postUrl(bucketName, objectName, expiration));
+    }
+
+    /**
+     * 生成浏览器表单直传(POST policy)所需的表单字段
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param expiration 过期时间
+     * @param condition  限制条件(文件路径前缀、大小范围、Content-Type)
+     * @return 表单参数
+     */
+    default CompletableFuture<Map<String, String>> postUrl(String bucketName, String objectName, Date expiration, PostPolicyCondition condition) {
+        return supplyAsync(client -> client.postUrl(bucketName, objectName, expiration, condition));
+    }
+
+    //--------------------------------------presigned url end--------------------------------------
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.opcooc.storage.config.BatchDeleteResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 批量删除引擎
+ * <p>
+ * 每批最多 1000 个 key 使用一次 DeleteObjects 请求, 在传输线程池中并发执行, 同时在途的批次数受限,
+ * 提交方(如列举)在批次执行的同时继续准备下一批; 单个 key 的失败记录在结果中而不是抛出
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class BatchDeleter {
+
+    /**
+     * 单次 DeleteObjects 请求的最大 key 数量
+     */
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final AmazonS3 client;
+
+    private final ExecutorService executor;
+
+    private final int maxInFlight;
+
+    private final Semaphore permits;
+
+    private final boolean collectDeleted;
+
+    private final BatchDeleteResult result = new BatchDeleteResult();
+
+    /**
+     * @param client         s3 client
+     * @param executor       执行批次的线程池
+     * @param maxInFlight    同时在途的批次数
+     * @param collectDeleted 是否在结果中收集成功删除的 key
+     */
+    BatchDeleter(AmazonS3 client, ExecutorService executor, int maxInFlight, boolean collectDeleted) {
+        this.client = client;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.permits = new Semaphore(this.maxInFlight);
+        this.collectDeleted = collectDeleted;
+    }
+
+    /**
+     * 提交一批删除, 在途批次已满时阻塞
+     *
+     * @param bucketName 存储桶名称
+     * @param keys       不超过 1000 个 key
+     * @throws InterruptedException 等待时被中断
+     */
+    void submit(String bucketName, List<DeleteObjectsRequest.KeyVersion> keys) throws InterruptedException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    delete(bucketName, keys);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 等待所有已提交的批次完成
+     *
+     * @return 删除结果
+     * @throws InterruptedException 等待时被中断
+     */
+    BatchDeleteResult await() throws InterruptedException {
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        synchronized (result) {
+            return result;
+        }
+    }
+
+    private void delete(String bucketName, List<DeleteObjectsRequest.KeyVersion> keys) {
+        DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName).withKeys(keys).withQuiet(!collectDeleted);
+        try {
+            DeleteObjectsResult deleted = client.deleteObjects(request);
+            record(keys.size(), deleted.getDeletedObjects(), Collections.emptyList());
+        } catch (MultiObjectDeleteException e) {
+            record(keys.size(), e.getDeletedObjects(), e.getErrors());
+        } catch (Exception e) {
+            String code = e instanceof AmazonServiceException ? ((AmazonServiceException) e).getErrorCode() : e.getClass().getSimpleName();
+            synchronized (result) {
+                for (DeleteObjectsRequest.KeyVersion key : keys) {
+                    result.getFailed().add(new BatchDeleteResult.Failure(key.getKey(), key.getVersion(), code, e.getMessage()));
+                }
+            }
+            log.warn("opcooc-storage - bucketName: [{}], delete [{}] objects failed", bucketName, keys.size(), e);
+            return;
+        }
+        log.debug("opcooc-storage - bucketName: [{}], delete batch of [{}] objects", bucketName, keys.size());
+    }
+
+    private void record(int total, List<DeleteObjectsResult.DeletedObject> deleted, List<MultiObjectDeleteException.DeleteError> errors) {
+        synchronized (result) {
+            // quiet 模式下响应只包含失败的 key
+            result.setDeletedCount(result.getDeletedCount() + total - errors.size());
+            if (collectDeleted) {
+                deleted.forEach(object -> result.getDeleted().add(object.getKey()));
+            }
+            for (MultiObjectDeleteException.DeleteError error : errors) {
+                result.getFailed().add(new BatchDeleteResult.Failure(error.getKey(), error.getVersionId(), error.getCode(), error.getMessage()));
+            }
+        }
+    }
+}
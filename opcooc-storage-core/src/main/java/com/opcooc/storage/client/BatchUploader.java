@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.BatchUploadResult;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.UploadSource;
+import com.opcooc.storage.exception.StorageException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 批量上传引擎
+ * <p>
+ * 在 client 共享的后台任务线程池中最多启动 concurrency 个任务, 依次领取文件上传,
+ * 字节数组按已知长度直接 putObject, 文件和流仍走 uploadObject(大文件分片并发),
+ * 单个文件的失败记录在结果中而不是抛出
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class BatchUploader {
+
+    private final AbstractS3Client client;
+
+    private final ExecutorService executor;
+
+    private final int concurrency;
+
+    /**
+     * @param client      client
+     * @param executor    执行上传任务的线程池, 由调用方管理生命周期
+     * @param concurrency 并发数
+     */
+    BatchUploader(AbstractS3Client client, ExecutorService executor, int concurrency) {
+        this.client = client;
+        this.executor = executor;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    BatchUploadResult upload(String bucketName, Map<String, UploadSource> sources) {
+        BatchUploadResult result = new BatchUploadResult();
+        if (sources.isEmpty()) {
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, CompletableFuture<FileBasicInfo>> futures = new LinkedHashMap<>();
+        sources.keySet().forEach(objectName -> futures.put(objectName, new CompletableFuture<>()));
+        Queue<Map.Entry<String, UploadSource>> pending = new ConcurrentLinkedQueue<>(sources.entrySet());
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = Math.min(concurrency, sources.size()); i > 0; i--) {
+                workers.add(executor.submit(() -> {
+                    Map.Entry<String, UploadSource> entry;
+                    while ((entry = pending.poll()) != null) {
+                        CompletableFuture<FileBasicInfo> future = futures.get(entry.getKey());
+                        try {
+                            future.complete(upload(bucketName, entry.getKey(), entry.getValue()));
+                        } catch (Throwable e) {
+                            future.completeExceptionally(e);
+                        }
+                    }
+                }));
+            }
+            for (Map.Entry<String, CompletableFuture<FileBasicInfo>> entry : futures.entrySet()) {
+                String objectName = entry.getKey();
+                try {
+                    FileBasicInfo info = entry.getValue().get();
+                    result.getSucceeded().put(objectName, info);
+                    result.setTotalBytes(result.getTotalBytes() + info.getSize());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    log.warn("opcooc-storage - bucketName: [{}], objectName: [{}] upload failed", bucketName, objectName, cause);
+                    result.getFailed().put(objectName, cause instanceof Exception ? (Exception) cause : new StorageException(cause.toString(), cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.clear();
+            workers.forEach(worker -> worker.cancel(true));
+            throw new StorageException(e);
+        }
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        log.debug("opcooc-storage - bucketName: [{}] batch upload [{}] succeeded, [{}] failed, [{}] bytes in [{}] ms",
+                bucketName, result.getSucceeded().size(), result.getFailed().size(), result.getTotalBytes(), result.getDurationMillis());
+        return result;
+    }
+
+    private FileBasicInfo upload(String bucketName, String objectName, UploadSource source) throws Exception {
+        if (source.getFile() != null) {
+            return client.uploadObject(bucketName, objectName, source.getFile());
+        }
+        if (source.getBytes() != null) {
+            return client.uploadBytes(bucketName, objectName, source.getBytes());
+        }
+        try (InputStream stream = source.getStream().get()) {
+            return client.uploadObject(bucketName, objectName, stream);
+        }
+    }
+}
@@ -48,6 +48,7 @@ public class COSClient extends AbstractS3Client {
                         config.getEndPoint(),
                         source.name()))
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withClientConfiguration(buildClientConfiguration(config))
                 .build();
 
         log.debug("init storage client [{}] ok", source.name());
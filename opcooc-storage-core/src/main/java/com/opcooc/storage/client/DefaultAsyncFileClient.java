@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.StorageAttributeContextHolder;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * 基于线程池的异步文件客户端
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public class DefaultAsyncFileClient implements AsyncFileClient {
+
+    /**
+     * 同步客户端
+     */
+    @Getter
+    private final FileClient client;
+
+    /**
+     * 执行线程池
+     */
+    private final Executor executor;
+
+    public DefaultAsyncFileClient(FileClient client, Executor executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> supplyAsync(Function<FileClient, T> action) {
+        try {
+            return CompletableFuture.supplyAsync(StorageAttributeContextHolder.wrap(() -> action.apply(client)), executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new StorageException("async executor rejected the task", e));
+            return future;
+        }
+    }
+}
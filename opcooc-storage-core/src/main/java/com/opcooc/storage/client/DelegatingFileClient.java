@@ -0,0 +1,361 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.BatchDeleteResult;
+import com.opcooc.storage.config.BatchUploadResult;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.ListPartitioner;
+import com.opcooc.storage.config.PostPolicyCondition;
+import com.opcooc.storage.config.ResultConverter;
+import com.opcooc.storage.config.UploadSource;
+import com.opcooc.storage.utils.StorageUtil;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * FileClient 装饰器基类, 所有方法默认委托给被装饰的 client, 子类只需覆盖需要增强的方法.
+ * 上传、复制、删除等写操作结束后(无论成功与否)调用 {@link #evict} / {@link #evictBucket},
+ * 带缓存的子类只需覆盖这两个方法
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public abstract class DelegatingFileClient implements FileClient {
+
+    protected final FileClient delegate;
+
+    protected DelegatingFileClient(FileClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return 被装饰的 client
+     */
+    public FileClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 逐层解除装饰, 获取最内层的 client
+     *
+     * @param client client
+     * @return 最内层的 client
+     */
+    public static FileClient unwrap(FileClient client) {
+        FileClient current = client;
+        while (current instanceof DelegatingFileClient) {
+            current = ((DelegatingFileClient) current).getDelegate();
+        }
+        return current;
+    }
+
+    /**
+     * 使指定对象在装饰器中的缓存失效, 绕过装饰器直接写入底层 client 后调用, 默认逐层向内传递
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     */
+    public void invalidate(String bucketName, String objectName) {
+        evict(bucketName, objectName);
+        if (delegate instanceof DelegatingFileClient) {
+            ((DelegatingFileClient) delegate).invalidate(bucketName, objectName);
+        }
+    }
+
+    /**
+     * 对象被写入或删除后调用, 默认不做处理
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     */
+    protected void evict(String bucketName, String objectName) {
+    }
+
+    /**
+     * 存储桶被删除后调用, 默认不做处理
+     *
+     * @param bucketName 存储桶名称
+     */
+    protected void evictBucket(String bucketName) {
+    }
+
+    /**
+     * FileBasicInfo 可变, 缓存或共享的结果返回副本, 避免调用方互相影响
+     *
+     * @param info 文件信息
+     * @return 副本
+     */
+    static FileBasicInfo copyOf(FileBasicInfo info) {
+        FileBasicInfo copy = new FileBasicInfo();
+        copy.setBucketName(info.getBucketName());
+        copy.setLastModified(info.getLastModified() == null ? null : new Date(info.getLastModified().getTime()));
+        copy.setKey(info.getKey());
+        copy.setSize(info.getSize());
+        copy.setEtag(info.getEtag());
+        copy.setVersionId(info.getVersionId());
+        copy.setFolder(info.isFolder());
+        return copy;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public void createFolder(String bucketName, String path) {
+        try {
+            delegate.createFolder(bucketName, path);
+        } finally {
+            evict(bucketName, StorageUtil.checkFolder(path));
+        }
+    }
+
+    @Override
+    public String getBucketName() {
+        return delegate.getBucketName();
+    }
+
+    @Override
+    public String createBucket(String bucketName) {
+        return delegate.createBucket(bucketName);
+    }
+
+    @Override
+    public void deleteBucket(String bucketName) {
+        try {
+            delegate.deleteBucket(bucketName);
+        } finally {
+            evictBucket(bucketName);
+        }
+    }
+
+    @Override
+    public List<String> listBuckets() {
+        return delegate.listBuckets();
+    }
+
+    @Override
+    public boolean doesBucketExist(String bucketName) {
+        return delegate.doesBucketExist(bucketName);
+    }
+
+    @Override
+    public FileBasicInfo uploadObject(String bucketName, String objectName, InputStream stream) {
+        try {
+            return delegate.uploadObject(bucketName, objectName, stream);
+        } finally {
+            evict(bucketName, objectName);
+        }
+    }
+
+    @Override
+    public FileBasicInfo uploadObject(String bucketName, String objectName, File file) {
+        try {
+            return delegate.uploadObject(bucketName, objectName, file);
+        } finally {
+            evict(bucketName, objectName);
+        }
+    }
+
+    @Override
+    public FileBasicInfo uploadObject(String bucketName, String objectName, String fullFilePath) {
+        try {
+            return delegate.uploadObject(bucketName, objectName, fullFilePath);
+        } finally {
+            evict(bucketName, objectName);
+        }
+    }
+
+    @Override
+    public BatchUploadResult uploadObjects(String bucketName, Map<String, UploadSource> sources) {
+        try {
+            return delegate.uploadObjects(bucketName, sources);
+        } finally {
+            sources.keySet().forEach(objectName -> evict(bucketName, objectName));
+        }
+    }
+
+    @Override
+    public BatchUploadResult uploadObjects(String bucketName, Map<String, UploadSource> sources, int concurrency) {
+        try {
+            return delegate.uploadObjects(bucketName, sources, concurrency);
+        } finally {
+            sources.keySet().forEach(objectName -> evict(bucketName, objectName));
+        }
+    }
+
+    @Override
+    public void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName) {
+        try {
+            delegate.copyObject(bucketName, objectName, srcBucketName, srcObjectName);
+        } finally {
+            // srcBucketName / srcObjectName 为复制的目标
+            evict(srcBucketName, srcObjectName);
+        }
+    }
+
+    @Override
+    public void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName, long size) {
+        try {
+            delegate.copyObject(bucketName, objectName, srcBucketName, srcObjectName, size);
+        } finally {
+            evict(srcBucketName, srcObjectName);
+        }
+    }
+
+    @Override
+    public List<FileBasicInfo> listObjects(String bucketName, String prefix, boolean recursive) {
+        return delegate.listObjects(bucketName, prefix, recursive);
+    }
+
+    @Override
+    public <T> List<T> listObjects(String bucketName, String prefix, boolean recursive, ResultConverter<T> resultConverter) {
+        return delegate.listObjects(bucketName, prefix, recursive, resultConverter);
+    }
+
+    @Override
+    public Stream<FileBasicInfo> streamObjects(String bucketName, String prefix, boolean recursive) {
+        return delegate.streamObjects(bucketName, prefix, recursive);
+    }
+
+    @Override
+    public Stream<FileBasicInfo> streamObjects(String bucketName, String prefix, boolean recursive, String startAfter) {
+        return delegate.streamObjects(bucketName, prefix, recursive, startAfter);
+    }
+
+    @Override
+    public <T> Stream<T> streamObjects(String bucketName, String prefix, boolean recursive, ResultConverter<T> resultConverter) {
+        return delegate.streamObjects(bucketName, prefix, recursive, resultConverter);
+    }
+
+    @Override
+    public Stream<FileBasicInfo> parallelStreamObjects(String bucketName, String prefix, ListPartitioner partitioner, int concurrency, boolean sorted) {
+        return delegate.parallelStreamObjects(bucketName, prefix, partitioner, concurrency, sorted);
+    }
+
+    @Override
+    public FileBasicInfo getObjectMetadata(String bucketName, String objectName) {
+        return delegate.getObjectMetadata(bucketName, objectName);
+    }
+
+    @Override
+    public <T> T getObjectMetadata(String bucketName, String objectName, ResultConverter<T> resultConverter) {
+        return delegate.getObjectMetadata(bucketName, objectName, resultConverter);
+    }
+
+    @Override
+    public boolean objectExist(String bucketName, String objectName) {
+        return delegate.objectExist(bucketName, objectName);
+    }
+
+    @Override
+    public InputStream getStreamObject(String bucketName, String objectName) {
+        return delegate.getStreamObject(bucketName, objectName);
+    }
+
+    @Override
+    public File getFileObject(String bucketName, String objectName, File file) {
+        return delegate.getFileObject(bucketName, objectName, file);
+    }
+
+    @Override
+    public long transferObject(String bucketName, String objectName, OutputStream output) {
+        return delegate.transferObject(bucketName, objectName, output);
+    }
+
+    @Override
+    public long transferObject(String bucketName, String objectName, WritableByteChannel channel) {
+        return delegate.transferObject(bucketName, objectName, channel);
+    }
+
+    @Override
+    public String getFilePathObject(String bucketName, String objectName, String filePath) {
+        return delegate.getFilePathObject(bucketName, objectName, filePath);
+    }
+
+    @Override
+    public byte[] getByteObject(String bucketName, String objectName) {
+        return delegate.getByteObject(bucketName, objectName);
+    }
+
+    @Override
+    public ByteBuffer getByteObject(String bucketName, String objectName, ByteBuffer buffer) {
+        return delegate.getByteObject(bucketName, objectName, buffer);
+    }
+
+    @Override
+    public void deleteObject(String bucketName, String objectName) {
+        try {
+            delegate.deleteObject(bucketName, objectName);
+        } finally {
+            evict(bucketName, objectName);
+        }
+    }
+
+    @Override
+    public void deleteObjects(String bucketName, List<String> objectNames) {
+        try {
+            delegate.deleteObjects(bucketName, objectNames);
+        } finally {
+            objectNames.forEach(objectName -> evict(bucketName, objectName));
+        }
+    }
+
+    @Override
+    public BatchDeleteResult batchDeleteObjects(String bucketName, List<String> objectNames) {
+        try {
+            return delegate.batchDeleteObjects(bucketName, objectNames);
+        } finally {
+            objectNames.forEach(objectName -> evict(bucketName, objectName));
+        }
+    }
+
+    @Override
+    public String getDownloadUrl(String bucketName, String objectName, Date expiration) {
+        return delegate.getDownloadUrl(bucketName, objectName, expiration);
+    }
+
+    @Override
+    public Map<String, String> getDownloadUrls(String bucketName, List<String> objectNames, Date expiration) {
+        return delegate.getDownloadUrls(bucketName, objectNames, expiration);
+    }
+
+    @Override
+    public Map<String, String> postUrl(String bucketName, String objectName, Date expiration) {
+        return delegate.postUrl(bucketName, objectName, expiration);
+    }
+
+    @Override
+    public Map<String, String> postUrl(String bucketName, String objectName, Date expiration, PostPolicyCondition condition) {
+        return delegate.postUrl(bucketName, objectName, expiration, condition);
+    }
+
+    @Override
+    public String getUploadUrl(String bucketName, String objectName, Date expiration, boolean specType) {
+        return delegate.getUploadUrl(bucketName, objectName, expiration, specType);
+    }
+}
@@ -16,14 +16,29 @@
  */
 package com.opcooc.storage.client;
 
+import com.opcooc.storage.config.BatchDeleteResult;
+import com.opcooc.storage.config.BatchUploadResult;
 import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.ListPartitioner;
+import com.opcooc.storage.config.PostPolicyCondition;
 import com.opcooc.storage.config.ResultConverter;
+import com.opcooc.storage.config.UploadSource;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * @author shenqicheng
@@ -31,6 +46,11 @@ import java.util.Map;
  */
 public interface FileClient {
 
+    /**
+     * postUrl 返回结果中表单提交地址的 key, 其余 entry 均为表单字段
+     */
+    String POST_URL = "url";
+
     //--------------------------------------shutdown start--------------------------------------
 
     /**
@@ -166,6 +186,73 @@ public interface FileClient {
     default FileBasicInfo uploadObject(String objectName, String fullFilePath) {
         return uploadObject(getBucketName(), objectName, fullFilePath);
     }
+
+    /**
+     * 批量上传文件, 单个文件上传失败不抛出异常而是记录在结果中
+     * <p>
+     * 默认实现逐个调用 uploadObject 顺序上传; AbstractS3Client 按配置的 batchConcurrency 并发上传
+     * </p>
+     *
+     * @param bucketName 存储桶名称
+     * @param sources    key: 文件完整路径 value: 数据来源
+     * @return 上传结果
+     */
+    default BatchUploadResult uploadObjects(String bucketName, Map<String, UploadSource> sources) {
+        return uploadObjects(bucketName, sources, 1);
+    }
+
+    /**
+     * 批量上传文件, 单个文件上传失败不抛出异常而是记录在结果中
+     * <p>
+     * 默认实现忽略并发数, 逐个调用 uploadObject 上传
+     * </p>
+     *
+     * @param bucketName  存储桶名称
+     * @param sources     key: 文件完整路径 value: 数据来源
+     * @param concurrency 并发数
+     * @return 上传结果
+     */
+    default BatchUploadResult uploadObjects(String bucketName, Map<String, UploadSource> sources, int concurrency) {
+        long start = System.currentTimeMillis();
+        BatchUploadResult result = new BatchUploadResult();
+        for (Map.Entry<String, UploadSource> entry : sources.entrySet()) {
+            String objectName = entry.getKey();
+            UploadSource source = entry.getValue();
+            try {
+                FileBasicInfo info;
+                if (source.getFile() != null) {
+                    info = uploadObject(bucketName, objectName, source.getFile());
+                } else if (source.getBytes() != null) {
+                    info = uploadObject(bucketName, objectName, new ByteArrayInputStream(source.getBytes()));
+                } else {
+                    try (InputStream stream = source.getStream().get()) {
+                        info = uploadObject(bucketName, objectName, stream);
+                    }
+                }
+                result.getSucceeded().put(objectName, info);
+                if (info.getSize() != null) {
+                    result.setTotalBytes(result.getTotalBytes() + info.getSize());
+                }
+            } catch (Exception e) {
+                result.getFailed().put(objectName, e);
+            }
+        }
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 批量上传文件, 单个文件上传失败不抛出异常而是记录在结果中
+     * <p>
+     * 默认实现逐个调用 uploadObject 顺序上传; AbstractS3Client 按配置的 batchConcurrency 并发上传
+     * </p>
+     *
+     * @param sources key: 文件完整路径 value: 数据来源
+     * @return 上传结果
+     */
+    default BatchUploadResult uploadObjects(Map<String, UploadSource> sources) {
+        return uploadObjects(getBucketName(), sources);
+    }
     //--------------------------------------upload file end--------------------------------------
 
     //--------------------------------------copy file start--------------------------------------
@@ -180,6 +267,20 @@ public interface FileClient {
      */
     void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName);
 
+    /**
+     * 复制文件, 调用方已知源对象大小时使用, 小于分片复制阈值时可省去获取源对象元数据的请求.
+     * 默认忽略 size 直接复制
+     *
+     * @param bucketName    源存储桶名称
+     * @param objectName    源文件完整路径
+     * @param srcBucketName 目标存储桶名称
+     * @param srcObjectName 目标文件完整路径
+     * @param size          源对象大小
+     */
+    default void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName, long size) {
+        copyObject(bucketName, objectName, srcBucketName, srcObjectName);
+    }
+
     /**
      * 复制文件
      *
@@ -251,12 +352,129 @@ public interface FileClient {
         return listObjects(getBucketName(), prefix, recursive, resultConverter);
     }
 
+    /**
+     * 按页懒加载 指定存储桶名称 指定前缀 的下级所有文件, 消费当前页时后台预取下一页
+     * <p>
+     * 非递归时只返回当前层级的文件, 下级目录作为文件夹(folder = true)返回; 使用完毕后需关闭 Stream
+     * </p>
+     *
+     * <p>
+     * 默认实现一次性列举(listObjects)后转换为 Stream
+     * </p>
+     *
+     * @param bucketName 存储桶名称
+     * @param prefix     指定前缀
+     * @param recursive  是否递归
+     * @return 文件信息流
+     */
+    default Stream<FileBasicInfo> streamObjects(String bucketName, String prefix, boolean recursive) {
+        return listObjects(bucketName, prefix, recursive).stream();
+    }
+
+    /**
+     * 按页懒加载 指定前缀 的下级所有文件, 使用完毕后需关闭 Stream
+     *
+     * @param prefix    指定前缀
+     * @param recursive 是否递归
+     * @return 文件信息流
+     */
+    default Stream<FileBasicInfo> streamObjects(String prefix, boolean recursive) {
+        return streamObjects(getBucketName(), prefix, recursive);
+    }
+
+    /**
+     * 按页懒加载 指定存储桶名称 指定前缀 下 key 大于 startAfter 的所有文件(按 key 升序), 用于中断后继续列举, 使用完毕后需关闭 Stream
+     * <p>
+     * 默认实现从头列举后过滤, S3 兼容的 client 由服务端从 startAfter 之后开始返回
+     * </p>
+     *
+     * @param bucketName 存储桶名称
+     * @param prefix     指定前缀
+     * @param recursive  是否递归
+     * @param startAfter 从该 key 之后开始, 为空时从头开始
+     * @return 文件信息流
+     */
+    default Stream<FileBasicInfo> streamObjects(String bucketName, String prefix, boolean recursive, String startAfter) {
+        Stream<FileBasicInfo> stream = streamObjects(bucketName, prefix, recursive);
+        return startAfter == null ? stream : stream.filter(info -> info.getKey().compareTo(startAfter) > 0);
+    }
+
+    /**
+     * 按页懒加载 指定存储桶名称 指定前缀 的下级所有文件, 逐个经过转换器处理, 使用完毕后需关闭 Stream
+     *
+     * @param bucketName      存储桶名称
+     * @param prefix          指定前缀
+     * @param recursive       是否递归
+     * @param resultConverter 文件信息转换器
+     * @param <T>             泛型
+     * @return 文件信息流
+     */
+    default <T> Stream<T> streamObjects(String bucketName, String prefix, boolean recursive, ResultConverter<T> resultConverter) {
+        return streamObjects(bucketName, prefix, recursive).map(resultConverter::convert);
+    }
+
+    /**
+     * 按页懒加载 指定前缀 的下级所有文件, 逐个经过转换器处理, 使用完毕后需关闭 Stream
+     *
+     * @param prefix          指定前缀
+     * @param recursive       是否递归
+     * @param resultConverter 文件信息转换器
+     * @param <T>             泛型
+     * @return 文件信息流
+     */
+    default <T> Stream<T> streamObjects(String prefix, boolean recursive, ResultConverter<T> resultConverter) {
+        return streamObjects(getBucketName(), prefix, recursive, resultConverter);
+    }
+
+    /**
+     * 按前缀分区并发列举 指定存储桶名称 指定前缀 的下级所有文件, 适用于超大存储桶, 使用完毕后需关闭 Stream
+     * <p>
+     * 分区策略为空时通过 "/" 分隔符逐层发现子前缀作为分区; 默认实现不分区, 按 key 升序递归列举
+     * </p>
+     *
+     * @param bucketName  存储桶名称
+     * @param prefix      指定前缀
+     * @param partitioner 分区策略
+     * @param concurrency 并发列举的分区数
+     * @param sorted      是否按 key 有序返回
+     * @return 文件信息流
+     */
+    default Stream<FileBasicInfo> parallelStreamObjects(String bucketName, String prefix, ListPartitioner partitioner, int concurrency, boolean sorted) {
+        return streamObjects(bucketName, prefix, true);
+    }
+
+    /**
+     * 按分隔符发现的前缀分区并发列举 指定存储桶名称 指定前缀 的下级所有文件, 使用完毕后需关闭 Stream
+     *
+     * @param bucketName  存储桶名称
+     * @param prefix      指定前缀
+     * @param concurrency 并发列举的分区数
+     * @param sorted      是否按 key 有序返回
+     * @return 文件信息流
+     */
+    default Stream<FileBasicInfo> parallelStreamObjects(String bucketName, String prefix, int concurrency, boolean sorted) {
+        return parallelStreamObjects(bucketName, prefix, null, concurrency, sorted);
+    }
+
+    /**
+     * 按分隔符发现的前缀分区并发列举 指定前缀 的下级所有文件, 使用完毕后需关闭 Stream
+     *
+     * @param prefix      指定前缀
+     * @param concurrency 并发列举的分区数
+     * @param sorted      是否按 key 有序返回
+     * @return 文件信息流
+     */
+    default Stream<FileBasicInfo> parallelStreamObjects(String prefix, int concurrency, boolean sorted) {
+        return parallelStreamObjects(getBucketName(), prefix, concurrency, sorted);
+    }
+
     /**
      * 获取对象元数据
      *
      * @param bucketName 储桶名称
      * @param objectName 文件完整路径
      * @return 文件信息
+     * @throws ObjectNotFoundException 对象不存在
      */
     FileBasicInfo getObjectMetadata(String bucketName, String objectName);
 
@@ -321,6 +539,7 @@ public interface FileClient {
      * @param bucketName 储桶名称
      * @param objectName 文件完整路径
      * @return InputStream
+     * @throws ObjectNotFoundException 对象不存在
      */
     InputStream getStreamObject(String bucketName, String objectName);
 
@@ -341,6 +560,7 @@ public interface FileClient {
      * @param objectName 文件完整路径
      * @param file       文件
      * @return 文件
+     * @throws ObjectNotFoundException 对象不存在
      */
     File getFileObject(String bucketName, String objectName, File file);
 
@@ -355,6 +575,62 @@ public interface FileClient {
         return getFileObject(getBucketName(), objectName, file);
     }
 
+    /**
+     * 将文件内容直接写入输出流(如代理下载时的响应流), 不关闭输出流
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param output     输出流
+     * @return 写入的字节数
+     * @throws ObjectNotFoundException 对象不存在
+     */
+    default long transferObject(String bucketName, String objectName, OutputStream output) {
+        try (InputStream input = getStreamObject(bucketName, objectName)) {
+            return IoUtils.copy(input, output, 0);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * 将文件内容直接写入输出流(如代理下载时的响应流), 不关闭输出流
+     *
+     * @param objectName 文件完整路径
+     * @param output     输出流
+     * @return 写入的字节数
+     */
+    default long transferObject(String objectName, OutputStream output) {
+        return transferObject(getBucketName(), objectName, output);
+    }
+
+    /**
+     * 将文件内容直接写入通道(如 SocketChannel/FileChannel), 不关闭通道
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param channel    输出通道
+     * @return 写入的字节数
+     * @throws ObjectNotFoundException 对象不存在
+     */
+    default long transferObject(String bucketName, String objectName, WritableByteChannel channel) {
+        try (InputStream input = getStreamObject(bucketName, objectName)) {
+            return IoUtils.copy(input, channel, 0);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * 将文件内容直接写入通道(如 SocketChannel/FileChannel), 不关闭通道
+     *
+     * @param objectName 文件完整路径
+     * @param channel    输出通道
+     * @return 写入的字节数
+     */
+    default long transferObject(String objectName, WritableByteChannel channel) {
+        return transferObject(getBucketName(), objectName, channel);
+    }
+
     /**
      * 获得文件
      *
@@ -362,6 +638,7 @@ public interface FileClient {
      * @param objectName 文件完整路径
      * @param filePath   文件path
      * @return 文件path
+     * @throws ObjectNotFoundException 对象不存在
      */
     String getFilePathObject(String bucketName, String objectName, String filePath);
 
@@ -382,6 +659,7 @@ public interface FileClient {
      * @param bucketName 储桶名称
      * @param objectName 文件完整路径
      * @return byte
+     * @throws ObjectNotFoundException 对象不存在
      */
     byte[] getByteObject(String bucketName, String objectName);
 
@@ -394,6 +672,39 @@ public interface FileClient {
     default byte[] getByteObject(String objectName) {
         return getByteObject(getBucketName(), objectName);
     }
+
+    /**
+     * 获得文件内容并写入指定的 ByteBuffer(可来自调用方的缓冲区池), 从 buffer 当前 position 开始写入, 完成后 flip
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param buffer     缓冲区, 剩余空间不足时抛出异常
+     * @return 写入后的 buffer
+     * @throws ObjectNotFoundException 对象不存在
+     */
+    default ByteBuffer getByteObject(String bucketName, String objectName, ByteBuffer buffer) {
+        try (InputStream input = getStreamObject(bucketName, objectName)) {
+            IoUtils.read(input, buffer);
+            if (!buffer.hasRemaining() && input.read() != IoUtils.EOF) {
+                throw new StorageException("bucketName: [%s], objectName: [%s] size exceeds buffer capacity", bucketName, objectName);
+            }
+            buffer.flip();
+            return buffer;
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * 获得文件内容并写入指定的 ByteBuffer, 从 buffer 当前 position 开始写入, 完成后 flip
+     *
+     * @param objectName 文件完整路径
+     * @param buffer     缓冲区, 剩余空间不足时抛出异常
+     * @return 写入后的 buffer
+     */
+    default ByteBuffer getByteObject(String objectName, ByteBuffer buffer) {
+        return getByteObject(getBucketName(), objectName, buffer);
+    }
     //--------------------------------------get file object end--------------------------------------
 
     //--------------------------------------delete file start--------------------------------------
@@ -431,6 +742,43 @@ public interface FileClient {
     default void deleteObjects(List<String> objectNames) {
         deleteObjects(getBucketName(), objectNames);
     }
+
+    /**
+     * 批量删除文件集合, 单个文件删除失败不抛出异常而是记录在结果中
+     * <p>
+     * 默认实现逐个调用 deleteObject, S3 兼容的 client 按1000个分批并发删除
+     * </p>
+     *
+     * @param bucketName  储桶名称
+     * @param objectNames 文件完整路径集合
+     * @return 删除结果
+     */
+    default BatchDeleteResult batchDeleteObjects(String bucketName, List<String> objectNames) {
+        BatchDeleteResult result = new BatchDeleteResult();
+        if (objectNames == null) {
+            return result;
+        }
+        for (String objectName : objectNames) {
+            try {
+                deleteObject(bucketName, objectName);
+                result.getDeleted().add(objectName);
+                result.setDeletedCount(result.getDeletedCount() + 1);
+            } catch (Exception e) {
+                result.getFailed().add(new BatchDeleteResult.Failure(objectName, null, e.getClass().getSimpleName(), e.getMessage()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量删除文件集合, 单个文件删除失败不抛出异常而是记录在结果中
+     *
+     * @param objectNames 文件完整路径集合
+     * @return 删除结果
+     */
+    default BatchDeleteResult batchDeleteObjects(List<String> objectNames) {
+        return batchDeleteObjects(getBucketName(), objectNames);
+    }
     //--------------------------------------delete file end--------------------------------------
 
     //--------------------------------------get download url start--------------------------------------
@@ -467,6 +815,33 @@ public interface FileClient {
         return getDownloadUrl(objectName, expiration);
     }
 
+    /**
+     * 批量生成下载签名URL, 同一批次使用相同的签名时间, 适用于一次签名大量文件
+     *
+     * @param bucketName  储桶名称
+     * @param objectNames 文件完整路径集合
+     * @param expiration  过期时间(最长7天)
+     * @return key: 文件完整路径 value: 签名url, 按传入顺序
+     */
+    default Map<String, String> getDownloadUrls(String bucketName, List<String> objectNames, Date expiration) {
+        Map<String, String> urls = new LinkedHashMap<>(objectNames.size() * 4 / 3 + 1);
+        for (String objectName : objectNames) {
+            urls.put(objectName, getDownloadUrl(bucketName, objectName, expiration));
+        }
+        return urls;
+    }
+
+    /**
+     * 批量生成下载签名URL, 同一批次使用相同的签名时间, 适用于一次签名大量文件
+     *
+     * @param objectNames 文件完整路径集合
+     * @param expiration  过期时间(最长7天)
+     * @return key: 文件完整路径 value: 签名url, 按传入顺序
+     */
+    default Map<String, String> getDownloadUrls(List<String> objectNames, Date expiration) {
+        return getDownloadUrls(getBucketName(), objectNames, expiration);
+    }
+
     //--------------------------------------get download url start--------------------------------------
 
     //--------------------------------------get upload signature url start--------------------------------------
@@ -482,6 +857,37 @@ public interface FileClient {
      */
     Map<String, String> postUrl(String bucketName, String objectName, Date expiration);
 
+    /**
+     * 生成浏览器表单直传(POST policy)所需的表单字段, 浏览器直接上传到存储服务, 不经过应用服务器
+     * <p>
+     * 返回结果中 {@link #POST_URL} 为表单提交地址, 其余 entry 按原样作为表单字段, 文件字段(file)需放在最后
+     * </p>
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径, 为空时使用 keyPrefix + ${filename}
+     * @param expiration 过期时间
+     * @param condition  限制条件(文件路径前缀、大小范围、Content-Type)
+     * @return post body 信息
+     */
+    default Map<String, String> postUrl(String bucketName, String objectName, Date expiration, PostPolicyCondition condition) {
+        if (condition != null) {
+            throw new StorageException("[%s] does not support post policy condition", getClass().getName());
+        }
+        return postUrl(bucketName, objectName, expiration);
+    }
+
+    /**
+     * 生成浏览器表单直传(POST policy)所需的表单字段
+     *
+     * @param objectName 文件完整路径, 为空时使用 keyPrefix + ${filename}
+     * @param expiration 过期时间
+     * @param condition  限制条件(文件路径前缀、大小范围、Content-Type)
+     * @return post body 信息
+     */
+    default Map<String, String> postUrl(String objectName, Date expiration, PostPolicyCondition condition) {
+        return postUrl(getBucketName(), objectName, expiration, condition);
+    }
+
     /**
      * 生成签名的URL，以使用post的HTTP方法访问
      *
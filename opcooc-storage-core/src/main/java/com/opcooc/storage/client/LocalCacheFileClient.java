@@ -0,0 +1,499 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import cn.hutool.core.io.FileUtil;
+import com.amazonaws.services.s3.model.S3Object;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.LocalCacheProperty;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
+import com.opcooc.storage.utils.LruCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地磁盘读缓存
+ * <p>
+ * getByteObject / getFileObject / transferObject 读取的对象缓存到本地目录, 按总大小做 LRU 淘汰,
+ * 命中时通过 FileChannel 读取; 超过有效期后使用 If-None-Match 条件请求校验, 未变更时只刷新校验时间.
+ * getStreamObject 只读取有效期内已缓存的对象, 未命中时直接读取不写入缓存, 避免返回首字节前先完整下载到本地.
+ * 通过本 client 的上传、复制、删除会使对应缓存失效, 其他途径的修改在有效期后生效.
+ * 缓存索引只保存在内存中, 每个实例在缓存根目录下使用独立的临时子目录(同一主机上的多个进程互不影响), 关闭时删除
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+public class LocalCacheFileClient extends DelegatingFileClient {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CACHE_SUFFIX = ".cache";
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final long maxObjectSize;
+
+    private final long ttl;
+
+    /**
+     * 按访问顺序排列的缓存索引, 由 this 保护
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 超过单个文件大小上限的对象及其记录时间, 有效期内直接读取不再尝试缓存
+     */
+    private final LruCache<String, Long> oversized = new LruCache<>(1024);
+
+    /**
+     * 缓存文件序号, 同一对象的新版本写入新文件, 不影响正在读取旧文件的线程
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 失效次数, 加载期间发生失效时加载结果需要重新校验
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private long totalSize;
+
+    /**
+     * @param delegate 被装饰的 client
+     * @param property 缓存配置
+     * @param name     client 名称, 用于缓存子目录的前缀
+     */
+    public LocalCacheFileClient(FileClient delegate, LocalCacheProperty property, String name) {
+        super(delegate);
+        Path base = property.getDirectory() == null
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "opcooc-storage-cache")
+                : Paths.get(property.getDirectory());
+        try {
+            this.directory = Files.createTempDirectory(Files.createDirectories(base), name.toLowerCase() + "-");
+        } catch (IOException e) {
+            throw new StorageException("create local cache directory under [%s] failed", e, base);
+        }
+        this.maxSize = property.getMaxSize();
+        this.maxObjectSize = Math.min(property.getMaxObjectSize(), property.getMaxSize());
+        this.ttl = property.getTtl();
+        log.debug("opcooc-storage - local cache directory: [{}], maxSize: [{}], ttl: [{}]", directory, maxSize, ttl);
+    }
+
+    //--------------------------------------read start--------------------------------------
+
+    @Override
+    public InputStream getStreamObject(String bucketName, String objectName) {
+        FileChannel channel = openHit(bucketName, objectName);
+        return channel == null ? delegate.getStreamObject(bucketName, objectName) : Channels.newInputStream(channel);
+    }
+
+    @Override
+    public File getFileObject(String bucketName, String objectName, File file) {
+        try (FileChannel channel = openCached(bucketName, objectName)) {
+            if (channel == null) {
+                return delegate.getFileObject(bucketName, objectName, file);
+            }
+            IoUtils.transferTo(channel, file);
+            return file;
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public long transferObject(String bucketName, String objectName, OutputStream output) {
+        try (FileChannel channel = openCached(bucketName, objectName)) {
+            if (channel == null) {
+                return delegate.transferObject(bucketName, objectName, output);
+            }
+            return IoUtils.transferTo(channel, Channels.newChannel(output));
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public long transferObject(String bucketName, String objectName, WritableByteChannel target) {
+        try (FileChannel channel = openCached(bucketName, objectName)) {
+            if (channel == null) {
+                return delegate.transferObject(bucketName, objectName, target);
+            }
+            return IoUtils.transferTo(channel, target);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public String getFilePathObject(String bucketName, String objectName, String filePath) {
+        try (FileChannel channel = openCached(bucketName, objectName)) {
+            if (channel == null) {
+                return delegate.getFilePathObject(bucketName, objectName, filePath);
+            }
+            IoUtils.transferTo(channel, FileUtil.touch(filePath));
+            return filePath;
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public byte[] getByteObject(String bucketName, String objectName) {
+        try (FileChannel channel = openCached(bucketName, objectName)) {
+            if (channel == null || channel.size() > MAX_ARRAY_SIZE) {
+                return delegate.getByteObject(bucketName, objectName);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            readFully(channel, buffer);
+            return buffer.array();
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public ByteBuffer getByteObject(String bucketName, String objectName, ByteBuffer buffer) {
+        try (FileChannel channel = openCached(bucketName, objectName)) {
+            if (channel == null) {
+                return delegate.getByteObject(bucketName, objectName, buffer);
+            }
+            if (channel.size() > buffer.remaining()) {
+                throw new StorageException("bucketName: [%s], objectName: [%s] size [%s] exceeds buffer remaining [%s]",
+                        bucketName, objectName, channel.size(), buffer.remaining());
+            }
+            readFully(channel, buffer);
+            buffer.flip();
+            return buffer;
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new StorageException("cache file truncated, expected [%s] bytes, read [%s]", size, position);
+            }
+            position += n;
+        }
+    }
+
+    //--------------------------------------read end--------------------------------------
+
+    //--------------------------------------invalidate start--------------------------------------
+
+    @Override
+    public void shutdown() {
+        try {
+            delegate.shutdown();
+        } finally {
+            synchronized (this) {
+                entries.clear();
+                totalSize = 0;
+            }
+            clearDirectory();
+        }
+    }
+
+    @Override
+    protected void evict(String bucketName, String objectName) {
+        String key = key(bucketName, objectName);
+        invalidations.incrementAndGet();
+        oversized.remove(key);
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(key);
+            if (removed != null) {
+                totalSize -= removed.size;
+            }
+        }
+        if (removed != null) {
+            delete(removed.path);
+        }
+    }
+
+    @Override
+    protected void evictBucket(String bucketName) {
+        invalidations.incrementAndGet();
+        oversized.clear();
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.bucketName.equals(bucketName)) {
+                    iterator.remove();
+                    totalSize -= entry.size;
+                    removed.add(entry);
+                }
+            }
+        }
+        removed.forEach(entry -> delete(entry.path));
+    }
+
+    //--------------------------------------invalidate end--------------------------------------
+
+    /**
+     * @return 当前缓存的文件总大小(字节)
+     */
+    public synchronized long getCachedSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return 当前缓存的文件数
+     */
+    public synchronized int getCachedCount() {
+        return entries.size();
+    }
+
+    /**
+     * 打开对象的缓存文件, 未缓存时先加载, 对象不可缓存时返回空
+     */
+    private FileChannel openCached(String bucketName, String objectName) {
+        // 打开前缓存文件可能刚好被淘汰, 重新加载一次
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Entry entry = entry(bucketName, objectName);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                return FileChannel.open(entry.path, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                log.debug("opcooc-storage - cache file [{}] evicted before read, reload", entry.path);
+            } catch (IOException e) {
+                throw new StorageException(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 只打开有效期内已缓存的文件, 未缓存或需要重新校验时返回空, 不发起请求
+     */
+    private FileChannel openHit(String bucketName, String objectName) {
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key(bucketName, objectName));
+        }
+        if (cached == null || System.currentTimeMillis() - cached.validatedAt >= ttl) {
+            return null;
+        }
+        try {
+            return FileChannel.open(cached.path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private Entry entry(String bucketName, String objectName) {
+        String key = key(bucketName, objectName);
+        long now = System.currentTimeMillis();
+        Long oversizedAt = oversized.get(key);
+        if (oversizedAt != null && now - oversizedAt < ttl) {
+            return null;
+        }
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && now - cached.validatedAt < ttl) {
+            return cached;
+        }
+        try {
+            return load(key, bucketName, objectName, cached, now);
+        } catch (ObjectNotFoundException e) {
+            if (cached != null) {
+                evict(bucketName, objectName);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 加载或重新校验缓存, 底层为 S3 client 时使用 If-None-Match 条件请求, 否则先比较元数据中的 ETag
+     */
+    private Entry load(String key, String bucketName, String objectName, Entry cached, long now) {
+        long generation = invalidations.get();
+        FileClient target = unwrap(delegate);
+        if (target instanceof AbstractS3Client) {
+            S3Object object = ((AbstractS3Client) target).getObjectIfNoneMatch(bucketName, objectName, cached == null ? null : cached.etag);
+            if (object == null) {
+                cached.validatedAt = now;
+                return cached;
+            }
+            try (S3Object s3Object = object) {
+                long size = s3Object.getObjectMetadata().getContentLength();
+                if (size > maxObjectSize) {
+                    s3Object.getObjectContent().abort();
+                    return markOversized(key, bucketName, objectName);
+                }
+                Path path = nextPath();
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    size = IoUtils.copy(s3Object.getObjectContent(), channel, BUFFER_SIZE);
+                } catch (IOException | RuntimeException e) {
+                    s3Object.getObjectContent().abort();
+                    delete(path);
+                    throw e;
+                }
+                return put(key, new Entry(bucketName, path, size, s3Object.getObjectMetadata().getETag(), now), generation);
+            } catch (IOException e) {
+                throw new StorageException(e);
+            }
+        }
+
+        FileBasicInfo info = delegate.getObjectMetadata(bucketName, objectName);
+        if (cached != null && cached.etag != null && Objects.equals(cached.etag, info.getEtag())) {
+            cached.validatedAt = now;
+            return cached;
+        }
+        if (info.getSize() != null && info.getSize() > maxObjectSize) {
+            return markOversized(key, bucketName, objectName);
+        }
+        Path path = nextPath();
+        try {
+            delegate.getFileObject(bucketName, objectName, path.toFile());
+            // 元数据与内容之间对象可能被修改, 缓存内容不会比 ETag 更旧, 下次校验时重新加载
+            return put(key, new Entry(bucketName, path, Files.size(path), info.getEtag(), now), generation);
+        } catch (IOException e) {
+            delete(path);
+            throw new StorageException(e);
+        } catch (RuntimeException e) {
+            delete(path);
+            throw e;
+        }
+    }
+
+    private Entry markOversized(String key, String bucketName, String objectName) {
+        evict(bucketName, objectName);
+        oversized.put(key, System.currentTimeMillis());
+        return null;
+    }
+
+    private Entry put(String key, Entry entry, long generation) {
+        if (invalidations.get() != generation) {
+            // 加载期间有写入, 内容可能已过期, 保留文件但下次读取时重新校验
+            entry.validatedAt = 0;
+        }
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                totalSize -= old.size;
+                evicted.add(old.path);
+            }
+            totalSize += entry.size;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (totalSize > maxSize && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                if (eldest == entry) {
+                    break;
+                }
+                iterator.remove();
+                totalSize -= eldest.size;
+                evicted.add(eldest.path);
+            }
+        }
+        evicted.forEach(LocalCacheFileClient::delete);
+        if (invalidations.get() != generation) {
+            // 写入期间发生的失效可能早于 entries.put, 下次读取时重新校验
+            entry.validatedAt = 0;
+        }
+        return entry;
+    }
+
+    /**
+     * 删除本实例的缓存目录, 目录中只有本实例创建的 .cache 文件
+     */
+    private void clearDirectory() {
+        File[] files = directory.toFile().listFiles((dir, fileName) -> fileName.endsWith(CACHE_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                delete(file.toPath());
+            }
+        }
+        delete(directory);
+    }
+
+    private Path nextPath() {
+        return directory.resolve(sequence.incrementAndGet() + CACHE_SUFFIX);
+    }
+
+    private static String key(String bucketName, String objectName) {
+        return bucketName + '\n' + objectName;
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("opcooc-storage - delete cache file [{}] failed: {}", path, e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+
+        private final String bucketName;
+
+        private final Path path;
+
+        private final long size;
+
+        private final String etag;
+
+        private volatile long validatedAt;
+
+        private Entry(String bucketName, Path path, long size, String etag, long validatedAt) {
+            this.bucketName = bucketName;
+            this.path = path;
+            this.size = size;
+            this.etag = etag;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import cn.hutool.core.lang.Assert;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.MetadataCacheProperty;
+import com.opcooc.storage.config.ResultConverter;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.utils.LruCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对象元数据缓存
+ * <p>
+ * 缓存 getObjectMetadata / objectExist 的结果, 对象不存在时按 negativeTtl 缓存;
+ * objectExist 未命中时调用被装饰 client 的 objectExist, 只缓存存在性, 之后的 getObjectMetadata 仍需查询一次.
+ * 通过本 client 的上传、复制、删除会使对应缓存失效, 其他途径的修改在缓存过期后生效
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public class MetadataCacheFileClient extends DelegatingFileClient {
+
+    private final LruCache<String, Entry> cache;
+
+    private final long ttl;
+
+    private final long negativeTtl;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 失效次数, 查询期间发生失效时结果可能已过期, 不放入缓存
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param delegate 被装饰的 client
+     * @param property 缓存配置
+     */
+    public MetadataCacheFileClient(FileClient delegate, MetadataCacheProperty property) {
+        super(delegate);
+        this.cache = new LruCache<>(Math.max(1, property.getMaxSize()));
+        this.ttl = property.getTtl();
+        this.negativeTtl = property.getNegativeTtl();
+    }
+
+    //--------------------------------------metadata start--------------------------------------
+
+    @Override
+    public FileBasicInfo getObjectMetadata(String bucketName, String objectName) {
+        Entry entry = lookup(bucketName, objectName);
+        if (!entry.exists) {
+            throw new ObjectNotFoundException(bucketName, objectName);
+        }
+        return copyOf(entry.info);
+    }
+
+    @Override
+    public <T> T getObjectMetadata(String bucketName, String objectName, ResultConverter<T> resultConverter) {
+        Assert.notNull(resultConverter, "'resultConverter' cannot be null");
+        return resultConverter.convert(getObjectMetadata(bucketName, objectName));
+    }
+
+    @Override
+    public boolean objectExist(String bucketName, String objectName) {
+        String key = key(bucketName, objectName);
+        Entry entry = cached(key, false);
+        if (entry != null) {
+            return entry.exists;
+        }
+        long generation = invalidations.get();
+        long now = System.currentTimeMillis();
+        // 使用被装饰 client 自身的存在性判断, 不依赖其对象不存在时抛出的异常类型
+        boolean exists = delegate.objectExist(bucketName, objectName);
+        store(key, new Entry(exists, null, now + (exists ? ttl : negativeTtl)), generation);
+        return exists;
+    }
+
+    /**
+     * 查询缓存, 未命中、已过期或只缓存了存在性时发起 HEAD 请求并缓存结果(包括对象不存在)
+     */
+    private Entry lookup(String bucketName, String objectName) {
+        String key = key(bucketName, objectName);
+        Entry entry = cached(key, true);
+        if (entry != null) {
+            return entry;
+        }
+        long generation = invalidations.get();
+        long now = System.currentTimeMillis();
+        try {
+            entry = new Entry(true, delegate.getObjectMetadata(bucketName, objectName), now + ttl);
+        } catch (ObjectNotFoundException e) {
+            entry = new Entry(false, null, now + negativeTtl);
+        }
+        store(key, entry, generation);
+        return entry;
+    }
+
+    /**
+     * 获取有效期内的缓存并记录命中情况, needInfo 为 true 时只缓存了存在性的条目视为未命中
+     */
+    private Entry cached(String key, boolean needInfo) {
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis() && (!needInfo || entry.info != null || !entry.exists)) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 查询期间没有发生失效时才写入缓存
+     */
+    private void store(String key, Entry entry, long generation) {
+        if (entry.expiresAt > System.currentTimeMillis() && invalidations.get() == generation) {
+            cache.put(key, entry);
+            // 检查与写入之间可能有失效发生, 写入后再次检查, 避免缓存失效前的结果
+            if (invalidations.get() != generation) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    //--------------------------------------metadata end--------------------------------------
+
+    //--------------------------------------copy start--------------------------------------
+
+    @Override
+    public void copyObject(String bucketName, String objectName, String srcBucketName, String srcObjectName) {
+        // 源对象元数据已缓存时带上大小, 小对象复制可省去一次 HEAD 请求
+        Entry entry = cache.get(key(bucketName, objectName));
+        if (entry != null && entry.info != null && entry.info.getSize() != null && entry.expiresAt > System.currentTimeMillis()) {
+            copyObject(bucketName, objectName, srcBucketName, srcObjectName, entry.info.getSize());
+        } else {
+            super.copyObject(bucketName, objectName, srcBucketName, srcObjectName);
+        }
+    }
+
+    //--------------------------------------copy end--------------------------------------
+
+    //--------------------------------------invalidate start--------------------------------------
+
+    @Override
+    protected void evict(String bucketName, String objectName) {
+        invalidations.incrementAndGet();
+        cache.remove(key(bucketName, objectName));
+    }
+
+    @Override
+    protected void evictBucket(String bucketName) {
+        invalidations.incrementAndGet();
+        cache.clear();
+    }
+
+    //--------------------------------------invalidate end--------------------------------------
+
+    /**
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 未命中(发起 HEAD 请求)次数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 因超出容量被淘汰的条目数
+     */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * @return 当前缓存条数
+     */
+    public int getSize() {
+        return cache.size();
+    }
+
+    private static String key(String bucketName, String objectName) {
+        return bucketName + '\n' + objectName;
+    }
+
+    private static final class Entry {
+
+        private final boolean exists;
+
+        /**
+         * 只通过 objectExist 查询时为空
+         */
+        private final FileBasicInfo info;
+
+        private final long expiresAt;
+
+        private Entry(boolean exists, FileBasicInfo info, long expiresAt) {
+            this.exists = exists;
+            this.info = info;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -44,6 +44,7 @@ public class MinIOClient extends AbstractS3Client {
         AmazonS3 s3 = AmazonS3ClientBuilder.standard()
                 .withPathStyleAccessEnabled(true)
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withClientConfiguration(buildClientConfiguration(config))
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
                         config.getEndPoint(),
                         source.name()))
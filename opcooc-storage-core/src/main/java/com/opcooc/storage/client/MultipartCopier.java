@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.exception.StorageException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 服务端复制引擎
+ * <p>
+ * 调用方提供的源对象大小小于阈值时直接使用单次 CopyObject, 不再获取源对象元数据; 大小未知时先获取元数据,
+ * 小于阈值使用单次 CopyObject, 不小于阈值时使用分片复制, 各分片在传输线程池中并发执行 UploadPartCopy,
+ * 同时在途的分片数受限, 并以源对象的 ETag 作为 If-Match 条件, 复制期间源对象被修改时失败.
+ * 目标对象保留源对象的 Content-Type 等元数据, 任一分片失败时中止分片上传
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class MultipartCopier {
+
+    /**
+     * 单个分片(及单次 CopyObject)的最大大小
+     */
+    static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024;
+
+    /**
+     * 分片复制时从源对象保留的标准元数据
+     */
+    private static final String[] COPIED_HEADERS = {Headers.CONTENT_TYPE, Headers.CONTENT_ENCODING, Headers.CONTENT_DISPOSITION,
+            Headers.CONTENT_LANGUAGE, Headers.CACHE_CONTROL, Headers.EXPIRES};
+
+    private final AmazonS3 client;
+
+    private final ExecutorService executor;
+
+    private final int maxInFlight;
+
+    /**
+     * @param client      s3 client
+     * @param executor    执行分片复制的线程池
+     * @param maxInFlight 同时在途的分片数
+     */
+    MultipartCopier(AmazonS3 client, ExecutorService executor, int maxInFlight) {
+        this.client = client;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * 复制对象
+     *
+     * @param srcBucketName 源存储桶名称
+     * @param srcObjectName 源文件完整路径
+     * @param bucketName    目标存储桶名称
+     * @param objectName    目标文件完整路径
+     * @param size          源对象大小, 小于0时未知
+     * @param threshold     分片复制阈值
+     * @param partSize      分片大小
+     * @throws Exception 复制失败
+     */
+    void copy(String srcBucketName, String srcObjectName, String bucketName, String objectName, long size, long threshold, long partSize) throws Exception {
+        long singleCopyLimit = Math.min(Math.max(threshold, MultipartUploader.MIN_PART_SIZE), MAX_PART_SIZE);
+        if (size >= 0 && size < singleCopyLimit) {
+            try {
+                client.copyObject(new CopyObjectRequest(srcBucketName, srcObjectName, bucketName, objectName));
+                return;
+            } catch (AmazonS3Exception e) {
+                // 大小只是调用方的提示值, 源对象已超过单次复制上限时按实际大小重新复制
+                if (e.getStatusCode() != 400) {
+                    throw e;
+                }
+                log.debug("opcooc-storage - srcBucketName: [{}], srcObjectName: [{}], copy with size hint [{}] failed: {}",
+                        srcBucketName, srcObjectName, size, e.getMessage());
+            }
+        }
+
+        ObjectMetadata source = client.getObjectMetadata(srcBucketName, srcObjectName);
+        long actualSize = source.getContentLength();
+        String etag = quote(source.getETag());
+        if (actualSize < singleCopyLimit) {
+            CopyObjectRequest request = new CopyObjectRequest(srcBucketName, srcObjectName, bucketName, objectName);
+            if (etag != null) {
+                request.withMatchingETagConstraint(etag);
+            }
+            CopyObjectResult result = client.copyObject(request);
+            if (result == null) {
+                throw new StorageException("srcBucketName: [%s], srcObjectName: [%s] modified during copy", srcBucketName, srcObjectName);
+            }
+            return;
+        }
+
+        long actualPartSize = Math.min(MAX_PART_SIZE, Math.max(Math.max(partSize, MultipartUploader.MIN_PART_SIZE),
+                (actualSize + MultipartUploader.MAX_PARTS - 1) / MultipartUploader.MAX_PARTS));
+        int partCount = (int) ((actualSize + actualPartSize - 1) / actualPartSize);
+
+        String uploadId = client.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectName, copyMetadata(source))).getUploadId();
+        log.debug("opcooc-storage - srcBucketName: [{}], srcObjectName: [{}], bucketName: [{}], objectName: [{}], multipart copy: [{}], parts: [{}]",
+                srcBucketName, srcObjectName, bucketName, objectName, uploadId, partCount);
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Semaphore permits = new Semaphore(maxInFlight);
+        List<Future<PartETag>> parts = new ArrayList<>(partCount);
+        try {
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                checkFailure(failure);
+                long firstByte = (partNumber - 1) * actualPartSize;
+                long lastByte = Math.min(firstByte + actualPartSize, actualSize) - 1;
+                CopyPartRequest request = new CopyPartRequest()
+                        .withSourceBucketName(srcBucketName)
+                        .withSourceKey(srcObjectName)
+                        .withDestinationBucketName(bucketName)
+                        .withDestinationKey(objectName)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withFirstByte(firstByte)
+                        .withLastByte(lastByte);
+                if (etag != null) {
+                    request.setMatchingETagConstraints(Collections.singletonList(etag));
+                }
+                // 在途分片已满时阻塞, 避免大对象的分片占满共享的传输线程池队列
+                permits.acquire();
+                try {
+                    parts.add(executor.submit(() -> {
+                        try {
+                            // 已失败的复制不再发送剩余分片
+                            checkFailure(failure);
+                            CopyPartResult result = client.copyPart(request);
+                            if (result == null) {
+                                throw new StorageException("srcBucketName: [%s], srcObjectName: [%s] modified during copy", srcBucketName, srcObjectName);
+                            }
+                            return result.getPartETag();
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                            throw e;
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            List<PartETag> partETags = new ArrayList<>(partCount);
+            for (Future<PartETag> part : parts) {
+                try {
+                    partETags.add(part.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+            log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], complete multipart copy: [{}]", bucketName, objectName, uploadId);
+        } catch (Exception e) {
+            abort(bucketName, objectName, uploadId, parts, failure);
+            throw e;
+        }
+    }
+
+    /**
+     * 分片上传及跨 client 上传不会自动复制源对象元数据, 需在上传时指定
+     */
+    static ObjectMetadata copyMetadata(ObjectMetadata source) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        // 为空的值不能设置, 否则 SDK 构建请求头时报错
+        for (String header : COPIED_HEADERS) {
+            Object value = source.getRawMetadataValue(header);
+            if (value != null) {
+                metadata.setHeader(header, value);
+            }
+        }
+        metadata.setUserMetadata(source.getUserMetadata());
+        return metadata;
+    }
+
+    /**
+     * SDK 返回的 ETag 不含引号, 条件请求头按 RFC 7232 使用带引号的格式, 源对象没有 ETag 时不加条件
+     */
+    private static String quote(String etag) {
+        if (etag == null || etag.isEmpty()) {
+            return null;
+        }
+        return etag.startsWith("\"") ? etag : '"' + etag + '"';
+    }
+
+    private static void checkFailure(AtomicReference<Exception> failure) throws Exception {
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * 等待已提交的分片结束后中止上传, 避免残留分片
+     */
+    private void abort(String bucketName, String objectName, String uploadId, List<Future<PartETag>> parts, AtomicReference<Exception> failure) {
+        failure.compareAndSet(null, new StorageException("multipart copy aborted"));
+        boolean interrupted = false;
+        for (Future<PartETag> part : parts) {
+            while (true) {
+                try {
+                    part.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (Exception ignored) {
+                    break;
+                }
+            }
+        }
+        try {
+            client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+            log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], abort multipart copy: [{}]", bucketName, objectName, uploadId);
+        } catch (Exception e) {
+            log.warn("opcooc-storage - bucketName: [{}], objectName: [{}], abort multipart copy: [{}] failed", bucketName, objectName, uploadId, e);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
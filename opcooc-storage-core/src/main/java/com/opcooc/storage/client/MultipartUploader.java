@@ -0,0 +1,461 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分片上传引擎
+ * <p>
+ * 未知长度的 InputStream 先将首个分片读取到按需扩容的独立数组, 数据不足一个分片时直接使用 putObject 上传,
+ * 不占用缓冲区池; 超过一个分片时转为分片上传, 后续分片读取到缓冲区池中的缓冲区, 读取的同时在传输线程池中上传已读取的分片,
+ * 缓冲区上传完成后归还复用
+ * </p>
+ * <p>
+ * 本地文件按分片在传输线程池中通过 FileChannel 按位置并发读取并上传, 全部分片成功后完成上传, 否则中止上传
+ * </p>
+ * <p>
+ * 已知长度的 InputStream(如跨 client 迁移)按长度确定分片大小, 在调用线程中顺序上传, 分片数据直接从流中读取, 不占用缓冲区池
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class MultipartUploader {
+
+    /**
+     * 除最后一个分片外的最小分片大小
+     */
+    static final long MIN_PART_SIZE = 5 * 1024 * 1024L;
+
+    /**
+     * 单个对象的最大分片数
+     */
+    static final int MAX_PARTS = 10000;
+
+    /**
+     * 读取首个分片时数组的初始大小
+     */
+    private static final int FIRST_CHUNK_SIZE = 64 * 1024;
+
+    private final AmazonS3 client;
+
+    private final ExecutorService executor;
+
+    private final PartBufferPool bufferPool;
+
+    MultipartUploader(AmazonS3 client, ExecutorService executor, PartBufferPool bufferPool) {
+        this.client = client;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * 上传未知长度的文件流
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param stream     文件流
+     * @param metadata   对象元数据(无需设置长度)
+     * @return 文件上传后的信息
+     * @throws Exception 上传失败
+     */
+    FileBasicInfo upload(String bucketName, String objectName, InputStream stream, ObjectMetadata metadata) throws Exception {
+        int partSize = bufferPool.bufferSize();
+        byte[] first = new byte[Math.min(FIRST_CHUNK_SIZE, partSize)];
+        int length = 0;
+        while (length < partSize) {
+            if (length == first.length) {
+                first = Arrays.copyOf(first, (int) Math.min(partSize, first.length * 2L));
+            }
+            int read = stream.read(first, length, first.length - length);
+            if (read == IoUtils.EOF) {
+                break;
+            }
+            length += read;
+        }
+
+        if (length < partSize) {
+            metadata.setContentLength(length);
+            PutObjectResult result = client.putObject(
+                    new PutObjectRequest(bucketName, objectName, new ByteArrayInputStream(first, 0, length), metadata));
+            return AbstractS3Client.uploadedInfo(bucketName, objectName, length, result.getETag(), result.getVersionId());
+        }
+
+        MultipartSession session = new MultipartSession(bucketName, objectName, metadata);
+        byte[] buffer = null;
+        try {
+            long size = length;
+            int partNumber = 1;
+            // 首个分片不属于缓冲区池, 无需归还
+            session.submit(partNumber, null, streamPart(first, length));
+            while (length == bufferPool.bufferSize()) {
+                session.checkFailure();
+                buffer = session.acquire();
+                length = IoUtils.read(stream, buffer);
+                if (length == 0) {
+                    break;
+                }
+                if (partNumber == MAX_PARTS) {
+                    throw new StorageException("bucketName: [%s], objectName: [%s] exceeds %s parts, please increase multipartPartSize",
+                            bucketName, objectName, MAX_PARTS);
+                }
+                session.submit(++partNumber, buffer, streamPart(buffer, length));
+                buffer = null;
+                size += length;
+            }
+            bufferPool.release(buffer);
+            CompleteMultipartUploadResult result = session.complete();
+            return AbstractS3Client.uploadedInfo(bucketName, objectName, size, result.getETag(), result.getVersionId());
+        } catch (Exception e) {
+            bufferPool.release(buffer);
+            session.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * 上传已知长度的文件流, 小于阈值时直接使用 putObject 上传, 否则在调用线程中按顺序从流中读取并上传各分片, 不占用缓冲区池
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param stream     文件流, 不会被关闭
+     * @param size       文件长度
+     * @param metadata   对象元数据(无需设置长度)
+     * @param threshold  分片上传阈值
+     * @return 文件上传后的信息
+     * @throws Exception 上传失败
+     */
+    FileBasicInfo upload(String bucketName, String objectName, InputStream stream, long size,
+                         ObjectMetadata metadata, long threshold) throws Exception {
+        if (size < Math.max(threshold, MIN_PART_SIZE)) {
+            metadata.setContentLength(size);
+            PutObjectResult result = client.putObject(
+                    new PutObjectRequest(bucketName, objectName, new PartInputStream(stream, size), metadata));
+            return AbstractS3Client.uploadedInfo(bucketName, objectName, size, result.getETag(), result.getVersionId());
+        }
+
+        // 分片数不能超过上限, 流只能顺序读取, 分片逐个上传
+        long partSize = Math.max(bufferPool.bufferSize(), (size + MAX_PARTS - 1) / MAX_PARTS);
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        MultipartSession session = new MultipartSession(bucketName, objectName, metadata);
+        try {
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                long length = Math.min(partSize, size - (partNumber - 1) * partSize);
+                session.upload(partNumber, () -> new UploadPartRequest()
+                        .withInputStream(new PartInputStream(stream, length))
+                        .withPartSize(length));
+            }
+            CompleteMultipartUploadResult result = session.complete();
+            return AbstractS3Client.uploadedInfo(bucketName, objectName, size, result.getETag(), result.getVersionId());
+        } catch (Exception e) {
+            session.abort();
+            throw e;
+        }
+    }
+
+    private static PartSource streamPart(byte[] buffer, int length) {
+        return () -> new UploadPartRequest()
+                .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+                .withPartSize(length);
+    }
+
+    /**
+     * 上传本地文件, 小于阈值时直接使用 putObject 上传
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param file       文件
+     * @param metadata   对象元数据(无需设置长度)
+     * @param threshold  分片上传阈值
+     * @return 文件上传后的信息
+     * @throws Exception 上传失败
+     */
+    FileBasicInfo upload(String bucketName, String objectName, File file, ObjectMetadata metadata, long threshold) throws Exception {
+        long size = file.length();
+        if (size < Math.max(threshold, MIN_PART_SIZE)) {
+            PutObjectResult result = client.putObject(new PutObjectRequest(bucketName, objectName, file).withMetadata(metadata));
+            return AbstractS3Client.uploadedInfo(bucketName, objectName, size, result.getETag(), result.getVersionId());
+        }
+
+        // 分片数不能超过上限, 超出缓冲区大小的分片由 SDK 直接按偏移读取文件
+        long partSize = Math.max(bufferPool.bufferSize(), (size + MAX_PARTS - 1) / MAX_PARTS);
+        boolean buffered = partSize <= bufferPool.bufferSize();
+        int partCount = (int) ((size + partSize - 1) / partSize);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MultipartSession session = new MultipartSession(bucketName, objectName, metadata);
+            try {
+                for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                    session.checkFailure();
+                    long position = (partNumber - 1) * partSize;
+                    int length = (int) Math.min(partSize, size - position);
+                    if (buffered) {
+                        byte[] buffer = session.acquire();
+                        try {
+                            session.submit(partNumber, buffer, () -> {
+                                readFully(channel, ByteBuffer.wrap(buffer, 0, length), position);
+                                return new UploadPartRequest()
+                                        .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+                                        .withPartSize(length);
+                            });
+                        } catch (RuntimeException e) {
+                            bufferPool.release(buffer);
+                            throw e;
+                        }
+                    } else {
+                        session.submit(partNumber, null, () -> new UploadPartRequest()
+                                .withFile(file)
+                                .withFileOffset(position)
+                                .withPartSize(length));
+                    }
+                }
+                CompleteMultipartUploadResult result = session.complete();
+                return AbstractS3Client.uploadedInfo(bucketName, objectName, size, result.getETag(), result.getVersionId());
+            } catch (Exception e) {
+                session.abort();
+                throw e;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("file truncated during upload");
+            }
+        }
+    }
+
+    /**
+     * 从共享的文件流中读取一个分片, 最多读取 length 字节, 关闭时不关闭原始流
+     */
+    private static final class PartInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private PartInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return IoUtils.EOF;
+            }
+            int b = in.read();
+            if (b != IoUtils.EOF) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return IoUtils.EOF;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // 原始流由调用方关闭
+        }
+    }
+
+    /**
+     * 分片请求, 在传输线程中构建(可在此读取分片数据)
+     */
+    @FunctionalInterface
+    private interface PartSource {
+
+        UploadPartRequest load() throws IOException;
+    }
+
+    /**
+     * 一次分片上传, 负责分片任务的提交, 完成与中止
+     */
+    private final class MultipartSession {
+
+        private final String bucketName;
+
+        private final String objectName;
+
+        private final String uploadId;
+
+        private final List<Future<PartETag>> parts = new ArrayList<>();
+
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        MultipartSession(String bucketName, String objectName, ObjectMetadata metadata) {
+            this.bucketName = bucketName;
+            this.objectName = objectName;
+            this.uploadId = client.initiateMultipartUpload(
+                    new InitiateMultipartUploadRequest(bucketName, objectName, metadata)).getUploadId();
+            log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], initiate multipart upload: [{}]", bucketName, objectName, uploadId);
+        }
+
+        /**
+         * 提交分片上传任务, 缓冲区(可为空)在任务结束后归还
+         */
+        void submit(int partNumber, byte[] buffer, PartSource source) {
+            parts.add(executor.submit(() -> {
+                try {
+                    // 已失败的上传不再发送剩余分片
+                    checkFailure();
+                    return uploadPart(partNumber, source);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    bufferPool.release(buffer);
+                }
+            }));
+        }
+
+        /**
+         * 在调用线程中上传分片
+         */
+        void upload(int partNumber, PartSource source) throws Exception {
+            try {
+                parts.add(CompletableFuture.completedFuture(uploadPart(partNumber, source)));
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            }
+        }
+
+        private PartETag uploadPart(int partNumber, PartSource source) throws IOException {
+            UploadPartRequest request = source.load()
+                    .withBucketName(bucketName)
+                    .withKey(objectName)
+                    .withUploadId(uploadId)
+                    .withPartNumber(partNumber);
+            return client.uploadPart(request).getPartETag();
+        }
+
+        /**
+         * 获取分片缓冲区, 上传未失败时一直等待(除非配置了等待超时), 已失败时抛出失败原因
+         */
+        byte[] acquire() throws Exception {
+            byte[] buffer = bufferPool.acquire(() -> failure.get() != null);
+            if (buffer == null) {
+                checkFailure();
+            }
+            return buffer;
+        }
+
+        void checkFailure() throws Exception {
+            Exception e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        CompleteMultipartUploadResult complete() throws Exception {
+            List<PartETag> partETags = new ArrayList<>(parts.size());
+            for (Future<PartETag> part : parts) {
+                try {
+                    partETags.add(part.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            CompleteMultipartUploadResult result = client.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+            log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], complete multipart upload: [{}], parts: [{}]",
+                    bucketName, objectName, uploadId, partETags.size());
+            return result;
+        }
+
+        /**
+         * 等待已提交的分片结束后中止上传, 避免残留分片
+         */
+        void abort() {
+            failure.compareAndSet(null, new StorageException("multipart upload aborted"));
+            boolean interrupted = false;
+            for (Future<PartETag> part : parts) {
+                while (true) {
+                    try {
+                        part.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (Exception ignored) {
+                        break;
+                    }
+                }
+            }
+            try {
+                client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+                log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], abort multipart upload: [{}]", bucketName, objectName, uploadId);
+            } catch (Exception e) {
+                log.warn("opcooc-storage - bucketName: [{}], objectName: [{}], abort multipart upload: [{}] failed", bucketName, objectName, uploadId, e);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
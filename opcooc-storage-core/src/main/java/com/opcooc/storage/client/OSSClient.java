@@ -24,8 +24,17 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.opcooc.storage.config.ClientSource;
 import com.opcooc.storage.config.StorageProperty;
+import com.opcooc.storage.exception.StorageException;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
 /**
  * @author shenqicheng
  * @since 2020-08-22 10:30
@@ -46,6 +55,7 @@ public class OSSClient extends AbstractS3Client {
                 .standard()
                 .withPathStyleAccessEnabled(false)
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withClientConfiguration(buildClientConfiguration(config))
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
                         config.getEndPoint(),
                         source.name()))
@@ -56,5 +66,21 @@ public class OSSClient extends AbstractS3Client {
         return client;
     }
 
-
+    /**
+     * 使用 OSS 原生的表单上传签名(OSSAccessKeyId + HmacSHA1)
+     */
+    @Override
+    Map<String, String> signPostPolicy(String bucketName, String objectName, Date expiration, PostPolicyBuilder policy, Map<String, String> fields) {
+        String encoded = policy.build(expiration);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(config.getSecretKey().getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            fields.put("OSSAccessKeyId", config.getAccessKey());
+            fields.put("policy", encoded);
+            fields.put("Signature", Base64.getEncoder().encodeToString(mac.doFinal(encoded.getBytes(StandardCharsets.UTF_8))));
+            return fields;
+        } catch (GeneralSecurityException e) {
+            throw new StorageException(e);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 按页懒加载的对象列举迭代器
+ * <p>
+ * 只在当前页消费完后才取下一页; 指定预取线程池时, 取到一页后立即在后台预取下一页.
+ * 非递归列举使用 "/" 分隔符, 公共前缀作为文件夹与文件按 key 顺序合并返回
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+final class ObjectListingIterator implements Iterator<FileBasicInfo>, Closeable {
+
+    static final String DELIMITER = "/";
+
+    private static final int MAX_KEYS = 1000;
+
+    private final AmazonS3 client;
+
+    private final String bucketName;
+
+    private final String prefix;
+
+    private final boolean recursive;
+
+    private final String startAfter;
+
+    private final Executor prefetchExecutor;
+
+    private Iterator<FileBasicInfo> current = Collections.emptyIterator();
+
+    private CompletableFuture<ListObjectsV2Result> prefetch;
+
+    private String continuationToken;
+
+    private boolean lastPage;
+
+    /**
+     * @param client           s3 client
+     * @param bucketName       存储桶名称
+     * @param prefix           指定前缀
+     * @param recursive        是否递归
+     * @param prefetchExecutor 预取下一页的线程池, 为空时不预取
+     */
+    ObjectListingIterator(AmazonS3 client, String bucketName, String prefix, boolean recursive, Executor prefetchExecutor) {
+        this(client, bucketName, prefix, recursive, null, prefetchExecutor);
+    }
+
+    /**
+     * @param client           s3 client
+     * @param bucketName       存储桶名称
+     * @param prefix           指定前缀
+     * @param recursive        是否递归
+     * @param startAfter       从该 key 之后开始列举, 为空时从头开始
+     * @param prefetchExecutor 预取下一页的线程池, 为空时不预取
+     */
+    ObjectListingIterator(AmazonS3 client, String bucketName, String prefix, boolean recursive, String startAfter, Executor prefetchExecutor) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.recursive = recursive;
+        this.startAfter = startAfter;
+        this.prefetchExecutor = prefetchExecutor;
+        if (prefetchExecutor != null) {
+            this.prefetch = CompletableFuture.supplyAsync(() -> fetch(null), prefetchExecutor);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            current = toInfos(bucketName, nextPage()).iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public FileBasicInfo next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        lastPage = true;
+        current = Collections.emptyIterator();
+        if (prefetch != null) {
+            prefetch.cancel(false);
+            prefetch = null;
+        }
+    }
+
+    private ListObjectsV2Result nextPage() {
+        ListObjectsV2Result page;
+        if (prefetch != null) {
+            try {
+                page = prefetch.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof StorageException ? (StorageException) cause : new StorageException((Exception) cause);
+            } finally {
+                prefetch = null;
+            }
+        } else {
+            page = fetch(continuationToken);
+        }
+
+        if (page.isTruncated()) {
+            continuationToken = page.getNextContinuationToken();
+            if (prefetchExecutor != null) {
+                String token = continuationToken;
+                prefetch = CompletableFuture.supplyAsync(() -> fetch(token), prefetchExecutor);
+            }
+        } else {
+            lastPage = true;
+        }
+        return page;
+    }
+
+    private ListObjectsV2Result fetch(String token) {
+        try {
+            ListObjectsV2Request request = listRequest(bucketName, prefix, recursive, token);
+            if (token == null && startAfter != null) {
+                request.setStartAfter(startAfter);
+            }
+            return client.listObjectsV2(request);
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * 构建单页列举请求
+     */
+    static ListObjectsV2Request listRequest(String bucketName, String prefix, boolean recursive, String token) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMaxKeys(MAX_KEYS)
+                .withContinuationToken(token);
+        if (!recursive) {
+            request.setDelimiter(DELIMITER);
+        }
+        return request;
+    }
+
+    /**
+     * 文件与公共前缀各自有序, 合并为按 key 有序的结果
+     */
+    static List<FileBasicInfo> toInfos(String bucketName, ListObjectsV2Result page) {
+        List<S3ObjectSummary> objects = page.getObjectSummaries();
+        List<String> folders = page.getCommonPrefixes();
+        List<FileBasicInfo> infos = new ArrayList<>(objects.size() + folders.size());
+        int i = 0;
+        int j = 0;
+        while (i < objects.size() || j < folders.size()) {
+            if (j == folders.size() || (i < objects.size() && objects.get(i).getKey().compareTo(folders.get(j)) < 0)) {
+                infos.add(toInfo(bucketName, objects.get(i++)));
+            } else {
+                infos.add(toFolder(bucketName, folders.get(j++)));
+            }
+        }
+        return infos;
+    }
+
+    private static FileBasicInfo toInfo(String bucketName, S3ObjectSummary object) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setKey(object.getKey());
+        info.setSize(object.getSize());
+        info.setBucketName(bucketName);
+        info.setLastModified(object.getLastModified());
+        info.setEtag(object.getETag());
+        return info;
+    }
+
+    private static FileBasicInfo toFolder(String bucketName, String folder) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setKey(folder);
+        info.setSize(0L);
+        info.setBucketName(bucketName);
+        info.setFolder(true);
+        return info;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.ListPartitioner;
+import com.opcooc.storage.exception.StorageException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 按前缀分区的并发列举
+ * <p>
+ * 未指定分区策略时通过 "/" 分隔符逐层发现子前缀, 直到分区数不少于并发数或达到最大深度;
+ * 发现阶段每个前缀只取一页, 同层前缀并发获取, 页内的直属文件直接作为结果返回不再重复列举,
+ * 一页未取完的前缀不再细分, 整体作为递归分区.
+ * 各分区在 client 共享的列举线程池中执行, 每次列举最多 concurrency 个任务同时运行,
+ * 无序模式通过有界队列合并, 有序模式按 key 多路归并,
+ * 且只在需要时打开分区(分区前缀不大于当前最小 key), 并提前预取后续 concurrency 个分区
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class ParallelObjectLister {
+
+    private static final int MAX_DISCOVERY_DEPTH = 3;
+
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final Object END = new Object();
+
+    private final AmazonS3 client;
+
+    private final String bucketName;
+
+    private final int concurrency;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param client      s3 client
+     * @param bucketName  存储桶名称
+     * @param concurrency 并发数
+     * @param executor    列举线程池, 由调用方管理生命周期
+     */
+    ParallelObjectLister(AmazonS3 client, String bucketName, int concurrency, ExecutorService executor) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.concurrency = Math.max(1, concurrency);
+        this.executor = executor;
+    }
+
+    /**
+     * 并发列举
+     *
+     * @param prefix      指定前缀
+     * @param partitioner 分区策略, 为空时通过分隔符发现
+     * @param sorted      是否按 key 有序返回
+     * @return 文件信息流, 使用完毕后需关闭
+     */
+    Stream<FileBasicInfo> stream(String prefix, ListPartitioner partitioner, boolean sorted) {
+        List<Partition> partitions = partitioner == null
+                ? discover(prefix == null ? "" : prefix)
+                : partitioner.partition(bucketName, prefix).stream().map(p -> new Partition(p, null)).collect(Collectors.toList());
+        log.debug("opcooc-storage - bucketName: [{}], prefix: [{}], list [{}] partitions, sorted: [{}]", bucketName, prefix, partitions.size(), sorted);
+        CloseableIterator iterator = sorted ? new SortedIterator(partitions) : new QueueIterator(partitions);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * 通过分隔符逐层发现子前缀, 每个前缀只取第一页:
+     * 取完的前缀, 页内直属文件作为已加载分区, 公共前缀进入下一层; 未取完的前缀整体作为递归分区
+     */
+    private List<Partition> discover(String prefix) {
+        List<Partition> partitions = new ArrayList<>();
+        List<String> level = Collections.singletonList(prefix);
+        for (int depth = 0; depth < MAX_DISCOVERY_DEPTH && !level.isEmpty() && partitions.size() + level.size() < concurrency; depth++) {
+            List<CompletableFuture<ListObjectsV2Result>> pages = new ArrayList<>(level.size());
+            for (String levelPrefix : level) {
+                pages.add(CompletableFuture.supplyAsync(() -> firstPage(levelPrefix), executor));
+            }
+            List<String> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                ListObjectsV2Result page = join(pages.get(i));
+                if (page.isTruncated()) {
+                    partitions.add(new Partition(level.get(i), null));
+                    continue;
+                }
+                List<FileBasicInfo> objects = new ArrayList<>();
+                for (FileBasicInfo info : ObjectListingIterator.toInfos(bucketName, page)) {
+                    if (info.isFolder()) {
+                        next.add(info.getKey());
+                    } else {
+                        objects.add(info);
+                    }
+                }
+                if (!objects.isEmpty()) {
+                    partitions.add(new Partition(level.get(i), objects));
+                }
+            }
+            level = next;
+        }
+        level.forEach(p -> partitions.add(new Partition(p, null)));
+        return partitions;
+    }
+
+    private ListObjectsV2Result firstPage(String prefix) {
+        try {
+            return client.listObjectsV2(ObjectListingIterator.listRequest(bucketName, prefix, false, null));
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private static ListObjectsV2Result join(CompletableFuture<ListObjectsV2Result> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof StorageException ? (StorageException) cause : new StorageException((Exception) cause);
+        }
+    }
+
+    /**
+     * 列举分区, objects 不为空时为发现阶段已加载的直属文件, 否则递归列举该前缀
+     */
+    private static final class Partition {
+
+        private final String prefix;
+
+        private final List<FileBasicInfo> objects;
+
+        Partition(String prefix, List<FileBasicInfo> objects) {
+            this.prefix = prefix;
+            this.objects = objects;
+        }
+    }
+
+    private interface CloseableIterator extends Iterator<FileBasicInfo> {
+
+        void close();
+    }
+
+    /**
+     * 无序合并: 最多 concurrency 个任务从共享队列中领取分区, 结果写入有界队列
+     */
+    private final class QueueIterator implements CloseableIterator {
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        private final Queue<Partition> pending;
+
+        private final List<Future<?>> workers = new ArrayList<>();
+
+        private Object next;
+
+        private volatile boolean done;
+
+        QueueIterator(List<Partition> partitions) {
+            this.pending = new ConcurrentLinkedQueue<>(partitions);
+            int size = Math.min(concurrency, partitions.size());
+            if (size == 0) {
+                queue.add(END);
+                return;
+            }
+            AtomicInteger remaining = new AtomicInteger(size);
+            for (int i = 0; i < size; i++) {
+                workers.add(executor.submit(() -> work(remaining)));
+            }
+        }
+
+        private void work(AtomicInteger remaining) {
+            try {
+                Partition partition;
+                while (!done && (partition = pending.poll()) != null) {
+                    if (partition.objects != null) {
+                        for (FileBasicInfo info : partition.objects) {
+                            queue.put(info);
+                        }
+                        continue;
+                    }
+                    ObjectListingIterator iterator = new ObjectListingIterator(client, bucketName, partition.prefix, true, null);
+                    while (!done && iterator.hasNext()) {
+                        queue.put(iterator.next());
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    queue.put(END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                // Error 同样需要入队, 否则消费方在 hasNext 中永久阻塞
+                try {
+                    queue.put(e);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new StorageException("list objects interrupted", e);
+                }
+                if (next == END) {
+                    next = null;
+                    close();
+                } else if (next instanceof Throwable) {
+                    Throwable e = (Throwable) next;
+                    next = null;
+                    close();
+                    if (e instanceof Error) {
+                        throw (Error) e;
+                    }
+                    throw e instanceof StorageException ? (StorageException) e : new StorageException((Exception) e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public FileBasicInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            FileBasicInfo info = (FileBasicInfo) next;
+            next = null;
+            return info;
+        }
+
+        @Override
+        public void close() {
+            done = true;
+            workers.forEach(worker -> worker.cancel(true));
+        }
+    }
+
+    /**
+     * 有序合并: 按 key 多路归并
+     */
+    private final class SortedIterator implements CloseableIterator {
+
+        private final List<Partition> partitions;
+
+        private final Deque<Head> opened = new ArrayDeque<>();
+
+        private final PriorityQueue<Head> heap = new PriorityQueue<>(Comparator.comparing(head -> head.current.getKey()));
+
+        private int nextPartition;
+
+        SortedIterator(List<Partition> partitions) {
+            this.partitions = new ArrayList<>(partitions);
+            this.partitions.sort(Comparator.comparing(partition -> partition.prefix));
+            prefetch();
+        }
+
+        @Override
+        public boolean hasNext() {
+            // 分区内所有 key 都不小于分区前缀, 最小 key 不小于下一个分区前缀时才需要打开该分区
+            while (!opened.isEmpty() && (heap.isEmpty() || heap.peek().current.getKey().compareTo(opened.peek().partition.prefix) >= 0)) {
+                Head head = opened.poll();
+                if (head.advance()) {
+                    heap.add(head);
+                }
+                prefetch();
+            }
+            if (heap.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public FileBasicInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Head head = heap.poll();
+            FileBasicInfo info = head.current;
+            if (head.advance()) {
+                heap.add(head);
+            }
+            return info;
+        }
+
+        @Override
+        public void close() {
+            heap.forEach(Head::close);
+            opened.forEach(Head::close);
+            heap.clear();
+            opened.clear();
+        }
+
+        private void prefetch() {
+            while (opened.size() < concurrency && nextPartition < partitions.size()) {
+                Partition partition = partitions.get(nextPartition++);
+                opened.add(new Head(partition, partition.objects != null
+                        ? partition.objects.iterator()
+                        : new ObjectListingIterator(client, bucketName, partition.prefix, true, executor)));
+            }
+        }
+    }
+
+    private static final class Head {
+
+        private final Partition partition;
+
+        private final Iterator<FileBasicInfo> iterator;
+
+        private FileBasicInfo current;
+
+        Head(Partition partition, Iterator<FileBasicInfo> iterator) {
+            this.partition = partition;
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            if (iterator.hasNext()) {
+                current = iterator.next();
+                return true;
+            }
+            return false;
+        }
+
+        void close() {
+            if (iterator instanceof ObjectListingIterator) {
+                ((ObjectListingIterator) iterator).close();
+            }
+        }
+    }
+}
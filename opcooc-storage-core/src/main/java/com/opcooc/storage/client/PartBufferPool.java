@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.exception.StorageException;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 分片缓冲区池
+ * <p>
+ * 缓冲区按需创建, 最多创建 maxBuffers 个, 用完后归还复用; 全部被占用时 acquire 阻塞等待归还,
+ * 以此限制同一个 client 上所有分片传输占用的内存. 等待期间定期检查调用方是否已失败, 失败时停止等待;
+ * waitTimeout 大于0时等待超过 waitTimeout 毫秒抛出 StorageException, 否则一直等待
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+final class PartBufferPool {
+
+    /**
+     * 等待期间检查调用方状态的间隔(毫秒)
+     */
+    private static final long CHECK_INTERVAL = 100L;
+
+    private final BlockingQueue<byte[]> free = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final int bufferSize;
+
+    private final int maxBuffers;
+
+    private final long waitTimeout;
+
+    PartBufferPool(int bufferSize, int maxBuffers, long waitTimeout) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = Math.max(1, maxBuffers);
+        this.waitTimeout = waitTimeout;
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 获取缓冲区
+     *
+     * @return 缓冲区
+     * @throws InterruptedException 等待时被中断
+     * @throws StorageException     等待超时
+     */
+    byte[] acquire() throws InterruptedException {
+        return acquire(() -> false);
+    }
+
+    /**
+     * 获取缓冲区
+     *
+     * @param aborted 等待期间定期检查, 返回 true 时放弃等待
+     * @return 缓冲区, 放弃等待时为空
+     * @throws InterruptedException 等待时被中断
+     * @throws StorageException     等待超时
+     */
+    byte[] acquire(BooleanSupplier aborted) throws InterruptedException {
+        byte[] buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeout);
+        while (true) {
+            int count = created.get();
+            if (count >= maxBuffers) {
+                if (aborted.getAsBoolean()) {
+                    return null;
+                }
+                long wait = CHECK_INTERVAL;
+                if (waitTimeout > 0) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw new StorageException("wait for multipart buffer timeout after %s ms, all %s buffers are in use",
+                                waitTimeout, maxBuffers);
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                buffer = free.poll(wait, TimeUnit.MILLISECONDS);
+                if (buffer != null) {
+                    return buffer;
+                }
+                continue;
+            }
+            if (created.compareAndSet(count, count + 1)) {
+                return new byte[bufferSize];
+            }
+        }
+    }
+
+    /**
+     * 归还缓冲区
+     *
+     * @param buffer 缓冲区
+     */
+    void release(byte[] buffer) {
+        if (buffer != null) {
+            free.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 浏览器表单直传的 policy 文档构建
+ * <p>
+ * 生成 {"expiration": "...", "conditions": [...]} 格式的 JSON, S3 与 OSS 格式一致
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+final class PostPolicyBuilder {
+
+    private static final DateTimeFormatter EXPIRATION = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final StringBuilder conditions = new StringBuilder(512);
+
+    /**
+     * 精确匹配条件 {"field": "value"}
+     */
+    PostPolicyBuilder eq(String field, String value) {
+        separator();
+        conditions.append('{');
+        appendString(field);
+        conditions.append(':');
+        appendString(value);
+        conditions.append('}');
+        return this;
+    }
+
+    /**
+     * 前缀匹配条件 ["starts-with", "$field", "value"]
+     */
+    PostPolicyBuilder startsWith(String field, String value) {
+        separator();
+        conditions.append("[\"starts-with\",");
+        appendString("$" + field);
+        conditions.append(',');
+        appendString(value);
+        conditions.append(']');
+        return this;
+    }
+
+    /**
+     * 文件大小范围条件 ["content-length-range", min, max]
+     */
+    PostPolicyBuilder contentLengthRange(long min, long max) {
+        separator();
+        conditions.append("[\"content-length-range\",").append(min).append(',').append(max).append(']');
+        return this;
+    }
+
+    /**
+     * @param expiration 过期时间
+     * @return base64 编码的 policy 文档
+     */
+    String build(Date expiration) {
+        String policy = "{\"expiration\":\"" + EXPIRATION.format(expiration.toInstant()) + "\",\"conditions\":[" + conditions + "]}";
+        return Base64.getEncoder().encodeToString(policy.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void separator() {
+        if (conditions.length() > 0) {
+            conditions.append(',');
+        }
+    }
+
+    private void appendString(String value) {
+        conditions.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    conditions.append("\\\"");
+                    break;
+                case '\\':
+                    conditions.append("\\\\");
+                    break;
+                case '\n':
+                    conditions.append("\\n");
+                    break;
+                case '\r':
+                    conditions.append("\\r");
+                    break;
+                case '\t':
+                    conditions.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        conditions.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        conditions.append(c);
+                    }
+            }
+        }
+        conditions.append('"');
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.HttpMethod;
+import com.opcooc.storage.config.PresignCacheProperty;
+import com.opcooc.storage.utils.LruCache;
+
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * 签名URL缓存
+ * <p>
+ * 签名使用的过期时间向上对齐到 expirationStep 的整数倍, 按 方法/存储桶/文件/Content-Type/对齐后的过期时间 缓存签名URL,
+ * 过期时间对齐到同一时刻的请求返回同一个URL, 相同文件在一段时间内得到相同的URL, 也便于CDN缓存;
+ * 返回的URL实际过期时间不早于请求的过期时间
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+final class PresignedUrlCache {
+
+    /**
+     * 签名时间和有效时长都精确到秒, 实际过期时间最多比传入签名的过期时间早 2 秒
+     */
+    private static final long SIGNING_PRECISION = 2000L;
+
+    private final LruCache<String, Entry> cache;
+
+    private final long expirationStep;
+
+    PresignedUrlCache(PresignCacheProperty property) {
+        this.cache = new LruCache<>(Math.max(1, property.getMaxSize()));
+        this.expirationStep = Math.max(1, property.getExpirationStep());
+    }
+
+    /**
+     * 获取签名URL, 缓存未命中或缓存的URL早于请求的过期时间失效时重新签名
+     *
+     * @param method      HTTP方法
+     * @param bucketName  存储桶名称
+     * @param objectName  文件完整路径
+     * @param contentType 签名包含的 Content-Type, 没有时为空
+     * @param expiration  请求的过期时间
+     * @param signer      按给定过期时间签名
+     * @return 签名URL
+     */
+    String get(HttpMethod method, String bucketName, String objectName, String contentType, Date expiration,
+               Function<Date, String> signer) {
+        long requested = Math.max(expiration.getTime(), System.currentTimeMillis() + 1);
+        long aligned = (requested + SIGNING_PRECISION + expirationStep - 1) / expirationStep * expirationStep;
+        String key = method.name() + '|' + bucketName + '|' + objectName + '|' + (contentType == null ? "" : contentType) + '|' + aligned;
+
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt >= requested) {
+            return entry.url;
+        }
+        String url = signer.apply(new Date(aligned));
+        cache.put(key, new Entry(url, aligned - SIGNING_PRECISION));
+        return url;
+    }
+
+    /**
+     * 清空缓存
+     */
+    void clear() {
+        cache.clear();
+    }
+
+    private static final class Entry {
+
+        private final String url;
+
+        /**
+         * URL 实际过期时间的下限
+         */
+        private final long expiresAt;
+
+        private Entry(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -45,6 +45,7 @@ public class QinIuClient extends AbstractS3Client {
         AmazonS3 client = AmazonS3ClientBuilder
                 .standard()
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withClientConfiguration(buildClientConfiguration(config))
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
                         config.getEndPoint(),
                         source.name()))
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import cn.hutool.core.io.FileUtil;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.AmazonS3;
+import com.opcooc.storage.exception.StorageException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 分段并发下载引擎
+ * <p>
+ * 第一个分段请求同时获取对象总长度和 ETag, 目标文件预分配后其余分段在传输线程池中并发下载,
+ * 通过 FileChannel 按位置写入; 每个分段请求都携带 If-Match 保证来自同一版本, 并校验响应的 Content-Range, 失败的分段单独重试;
+ * 服务端不支持 Range 时第一个响应即为完整对象, 直接写入文件
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+final class RangeDownloader {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
+    private final AmazonS3 client;
+
+    private final ExecutorService executor;
+
+    private final long partSize;
+
+    private final int retries;
+
+    RangeDownloader(AmazonS3 client, ExecutorService executor, long partSize, int retries) {
+        this.client = client;
+        this.executor = executor;
+        this.partSize = partSize;
+        this.retries = Math.max(0, retries);
+    }
+
+    /**
+     * 下载对象到文件
+     *
+     * @param bucketName 存储桶名称
+     * @param objectName 文件完整路径
+     * @param file       目标文件
+     * @return 目标文件
+     * @throws Exception 下载失败
+     */
+    File download(String bucketName, String objectName, File file) throws Exception {
+        S3Object first;
+        try {
+            first = client.getObject(new GetObjectRequest(bucketName, objectName).withRange(0, partSize - 1));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() != RANGE_NOT_SATISFIABLE) {
+                throw e;
+            }
+            // 空对象不支持 Range 请求
+            client.getObject(new GetObjectRequest(bucketName, objectName), file);
+            return file;
+        }
+
+        ObjectMetadata metadata = first.getObjectMetadata();
+        // 服务端忽略 Range 时响应体即为完整对象, 整体写入文件, 不再发起其余分段请求
+        boolean ranged = metadata.getContentRange() != null;
+        long total = ranged ? metadata.getInstanceLength() : metadata.getContentLength();
+        String etag = metadata.getETag();
+        long firstEnd = ranged ? Math.min(partSize, total) - 1 : total - 1;
+
+        FileUtil.mkParentDirs(file);
+        List<Future<Long>> futures = new ArrayList<>();
+        boolean firstConsumed = false;
+        try (RandomAccessFile target = new RandomAccessFile(file, "rw"); FileChannel channel = target.getChannel()) {
+            target.setLength(total);
+
+            for (long start = firstEnd + 1; start < total; start += partSize) {
+                long rangeStart = start;
+                long rangeEnd = Math.min(start + partSize, total) - 1;
+                futures.add(executor.submit(() -> fetchRange(bucketName, objectName, rangeStart, rangeEnd, etag, channel, 0)));
+            }
+
+            long written;
+            try {
+                firstConsumed = true;
+                written = write(first.getObjectContent(), channel, 0, firstEnd + 1);
+            } catch (IOException e) {
+                if (!ranged) {
+                    throw e;
+                }
+                log.warn("opcooc-storage - bucketName: [{}], objectName: [{}], range [0-{}] failed, retry", bucketName, objectName, firstEnd, e);
+                written = fetchRange(bucketName, objectName, 0, firstEnd, etag, channel, 1);
+            }
+            for (Future<Long> future : futures) {
+                try {
+                    written += future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+
+            if (written != total || channel.size() != total) {
+                throw new StorageException("bucketName: [%s], objectName: [%s] download incomplete, expected: [%s], actual: [%s]",
+                        bucketName, objectName, total, written);
+            }
+            log.debug("opcooc-storage - bucketName: [{}], objectName: [{}], etag: [{}], download [{}] bytes in [{}] ranges",
+                    bucketName, objectName, etag, total, futures.size() + 1);
+            return file;
+        } catch (Exception e) {
+            if (!firstConsumed) {
+                first.getObjectContent().abort();
+            }
+            futures.forEach(future -> future.cancel(true));
+            FileUtil.del(file);
+            throw e;
+        }
+    }
+
+    private long fetchRange(String bucketName, String objectName, long start, long end, String etag,
+                            FileChannel channel, int attempt) throws Exception {
+        while (true) {
+            S3Object object = client.getObject(new GetObjectRequest(bucketName, objectName)
+                    .withRange(start, end)
+                    .withMatchingETagConstraint(etag));
+            if (object == null) {
+                // If-Match 不满足, 对象在下载过程中被修改
+                throw new StorageException("bucketName: [%s], objectName: [%s] changed during download", bucketName, objectName);
+            }
+            Long[] range = object.getObjectMetadata().getContentRange();
+            if (range == null || range[0] != start) {
+                // 响应不是请求的分段(例如服务端忽略了 Range), 写入会破坏文件内容
+                object.getObjectContent().abort();
+                throw new StorageException("bucketName: [%s], objectName: [%s], range [%s-%s] got unexpected Content-Range: [%s]",
+                        bucketName, objectName, start, end, range == null ? null : range[0] + "-" + range[1]);
+            }
+            try {
+                return write(object.getObjectContent(), channel, start, end - start + 1);
+            } catch (IOException e) {
+                if (++attempt > retries) {
+                    throw e;
+                }
+                log.warn("opcooc-storage - bucketName: [{}], objectName: [{}], range [{}-{}] failed, retry [{}]",
+                        bucketName, objectName, start, end, attempt, e);
+            }
+        }
+    }
+
+    private static long write(S3ObjectInputStream input, FileChannel channel, long position, long length) throws IOException {
+        byte[] bytes = new byte[COPY_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long written = 0;
+        try {
+            int read;
+            while (written < length && (read = input.read(bytes, 0, (int) Math.min(bytes.length, length - written))) != -1) {
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                }
+            }
+            if (written != length) {
+                throw new EOFException("expected " + length + " bytes, actual " + written);
+            }
+            input.close();
+            return written;
+        } catch (IOException e) {
+            input.abort();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
+import com.opcooc.storage.utils.StorageAttributeContextHolder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 基于 Reactor 的响应式文件客户端
+ * <p>
+ * 底层 SDK 为阻塞 IO, 所有请求在指定的 {@link Scheduler} 上执行, 由下游的请求量(背压)决定同时进行中的分页/分片数量:
+ * 列举时按需拉取下一页, 下载时按需读取下一块数据, 上传时按分片并发上传且最多 multipartMaxInFlight 个分片同时进行
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Slf4j
+public class ReactiveFileClient {
+
+    /**
+     * 同步客户端
+     */
+    @Getter
+    private final AbstractS3Client client;
+
+    /**
+     * 执行阻塞请求的调度器
+     */
+    private final Scheduler scheduler;
+
+    /**
+     * 包装 client 的装饰器(本地缓存等), 写入完成后使其缓存失效, 未装饰时为 null
+     */
+    private final DelegatingFileClient decorator;
+
+    public ReactiveFileClient(AbstractS3Client client) {
+        this(client, Schedulers.boundedElastic());
+    }
+
+    public ReactiveFileClient(AbstractS3Client client, Scheduler scheduler) {
+        this.client = client;
+        this.scheduler = scheduler;
+        this.decorator = null;
+    }
+
+    /**
+     * 基于可能被装饰的 client 创建, 读写直接使用最内层的 S3 client, 写入后使各装饰器的缓存失效
+     *
+     * @param client    client, 最内层必须为 AbstractS3Client
+     * @param scheduler 执行阻塞请求的调度器
+     */
+    public ReactiveFileClient(FileClient client, Scheduler scheduler) {
+        FileClient target = DelegatingFileClient.unwrap(client);
+        if (!(target instanceof AbstractS3Client)) {
+            throw new StorageException("client [%s] does not support reactive operations", target.getClass().getName());
+        }
+        this.client = (AbstractS3Client) target;
+        this.scheduler = scheduler;
+        this.decorator = client instanceof DelegatingFileClient ? (DelegatingFileClient) client : null;
+    }
+
+    /**
+     * 获取当前存储桶, 按调用时的 {@code @Storage} 配置解析
+     *
+     * @return 存储桶名称
+     */
+    public Mono<String> getBucketName() {
+        return blocking(StorageAttributeContextHolder.wrap(client::getBucketName));
+    }
+
+    //--------------------------------------list file start--------------------------------------
+
+    /**
+     * 列举文件, 每次最多预取一页
+     *
+     * @param bucketName 储桶名称
+     * @param prefix     前缀
+     * @param recursive  是否递归
+     * @return 文件信息
+     */
+    public Flux<FileBasicInfo> listObjects(String bucketName, String prefix, boolean recursive) {
+        return listObjects(bucketName, prefix, recursive, 1);
+    }
+
+    /**
+     * 列举文件
+     *
+     * @param bucketName    储桶名称
+     * @param prefix        前缀
+     * @param recursive     是否递归
+     * @param prefetchPages 下游处理当前页时最多预取的页数
+     * @return 文件信息
+     */
+    public Flux<FileBasicInfo> listObjects(String bucketName, String prefix, boolean recursive, int prefetchPages) {
+        log.debug("opcooc-storage - bucketName: [{}], prefix: [{}], recursive: [{}]", bucketName, prefix, recursive);
+        return listPage(bucketName, prefix, recursive, null)
+                .expand(page -> page.isTruncated()
+                        ? listPage(bucketName, prefix, recursive, page.getNextContinuationToken()) : Mono.empty())
+                .concatMapIterable(page -> ObjectListingIterator.toInfos(bucketName, page), Math.max(1, prefetchPages));
+    }
+
+    /**
+     * 列举文件, 每次最多预取一页
+     *
+     * @param prefix    前缀
+     * @param recursive 是否递归
+     * @return 文件信息
+     */
+    public Flux<FileBasicInfo> listObjects(String prefix, boolean recursive) {
+        return getBucketName().flatMapMany(bucketName -> listObjects(bucketName, prefix, recursive));
+    }
+
+    private Mono<ListObjectsV2Result> listPage(String bucketName, String prefix, boolean recursive, String token) {
+        return blocking(() -> client.client.listObjectsV2(ObjectListingIterator.listRequest(bucketName, prefix, recursive, token)))
+                .onErrorMap(e -> e instanceof Exception && !(e instanceof StorageException), e -> new StorageException((Exception) e));
+    }
+
+    //--------------------------------------list file end--------------------------------------
+
+    //--------------------------------------get file start--------------------------------------
+
+    /**
+     * 获取文件信息
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 文件信息, 不存在时以 ObjectNotFoundException 结束
+     */
+    public Mono<FileBasicInfo> getObjectMetadata(String bucketName, String objectName) {
+        return blocking(() -> client.getObjectMetadata(bucketName, objectName));
+    }
+
+    /**
+     * 下载文件, 按 ioBufferSize 分块, 每块在下游请求时才读取
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 文件内容, 不存在时以 ObjectNotFoundException 结束
+     */
+    public Flux<ByteBuffer> getObject(String bucketName, String objectName) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
+        int chunkSize = Math.max(1, client.config.getIoBufferSize());
+        return Flux.using(() -> new Download(client.client.getObject(bucketName, objectName)),
+                download -> Flux.<ByteBuffer>generate(sink -> {
+                    byte[] chunk = new byte[chunkSize];
+                    try {
+                        int length = IoUtils.read(download.object.getObjectContent(), chunk);
+                        if (length > 0) {
+                            sink.next(ByteBuffer.wrap(chunk, 0, length));
+                        }
+                        if (length < chunk.length) {
+                            download.eof = true;
+                            sink.complete();
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                }),
+                Download::close)
+                .subscribeOn(scheduler)
+                .onErrorMap(mapError(bucketName, objectName));
+    }
+
+    /**
+     * 下载文件
+     *
+     * @param objectName 文件完整路径
+     * @return 文件内容
+     */
+    public Flux<ByteBuffer> getObject(String objectName) {
+        return getBucketName().flatMapMany(bucketName -> getObject(bucketName, objectName));
+    }
+
+    //--------------------------------------get file end--------------------------------------
+
+    //--------------------------------------upload file start--------------------------------------
+
+    /**
+     * 上传文件, 数据按 multipartPartSize 组装为分片, 不足一个分片时直接上传
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @param data       文件内容, 上传过程中不会修改其中 ByteBuffer 的 position
+     * @return 文件信息
+     */
+    public Mono<FileBasicInfo> uploadObject(String bucketName, String objectName, Publisher<ByteBuffer> data) {
+        log.debug("opcooc-storage - bucketName: [{}], objectName: [{}]", bucketName, objectName);
+        int partSize = (int) Math.min(Math.max(MultipartUploader.MIN_PART_SIZE, client.config.getMultipartPartSize()), Integer.MAX_VALUE - 8);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(client.contentTypeResolver.resolve(objectName));
+
+        Flux<Part> parts = Flux.defer(() -> {
+            PartAccumulator accumulator = new PartAccumulator(partSize);
+            return Flux.from(data)
+                    .concatMapIterable(accumulator::append)
+                    .concatWith(Mono.fromSupplier(accumulator::last));
+        });
+        return parts.switchOnFirst((signal, flux) -> {
+            if (!signal.hasValue()) {
+                return flux.then(Mono.<FileBasicInfo>empty());
+            }
+            Part first = signal.get();
+            if (first.last) {
+                return flux.then(putObject(bucketName, objectName, first, metadata));
+            }
+            return multipartUpload(bucketName, objectName, flux, metadata);
+        })
+                .single()
+                .flatMap(info -> blocking(() -> client.uploadResult(info)))
+                .onErrorMap(mapError(bucketName, objectName))
+                .doFinally(signal -> invalidate(bucketName, objectName));
+    }
+
+    /**
+     * 上传文件
+     *
+     * @param objectName 文件完整路径
+     * @param data       文件内容
+     * @return 文件信息
+     */
+    public Mono<FileBasicInfo> uploadObject(String objectName, Publisher<ByteBuffer> data) {
+        return getBucketName().flatMap(bucketName -> uploadObject(bucketName, objectName, data));
+    }
+
+    private Mono<FileBasicInfo> putObject(String bucketName, String objectName, Part part, ObjectMetadata metadata) {
+        return blocking(() -> {
+            metadata.setContentLength(part.length);
+            PutObjectResult result = client.client.putObject(
+                    new PutObjectRequest(bucketName, objectName, new ByteArrayInputStream(part.data, 0, part.length), metadata));
+            return AbstractS3Client.uploadedInfo(bucketName, objectName, part.length, result.getETag(), result.getVersionId());
+        });
+    }
+
+    private Mono<FileBasicInfo> multipartUpload(String bucketName, String objectName, Flux<Part> parts, ObjectMetadata metadata) {
+        int maxInFlight = Math.max(1, client.config.getMultipartMaxInFlight());
+        return blocking(() -> client.client.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectName, metadata)).getUploadId())
+                .flatMap(uploadId -> {
+                    AtomicLong size = new AtomicLong();
+                    AtomicReference<Throwable> failure = new AtomicReference<>();
+                    Set<CompletableFuture<PartETag>> inFlight = ConcurrentHashMap.newKeySet();
+                    return parts
+                            .filter(part -> part.length > 0)
+                            .flatMap(part -> {
+                                if (part.number > MultipartUploader.MAX_PARTS) {
+                                    return Mono.error(new StorageException("bucketName: [%s], objectName: [%s] exceeds %s parts, please increase multipartPartSize",
+                                            bucketName, objectName, MultipartUploader.MAX_PARTS));
+                                }
+                                size.addAndGet(part.length);
+                                return uploadPart(bucketName, objectName, uploadId, part, inFlight)
+                                        .doOnError(e -> failure.compareAndSet(null, e));
+                            }, maxInFlight)
+                            .collectList()
+                            .flatMap(partETags -> {
+                                // 分片失败与数据结束并发时 flatMap 可能正常结束, 提交前再次确认没有失败的分片
+                                Throwable failed = failure.get();
+                                if (failed != null) {
+                                    return Mono.error(failed);
+                                }
+                                return blocking(() -> {
+                                    partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+                                    return client.client.completeMultipartUpload(
+                                            new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+                                });
+                            })
+                            .map(result -> AbstractS3Client.uploadedInfo(bucketName, objectName, size.get(), result.getETag(), result.getVersionId()))
+                            .onErrorResume(e -> abort(bucketName, objectName, uploadId, inFlight).then(Mono.error(e)))
+                            .doOnCancel(() -> abort(bucketName, objectName, uploadId, inFlight).subscribe());
+                });
+    }
+
+    /**
+     * 上传分片, 取消订阅时不中断正在上传的分片, 由 abort 等待其结束
+     */
+    private Mono<PartETag> uploadPart(String bucketName, String objectName, String uploadId, Part part,
+                                      Set<CompletableFuture<PartETag>> inFlight) {
+        return Mono.defer(() -> {
+            CompletableFuture<PartETag> future = CompletableFuture.supplyAsync(() -> client.client.uploadPart(new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(objectName)
+                    .withUploadId(uploadId)
+                    .withPartNumber(part.number)
+                    .withPartSize(part.length)
+                    .withInputStream(new ByteArrayInputStream(part.data, 0, part.length))).getPartETag(), scheduler::schedule);
+            inFlight.add(future);
+            return Mono.fromFuture(future.whenComplete((etag, e) -> inFlight.remove(future)));
+        });
+    }
+
+    /**
+     * 等待进行中的分片结束后中止分片上传
+     */
+    private Mono<Void> abort(String bucketName, String objectName, String uploadId, Set<CompletableFuture<PartETag>> inFlight) {
+        CompletableFuture<Void> pending = CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0]))
+                .handle((result, e) -> null);
+        return Mono.fromFuture(pending)
+                .then(Mono.<Void>fromRunnable(() -> client.client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId)))
+                        .subscribeOn(scheduler))
+                .onErrorResume(e -> {
+                    log.warn("opcooc-storage - abort multipart upload [{}] of bucketName: [{}], objectName: [{}] failed", uploadId, bucketName, objectName, e);
+                    return Mono.empty();
+                });
+    }
+
+    //--------------------------------------upload file end--------------------------------------
+
+    //--------------------------------------delete file start--------------------------------------
+
+    /**
+     * 删除文件
+     *
+     * @param bucketName 储桶名称
+     * @param objectName 文件完整路径
+     * @return 删除完成信号
+     */
+    public Mono<Void> deleteObject(String bucketName, String objectName) {
+        return Mono.<Void>fromRunnable(() -> {
+            try {
+                client.deleteObject(bucketName, objectName);
+            } finally {
+                invalidate(bucketName, objectName);
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    //--------------------------------------delete file end--------------------------------------
+
+    private void invalidate(String bucketName, String objectName) {
+        if (decorator != null) {
+            decorator.invalidate(bucketName, objectName);
+        }
+    }
+
+    private <T> Mono<T> blocking(Supplier<T> supplier) {
+        return Mono.fromSupplier(supplier).subscribeOn(scheduler);
+    }
+
+    private Function<Throwable, Throwable> mapError(String bucketName, String objectName) {
+        return e -> e instanceof Exception ? client.convertException((Exception) e, bucketName, objectName) : e;
+    }
+
+    /**
+     * 下载中的对象, 未读完时中断连接而不是读完剩余内容
+     */
+    private static final class Download {
+
+        private final S3Object object;
+
+        private boolean eof;
+
+        private Download(S3Object object) {
+            this.object = object;
+        }
+
+        private void close() {
+            try {
+                if (!eof) {
+                    object.getObjectContent().abort();
+                }
+                object.close();
+            } catch (IOException e) {
+                log.debug("opcooc-storage - close object [{}] failed", object.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 上传分片
+     */
+    private static final class Part {
+
+        private final int number;
+
+        private final byte[] data;
+
+        private final int length;
+
+        /**
+         * 是否为数据结束后的最后一个分片(可能为空)
+         */
+        private final boolean last;
+
+        private Part(int number, byte[] data, int length, boolean last) {
+            this.number = number;
+            this.data = data;
+            this.length = length;
+            this.last = last;
+        }
+    }
+
+    /**
+     * 将任意大小的 ByteBuffer 组装为固定大小的分片
+     */
+    private static final class PartAccumulator {
+
+        private final int partSize;
+
+        private byte[] current;
+
+        private int length;
+
+        private int number;
+
+        private PartAccumulator(int partSize) {
+            this.partSize = partSize;
+        }
+
+        private List<Part> append(ByteBuffer data) {
+            ByteBuffer buffer = data.duplicate();
+            List<Part> parts = Collections.emptyList();
+            while (buffer.hasRemaining()) {
+                if (current == null) {
+                    current = new byte[partSize];
+                }
+                int n = Math.min(buffer.remaining(), partSize - length);
+                buffer.get(current, length, n);
+                length += n;
+                if (length == partSize) {
+                    if (parts.isEmpty()) {
+                        parts = new ArrayList<>(1);
+                    }
+                    parts.add(new Part(++number, current, length, false));
+                    current = null;
+                    length = 0;
+                }
+            }
+            return parts;
+        }
+
+        private Part last() {
+            return new Part(++number, current == null ? new byte[0] : current, length, true);
+        }
+    }
+}
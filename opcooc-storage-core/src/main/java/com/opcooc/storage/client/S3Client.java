@@ -45,6 +45,7 @@ public class S3Client extends AbstractS3Client {
         AmazonS3 client = AmazonS3ClientBuilder
                 .standard()
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withClientConfiguration(buildClientConfiguration(config))
                 .withPathStyleAccessEnabled("path-style".equals(config.getPathStyle()))
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
                         config.getEndPoint(),
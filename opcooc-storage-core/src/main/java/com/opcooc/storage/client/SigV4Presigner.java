@@ -0,0 +1,308 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.exception.StorageException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SigV4 查询参数签名(GET), 用于批量生成下载签名URL, 同时用于浏览器表单直传的 policy 签名
+ * <p>
+ * 签名密钥按 日期/区域/服务 派生一次后缓存, 同一批次内复用 Mac、MessageDigest 与 StringBuilder, 与 SDK 的 AWSS3V4Signer 输出一致
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+final class SigV4Presigner {
+
+    static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    /**
+     * SigV4 签名的最长有效期(秒)
+     */
+    static final long MAX_EXPIRES_SECONDS = 7 * 24 * 60 * 60;
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private static final String TERMINATOR = "aws4_request";
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String accessKey;
+
+    private final String secretKey;
+
+    private final String region;
+
+    private final String service;
+
+    /**
+     * 最近一次派生的签名密钥
+     */
+    private volatile SigningKey signingKey;
+
+    SigV4Presigner(String accessKey, String secretKey, String region, String service) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+        this.service = service;
+    }
+
+    /**
+     * 以 SDK 生成的签名URL为样本创建签名器, 并用相同的时间重新签名校验结果一致
+     *
+     * @param sample    SDK 生成的签名URL
+     * @param secretKey secret key
+     * @return 签名器, 样本不是 SigV4 签名或校验不一致时返回空
+     */
+    static SigV4Presigner fromSample(URL sample, String secretKey) {
+        Map<String, String> params = parseQuery(sample.getQuery());
+        if (!ALGORITHM.equals(params.get("X-Amz-Algorithm")) || !"host".equals(params.get("X-Amz-SignedHeaders"))
+                || params.containsKey("X-Amz-Security-Token")) {
+            return null;
+        }
+        String credential = params.get("X-Amz-Credential");
+        String amzDate = params.get("X-Amz-Date");
+        String expires = params.get("X-Amz-Expires");
+        if (credential == null || amzDate == null || expires == null) {
+            return null;
+        }
+        // access key 中可能包含 "/", 从右侧取 date/region/service/aws4_request
+        String[] scope = credential.split("/");
+        if (scope.length < 5 || !TERMINATOR.equals(scope[scope.length - 1])) {
+            return null;
+        }
+        String accessKey = credential.substring(0, credential.length()
+                - (scope[scope.length - 4].length() + scope[scope.length - 3].length() + scope[scope.length - 2].length() + TERMINATOR.length() + 4));
+        SigV4Presigner presigner = new SigV4Presigner(accessKey, secretKey, scope[scope.length - 3], scope[scope.length - 2]);
+        long now = Instant.from(DATE_TIME.parse(amzDate)).toEpochMilli();
+        String resigned = presigner.session(now, Long.parseLong(expires)).presign(sample);
+        return resigned.equals(sample.toExternalForm()) ? presigner : null;
+    }
+
+    /**
+     * 创建签名批次, 批次内所有URL使用相同的签名时间与有效期, 非线程安全
+     *
+     * @param now            签名时间(毫秒)
+     * @param expiresSeconds 有效期(秒)
+     * @return 签名批次
+     */
+    Session session(long now, long expiresSeconds) {
+        if (expiresSeconds <= 0 || expiresSeconds > MAX_EXPIRES_SECONDS) {
+            throw new StorageException("presigned url expiration must be between 1 second and 7 days, current: [%s] seconds", expiresSeconds);
+        }
+        return new Session(now, expiresSeconds);
+    }
+
+    /**
+     * @param now 签名时间(毫秒)
+     * @return x-amz-date 格式的签名时间
+     */
+    static String amzDate(long now) {
+        return DATE_TIME.format(Instant.ofEpochMilli(now));
+    }
+
+    /**
+     * @param amzDate 签名时间, x-amz-date 格式
+     * @return x-amz-credential, 即 accessKey/日期/区域/服务/aws4_request
+     */
+    String credential(String amzDate) {
+        return accessKey + '/' + amzDate.substring(0, 8) + '/' + region + '/' + service + '/' + TERMINATOR;
+    }
+
+    /**
+     * 签名 POST policy
+     *
+     * @param amzDate 签名时间, x-amz-date 格式
+     * @param policy  base64 编码的 policy 文档
+     * @return x-amz-signature
+     */
+    String signPolicy(String amzDate, String policy) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            StringBuilder signature = new StringBuilder(64);
+            appendHex(signature, hmac(mac, signingKey(amzDate.substring(0, 8)), policy));
+            return signature.toString();
+        } catch (GeneralSecurityException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private byte[] signingKey(String date) throws GeneralSecurityException {
+        SigningKey key = signingKey;
+        if (key == null || !key.date.equals(date)) {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            byte[] k = hmac(mac, ("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+            k = hmac(mac, k, region);
+            k = hmac(mac, k, service);
+            k = hmac(mac, k, TERMINATOR);
+            key = new SigningKey(date, k);
+            signingKey = key;
+        }
+        return key.key;
+    }
+
+    private static byte[] hmac(Mac mac, byte[] key, String data) throws GeneralSecurityException {
+        mac.init(new SecretKeySpec(key, HMAC_SHA256));
+        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf('=');
+            if (index > 0) {
+                params.put(pair.substring(0, index), URLDecoder.decode(pair.substring(index + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static String encode(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                builder.append(c);
+            } else {
+                builder.append('%').append(Character.toUpperCase(HEX[(b >> 4) & 0xf])).append(Character.toUpperCase(HEX[b & 0xf]));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void appendHex(StringBuilder builder, byte[] bytes) {
+        for (byte b : bytes) {
+            builder.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+    }
+
+    /**
+     * 签名批次
+     */
+    final class Session {
+
+        private final Mac mac;
+
+        private final MessageDigest digest;
+
+        private final String canonicalQuery;
+
+        private final String stringToSignPrefix;
+
+        private final String urlQuery;
+
+        private final StringBuilder canonical = new StringBuilder(512);
+
+        private final StringBuilder stringToSign = new StringBuilder(256);
+
+        private final StringBuilder url = new StringBuilder(512);
+
+        private Session(long now, long expiresSeconds) {
+            String amzDate = DATE_TIME.format(Instant.ofEpochMilli(now));
+            String date = amzDate.substring(0, 8);
+            String scope = date + '/' + region + '/' + service + '/' + TERMINATOR;
+            String credential = encode(accessKey + '/' + scope);
+            this.canonicalQuery = "X-Amz-Algorithm=" + ALGORITHM
+                    + "&X-Amz-Credential=" + credential
+                    + "&X-Amz-Date=" + amzDate
+                    + "&X-Amz-Expires=" + expiresSeconds
+                    + "&X-Amz-SignedHeaders=host";
+            this.stringToSignPrefix = ALGORITHM + '\n' + amzDate + '\n' + scope + '\n';
+            this.urlQuery = "?X-Amz-Algorithm=" + ALGORITHM
+                    + "&X-Amz-Date=" + amzDate
+                    + "&X-Amz-SignedHeaders=host"
+                    + "&X-Amz-Expires=" + expiresSeconds
+                    + "&X-Amz-Credential=" + credential
+                    + "&X-Amz-Signature=";
+            try {
+                this.mac = Mac.getInstance(HMAC_SHA256);
+                this.mac.init(new SecretKeySpec(signingKey(date), HMAC_SHA256));
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (GeneralSecurityException e) {
+                throw new StorageException(e);
+            }
+        }
+
+        /**
+         * 签名对象URL(不含查询参数)
+         *
+         * @param objectUrl 对象URL, 由 {@code AmazonS3.getUrl} 生成
+         * @return 签名URL
+         */
+        String presign(URL objectUrl) {
+            String path = objectUrl.getPath();
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+            int port = objectUrl.getPort();
+            boolean explicitPort = port != -1 && port != objectUrl.getDefaultPort();
+
+            canonical.setLength(0);
+            canonical.append("GET\n").append(path).append('\n').append(canonicalQuery).append("\nhost:").append(objectUrl.getHost());
+            if (explicitPort) {
+                canonical.append(':').append(port);
+            }
+            canonical.append("\n\nhost\nUNSIGNED-PAYLOAD");
+
+            stringToSign.setLength(0);
+            stringToSign.append(stringToSignPrefix);
+            appendHex(stringToSign, digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+            byte[] signature = mac.doFinal(stringToSign.toString().getBytes(StandardCharsets.UTF_8));
+
+            url.setLength(0);
+            url.append(objectUrl.getProtocol()).append("://").append(objectUrl.getHost());
+            if (explicitPort) {
+                url.append(':').append(port);
+            }
+            url.append(path).append(urlQuery);
+            appendHex(url, signature);
+            return url.toString();
+        }
+    }
+
+    private static final class SigningKey {
+
+        private final String date;
+
+        private final byte[] key;
+
+        private SigningKey(String date, byte[] key) {
+            this.date = date;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.SingleFlightProperty;
+import com.opcooc.storage.exception.StorageException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 并发相同读取合并(single-flight)
+ * <p>
+ * 同一 client 对同一对象并发的 getByteObject / getObjectMetadata / objectExist 只发起一次请求,
+ * 等待中的调用共享该请求的结果或异常; 可变结果(byte[]、FileBasicInfo)在共享时返回副本
+ * </p>
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public class SingleFlightFileClient extends DelegatingFileClient {
+
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final long maxWait;
+
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * @param delegate 被装饰的 client
+     * @param property 配置
+     */
+    public SingleFlightFileClient(FileClient delegate, SingleFlightProperty property) {
+        super(delegate);
+        this.maxWait = property.getMaxWait();
+    }
+
+    @Override
+    public byte[] getByteObject(String bucketName, String objectName) {
+        return execute("bytes\n" + bucketName + '\n' + objectName,
+                () -> delegate.getByteObject(bucketName, objectName), byte[]::clone);
+    }
+
+    @Override
+    public FileBasicInfo getObjectMetadata(String bucketName, String objectName) {
+        return execute("metadata\n" + bucketName + '\n' + objectName,
+                () -> delegate.getObjectMetadata(bucketName, objectName), DelegatingFileClient::copyOf);
+    }
+
+    @Override
+    public boolean objectExist(String bucketName, String objectName) {
+        return execute("exist\n" + bucketName + '\n' + objectName,
+                () -> delegate.objectExist(bucketName, objectName), UnaryOperator.identity());
+    }
+
+    /**
+     * @return 共享其他调用结果(未发起请求)的次数
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * 执行或加入进行中的请求
+     *
+     * @param key    请求标识
+     * @param loader 实际请求
+     * @param copier 共享结果时的复制方法
+     * @param <T>    结果类型
+     * @return 结果
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T execute(String key, Supplier<T> loader, UnaryOperator<T> copier) {
+        Flight created = new Flight();
+        // 在 compute 中登记等待者, 发起者移除 Flight 后不会再有新的等待者加入
+        Flight flight = inFlight.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return created;
+            }
+            existing.followers++;
+            return existing;
+        });
+
+        if (flight == created) {
+            T value;
+            try {
+                value = loader.get();
+            } catch (RuntimeException | Error e) {
+                inFlight.remove(key, flight);
+                flight.future.completeExceptionally(e);
+                throw e;
+            }
+            inFlight.remove(key, flight);
+            flight.future.complete(value);
+            // 有其他调用共享结果时, 发起者也使用副本, 避免修改影响等待者
+            return flight.followers > 0 && value != null ? copier.apply(value) : value;
+        }
+
+        shared.increment();
+        try {
+            T value = (T) flight.future.get(maxWait, TimeUnit.MILLISECONDS);
+            return value == null ? null : copier.apply(value);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new StorageException(e);
+        } catch (TimeoutException e) {
+            throw new StorageException("wait for in-flight request [%s] timeout after [%s] ms",
+                    key.replace('\n', ' '), maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        }
+    }
+
+    private static final class Flight {
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        /**
+         * 等待者数量, 只在 compute 中修改
+         */
+        private volatile int followers;
+    }
+}
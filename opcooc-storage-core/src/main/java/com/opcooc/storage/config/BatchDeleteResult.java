@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量删除结果
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Data
+public class BatchDeleteResult {
+
+    /**
+     * 成功删除的数量
+     */
+    private long deletedCount;
+
+    /**
+     * 成功删除的文件完整路径(删除存储桶时不收集)
+     */
+    private List<String> deleted = new ArrayList<>();
+
+    /**
+     * 删除失败的文件
+     */
+    private List<Failure> failed = new ArrayList<>();
+
+    /**
+     * 是否全部删除成功
+     *
+     * @return 结果
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+
+        /**
+         * 文件完整路径
+         */
+        private String key;
+
+        /**
+         * 版本号
+         */
+        private String versionId;
+
+        /**
+         * 错误码
+         */
+        private String code;
+
+        /**
+         * 错误信息
+         */
+        private String message;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量上传结果
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Data
+public class BatchUploadResult {
+
+    /**
+     * 上传成功的文件 key: 文件完整路径 value: 文件信息
+     */
+    private Map<String, FileBasicInfo> succeeded = new LinkedHashMap<>();
+
+    /**
+     * 上传失败的文件 key: 文件完整路径 value: 异常
+     */
+    private Map<String, Exception> failed = new LinkedHashMap<>();
+
+    /**
+     * 成功上传的总字节数
+     */
+    private long totalBytes;
+
+    /**
+     * 总耗时(毫秒)
+     */
+    private long durationMillis;
+
+    /**
+     * 是否全部上传成功
+     *
+     * @return 结果
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+    /**
+     * 吞吐量(字节/秒)
+     *
+     * @return 吞吐量
+     */
+    public double getThroughput() {
+        return durationMillis <= 0 ? 0 : totalBytes * 1000.0 / durationMillis;
+    }
+}
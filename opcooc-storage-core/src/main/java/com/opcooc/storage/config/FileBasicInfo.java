@@ -53,4 +53,19 @@ public class FileBasicInfo {
      */
     private Long size;
 
+    /**
+     * 对象 ETag
+     */
+    private String etag;
+
+    /**
+     * 对象版本号, 未开启版本控制时为空
+     */
+    private String versionId;
+
+    /**
+     * 是否为文件夹(非递归列举时的公共前缀)
+     */
+    private boolean folder;
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import java.util.List;
+
+/**
+ * 并发列举的分区策略
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@FunctionalInterface
+public interface ListPartitioner {
+
+    /**
+     * 将指定前缀拆分为多个子前缀, 每个子前缀单独递归列举 .
+     * <p>
+     * 子前缀之间不能互为前缀(否则会重复返回), 且需要覆盖所有需要列举的文件
+     * </p>
+     *
+     * @param bucketName 存储桶名称.
+     * @param prefix     指定前缀.
+     * @return 子前缀集合.
+     */
+    List<String> partition(String bucketName, String prefix);
+
+}
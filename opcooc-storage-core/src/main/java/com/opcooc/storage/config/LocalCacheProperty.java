@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 本地磁盘对象缓存配置
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+@Setter
+public class LocalCacheProperty {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = false;
+
+    /**
+     * 缓存根目录, 为空时使用 ${java.io.tmpdir}/opcooc-storage-cache; 每个 client 实例在其下创建独立的临时子目录, 关闭时删除
+     */
+    private String directory;
+
+    /**
+     * 缓存总大小上限(字节), 超出时淘汰最久未使用的文件
+     */
+    private long maxSize = 1024 * 1024 * 1024L;
+
+    /**
+     * 单个文件大小上限(字节), 更大的文件不缓存直接读取
+     */
+    private long maxObjectSize = 64 * 1024 * 1024L;
+
+    /**
+     * 缓存有效期(毫秒), 超过后使用 If-None-Match 条件请求校验是否变更
+     */
+    private long ttl = 60 * 1000L;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 对象元数据缓存配置
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+@Setter
+public class MetadataCacheProperty {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = false;
+
+    /**
+     * 最大缓存条数, 超出时淘汰最久未使用的条目
+     */
+    private int maxSize = 10000;
+
+    /**
+     * 元数据缓存时间(毫秒)
+     */
+    private long ttl = 30 * 1000L;
+
+    /**
+     * 对象不存在的缓存时间(毫秒), 小于等于0时不缓存
+     */
+    private long negativeTtl = 5 * 1000L;
+}
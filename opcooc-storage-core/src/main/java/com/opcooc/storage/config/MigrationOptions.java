@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 跨 client 迁移选项
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+@Setter
+public class MigrationOptions {
+
+    /**
+     * 同时迁移的对象数
+     */
+    private int concurrency = 8;
+
+    /**
+     * 检查点文件路径, 记录已连续完成的最后一个 key, 再次执行时从该 key 之后继续; 为空时不记录
+     */
+    private String checkpointFile;
+
+    /**
+     * 目标对象大小一致时是否再比较 ETag, 任一方为分片上传的 ETag(含 "-")时只比较大小
+     */
+    private boolean compareEtag = true;
+}
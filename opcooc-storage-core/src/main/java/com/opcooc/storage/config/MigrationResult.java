@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 跨 client 迁移结果
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Data
+public class MigrationResult {
+
+    /**
+     * 迁移成功的对象数
+     */
+    private long migratedCount;
+
+    /**
+     * 目标已存在且一致而跳过的对象数
+     */
+    private long skippedCount;
+
+    /**
+     * 迁移失败的对象 key: 文件完整路径 value: 异常
+     */
+    private Map<String, Exception> failed = new LinkedHashMap<>();
+
+    /**
+     * 迁移成功的总字节数
+     */
+    private long totalBytes;
+
+    /**
+     * 已连续完成的最后一个 key(即检查点), 为空时表示没有进展
+     */
+    private String lastKey;
+
+    /**
+     * 总耗时(毫秒)
+     */
+    private long durationMillis;
+
+    /**
+     * 是否全部迁移成功
+     *
+     * @return 结果
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+    /**
+     * 吞吐量(字节/秒)
+     *
+     * @return 吞吐量
+     */
+    public double getThroughput() {
+        return durationMillis <= 0 ? 0 : totalBytes * 1000.0 / durationMillis;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 浏览器表单直传(POST policy)的限制条件, 为空的条件不生效
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostPolicyCondition {
+
+    /**
+     * 文件完整路径前缀, 设置后表单中的 key 只需以该前缀开头, 否则必须与生成时的文件完整路径一致
+     */
+    private String keyPrefix;
+
+    /**
+     * 文件最小字节数
+     */
+    private Long minContentLength;
+
+    /**
+     * 文件最大字节数
+     */
+    private Long maxContentLength;
+
+    /**
+     * 指定 Content-Type, 为空时按文件完整路径解析
+     */
+    private String contentType;
+
+    /**
+     * Content-Type 前缀(如 image/), 设置后不再限定具体的 Content-Type
+     */
+    private String contentTypePrefix;
+}
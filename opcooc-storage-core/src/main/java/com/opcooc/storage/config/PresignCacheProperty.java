@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 签名URL缓存配置
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+@Setter
+public class PresignCacheProperty {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = false;
+
+    /**
+     * 最大缓存条数, 超出时淘汰最久未使用的条目
+     */
+    private int maxSize = 10000;
+
+    /**
+     * 过期时间对齐步长(毫秒), 签名使用的过期时间向上对齐到该步长的整数倍, 过期时间相近的请求在该时长内复用同一个URL
+     */
+    private long expirationStep = 60 * 1000L;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 并发相同读取合并(single-flight)配置
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+@Setter
+public class SingleFlightProperty {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = false;
+
+    /**
+     * 等待进行中请求的最长时间(毫秒), 超时后抛出异常
+     */
+    private long maxWait = 30 * 1000L;
+}
@@ -16,7 +16,8 @@
  */
 package com.opcooc.storage.config;
 
-import lombok.AllArgsConstructor;
+import com.opcooc.storage.support.ContentTypeResolver;
+import com.opcooc.storage.support.DefaultContentTypeResolver;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -28,7 +29,6 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 public class StorageProperty {
 
     private String bucketName = "opcooc";
@@ -44,4 +44,175 @@ public class StorageProperty {
     private String domain;
 
     private String basePath;
+
+    /**
+     * 存储桶存在性缓存时间(毫秒), 小于等于0时不缓存
+     */
+    private long bucketCacheTtl = 5 * 60 * 1000L;
+
+    /**
+     * 上传完成后是否再通过 getObjectMetadata 获取服务端的文件信息, 默认直接使用上传响应构建
+     */
+    private boolean uploadFetchMetadata = false;
+
+    /**
+     * 分片上传阈值(字节), 不小于该大小的本地文件使用并发分片上传
+     */
+    private long multipartThreshold = 32 * 1024 * 1024L;
+
+    /**
+     * 分片大小(字节), 最小为 5MB
+     */
+    private long multipartPartSize = 8 * 1024 * 1024L;
+
+    /**
+     * 分片复制阈值(字节), 不小于该大小的对象使用并发分片复制(UploadPartCopy), 单次复制最大支持 5GB
+     */
+    private long multipartCopyThreshold = 1024 * 1024 * 1024L;
+
+    /**
+     * 分片复制的分片大小(字节), 范围 5MB ~ 5GB
+     */
+    private long multipartCopyPartSize = 128 * 1024 * 1024L;
+
+    /**
+     * 流式上传时同时在途(已读取未上传完成)的分片数, 同一 client 的所有上传共享, 分片缓冲区内存占用上限为 multipartPartSize * multipartMaxInFlight
+     */
+    private int multipartMaxInFlight = 4;
+
+    /**
+     * 等待空闲分片缓冲区的最长时间(毫秒), 超时后上传失败; 小于等于0时不限制(默认), 上传未失败时一直等待
+     */
+    private long multipartBufferWaitTimeout = 0L;
+
+    /**
+     * 分片传输线程数
+     */
+    private int transferConcurrency = 4;
+
+    /**
+     * 是否使用分段并发下载 getFileObject, 分段大小同 multipartPartSize
+     */
+    private boolean rangeDownload = false;
+
+    /**
+     * 分段下载时单个分段失败的重试次数
+     */
+    private int rangeDownloadRetries = 3;
+
+    /**
+     * 流式传输(transferObject 等)使用的缓冲区大小
+     */
+    private int ioBufferSize = 64 * 1024;
+
+    /**
+     * Content-Type 解析器, 需提供无参构造
+     */
+    private Class<? extends ContentTypeResolver> contentTypeResolver = DefaultContentTypeResolver.class;
+
+    /**
+     * 批量上传的默认并发数
+     */
+    private int batchConcurrency = 8;
+
+    /**
+     * 签名URL缓存配置
+     */
+    private PresignCacheProperty presignCache = new PresignCacheProperty();
+
+    /**
+     * 本地磁盘对象缓存配置
+     */
+    private LocalCacheProperty localCache = new LocalCacheProperty();
+
+    /**
+     * 对象元数据缓存配置
+     */
+    private MetadataCacheProperty metadataCache = new MetadataCacheProperty();
+
+    /**
+     * 并发相同读取合并配置
+     */
+    private SingleFlightProperty singleFlight = new SingleFlightProperty();
+
+    //-------------------------------------------http start------------------------------------------
+
+    /**
+     * 连接池最大连接数, 为空时使用 SDK 默认值(50)
+     */
+    private Integer maxConnections;
+
+    /**
+     * 连接存活时间(毫秒), 超过后不再复用, 为空或-1时不限制
+     */
+    private Long connectionTtl;
+
+    /**
+     * 建立连接超时时间(毫秒)
+     */
+    private Integer connectionTimeout;
+
+    /**
+     * 读取数据超时时间(毫秒)
+     */
+    private Integer socketTimeout;
+
+    /**
+     * 单次 HTTP 请求超时时间(毫秒), 为空时不限制
+     */
+    private Integer requestTimeout;
+
+    /**
+     * 包含重试在内的整体执行超时时间(毫秒), 为空时不限制
+     */
+    private Integer clientExecutionTimeout;
+
+    /**
+     * 空闲连接最大保留时间(毫秒), 超过后由后台线程回收
+     */
+    private Long connectionMaxIdleMillis;
+
+    /**
+     * 连接空闲超过该时间(毫秒)后, 复用前先校验是否可用
+     */
+    private Integer validateAfterInactivityMillis;
+
+    /**
+     * 是否开启 TCP keep-alive
+     */
+    private Boolean tcpKeepAlive;
+
+    /**
+     * 可重试错误的最大重试次数
+     */
+    private Integer maxErrorRetry;
+
+    /**
+     * 是否启用 gzip 压缩响应
+     */
+    private Boolean useGzip;
+
+    //-------------------------------------------http end------------------------------------------
+
+    /**
+     * 基础连接配置, 其余配置使用默认值
+     *
+     * @param bucketName 默认存储桶名称
+     * @param endPoint   服务地址
+     * @param accessKey  访问密钥
+     * @param secretKey  私有密钥
+     * @param pathStyle  是否使用路径风格访问
+     * @param domain     访问域名
+     * @param basePath   基础路径
+     */
+    public StorageProperty(String bucketName, String endPoint, String accessKey, String secretKey,
+                           String pathStyle, String domain, String basePath) {
+        this.bucketName = bucketName;
+        this.endPoint = endPoint;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pathStyle = pathStyle;
+        this.domain = domain;
+        this.basePath = basePath;
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.config;
+
+import cn.hutool.core.lang.Assert;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * 批量上传的数据来源, 文件/字节数组/流三者之一
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+public final class UploadSource {
+
+    /**
+     * 本地文件
+     */
+    private final File file;
+
+    /**
+     * 字节数组
+     */
+    private final byte[] bytes;
+
+    /**
+     * 流的提供方, 上传时才打开, 上传完成后关闭
+     */
+    private final Supplier<InputStream> stream;
+
+    private UploadSource(File file, byte[] bytes, Supplier<InputStream> stream) {
+        this.file = file;
+        this.bytes = bytes;
+        this.stream = stream;
+    }
+
+    public static UploadSource of(File file) {
+        Assert.notNull(file, "'file' cannot be null");
+        return new UploadSource(file, null, null);
+    }
+
+    public static UploadSource of(Path path) {
+        Assert.notNull(path, "'path' cannot be null");
+        return new UploadSource(path.toFile(), null, null);
+    }
+
+    public static UploadSource of(byte[] bytes) {
+        Assert.notNull(bytes, "'bytes' cannot be null");
+        return new UploadSource(null, bytes, null);
+    }
+
+    /**
+     * 已打开的流, 上传完成后关闭
+     *
+     * @param stream 文件流
+     * @return 数据来源
+     */
+    public static UploadSource of(InputStream stream) {
+        Assert.notNull(stream, "'stream' cannot be null");
+        return new UploadSource(null, null, () -> stream);
+    }
+
+    /**
+     * 延迟打开的流, 大量文件时避免同时打开所有的流, 上传完成后关闭
+     *
+     * @param stream 流的提供方
+     * @return 数据来源
+     */
+    public static UploadSource ofSupplier(Supplier<InputStream> stream) {
+        Assert.notNull(stream, "'stream' cannot be null");
+        return new UploadSource(null, null, stream);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.exception;
+
+import lombok.Getter;
+
+/**
+ * 对象不存在异常
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@Getter
+public class ObjectNotFoundException extends StorageException {
+
+    private static final String ERROR_MESSAGE = "bucketName: [%s], file [%s] does not exist";
+
+    /**
+     * 存储桶名称
+     */
+    private final String bucketName;
+
+    /**
+     * 文件完整路径
+     */
+    private final String objectName;
+
+    public ObjectNotFoundException(String bucketName, String objectName) {
+        super(ERROR_MESSAGE, bucketName, objectName);
+        this.bucketName = bucketName;
+        this.objectName = objectName;
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.support;
+
+/**
+ * 根据文件名解析 Content-Type
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@FunctionalInterface
+public interface ContentTypeResolver {
+
+    /**
+     * 未知类型时使用的 Content-Type
+     */
+    String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * 解析文件的 Content-Type
+     *
+     * @param objectName 文件名或文件完整路径
+     * @return Content-Type, 无法识别时返回 {@link #DEFAULT_CONTENT_TYPE}
+     */
+    String resolve(String objectName);
+}
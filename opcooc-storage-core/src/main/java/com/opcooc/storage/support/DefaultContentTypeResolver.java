@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.support;
+
+import cn.hutool.core.util.ClassLoaderUtil;
+import com.opcooc.storage.utils.LruCache;
+import org.apache.tika.Tika;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 默认的 Content-Type 解析器
+ * <p>
+ * 先按扩展名查预置的映射表, 未命中时回退到 Tika(首次使用时才加载, classpath 中不存在时跳过), 回退结果按扩展名缓存
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public class DefaultContentTypeResolver implements ContentTypeResolver {
+
+    /**
+     * 回退结果缓存的默认容量
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final boolean TIKA_PRESENT = ClassLoaderUtil.isPresent("org.apache.tika.Tika");
+
+    /**
+     * 常用扩展名与 Content-Type 的映射, 取值与 Tika 的识别结果保持一致
+     */
+    private static final Map<String, String> EXTENSIONS;
+
+    static {
+        Map<String, String> map = new HashMap<>(128);
+        map.put("txt", "text/plain");
+        map.put("log", "text/x-log");
+        map.put("html", "text/html");
+        map.put("htm", "text/html");
+        map.put("css", "text/css");
+        map.put("js", "application/javascript");
+        map.put("json", "application/json");
+        map.put("xml", "application/xml");
+        map.put("csv", "text/csv");
+        map.put("md", "text/x-web-markdown");
+        map.put("yaml", "text/x-yaml");
+        map.put("properties", "text/x-java-properties");
+        map.put("sql", "text/x-sql");
+        map.put("pdf", "application/pdf");
+        map.put("doc", "application/msword");
+        map.put("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+        map.put("xls", "application/vnd.ms-excel");
+        map.put("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        map.put("ppt", "application/vnd.ms-powerpoint");
+        map.put("pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation");
+        map.put("odt", "application/vnd.oasis.opendocument.text");
+        map.put("ods", "application/vnd.oasis.opendocument.spreadsheet");
+        map.put("odp", "application/vnd.oasis.opendocument.presentation");
+        map.put("rtf", "application/rtf");
+        map.put("epub", "application/epub+zip");
+        map.put("zip", "application/zip");
+        map.put("gz", "application/gzip");
+        map.put("tgz", "application/gzip");
+        map.put("tar", "application/x-tar");
+        map.put("7z", "application/x-7z-compressed");
+        map.put("rar", "application/x-rar-compressed");
+        map.put("bz2", "application/x-bzip2");
+        map.put("xz", "application/x-xz");
+        map.put("jar", "application/java-archive");
+        map.put("apk", "application/vnd.android.package-archive");
+        map.put("exe", "application/x-dosexec");
+        map.put("dmg", "application/x-apple-diskimage");
+        map.put("iso", "application/x-iso9660-image");
+        map.put("jpg", "image/jpeg");
+        map.put("jpeg", "image/jpeg");
+        map.put("png", "image/png");
+        map.put("gif", "image/gif");
+        map.put("bmp", "image/bmp");
+        map.put("webp", "image/webp");
+        map.put("svg", "image/svg+xml");
+        map.put("ico", "image/vnd.microsoft.icon");
+        map.put("tif", "image/tiff");
+        map.put("tiff", "image/tiff");
+        map.put("heic", "image/heic");
+        map.put("psd", "image/vnd.adobe.photoshop");
+        map.put("mp3", "audio/mpeg");
+        map.put("wav", "audio/vnd.wave");
+        map.put("ogg", "audio/vorbis");
+        map.put("flac", "audio/x-flac");
+        map.put("aac", "audio/x-aac");
+        map.put("m4a", "audio/mp4");
+        map.put("mp4", "video/mp4");
+        map.put("m4v", "video/x-m4v");
+        map.put("mov", "video/quicktime");
+        map.put("avi", "video/x-msvideo");
+        map.put("wmv", "video/x-ms-wmv");
+        map.put("flv", "video/x-flv");
+        map.put("mkv", "video/x-matroska");
+        map.put("webm", "video/webm");
+        map.put("3gp", "video/3gpp");
+        map.put("mpeg", "video/mpeg");
+        map.put("mpg", "video/mpeg");
+        map.put("ttf", "application/x-font-ttf");
+        map.put("otf", "application/x-font-otf");
+        map.put("eot", "application/vnd.ms-fontobject");
+        map.put("wasm", "application/wasm");
+        EXTENSIONS = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 映射表未命中时的回退结果 key: 小写扩展名(无扩展名时为文件名)
+     */
+    private final LruCache<String, String> fallbackCache;
+
+    public DefaultContentTypeResolver() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public DefaultContentTypeResolver(int cacheSize) {
+        this.fallbackCache = new LruCache<>(cacheSize);
+    }
+
+    @Override
+    public String resolve(String objectName) {
+        if (objectName == null || objectName.isEmpty()) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+        String name = objectName.substring(objectName.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        String key = dot < 0 ? name : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (dot >= 0) {
+            String contentType = EXTENSIONS.get(key);
+            if (contentType != null) {
+                return contentType;
+            }
+        }
+        String contentType = fallbackCache.get(key);
+        if (contentType == null) {
+            contentType = fallback(name);
+            fallbackCache.put(key, contentType);
+        }
+        return contentType;
+    }
+
+    /**
+     * 映射表未命中时的解析
+     *
+     * @param name 文件名
+     * @return Content-Type
+     */
+    protected String fallback(String name) {
+        if (!TIKA_PRESENT) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+        String contentType = TikaHolder.TIKA.detect(name);
+        return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+    }
+
+    /**
+     * 延迟加载 Tika, 只有映射表未命中时才初始化 MIME 注册表
+     */
+    private static class TikaHolder {
+        private static final Tika TIKA = new Tika();
+    }
+}
@@ -17,9 +17,15 @@
 package com.opcooc.storage.utils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  *
@@ -44,12 +50,8 @@ public class IoUtils {
      */
     public static byte[] toByteArray(final InputStream input) throws IOException {
         final ByteArrayOutputStream output = new ByteArrayOutputStream();
-        try {
-            copy(input, output);
-            return output.toByteArray();
-        } finally {
-            output.toByteArray();
-        }
+        copy(input, output);
+        return output.toByteArray();
     }
 
     /**
@@ -79,6 +81,51 @@ public class IoUtils {
         return data;
     }
 
+    /**
+     * Reads bytes until the buffer is full or the end of the stream is reached.
+     *
+     * @param input  InputStream
+     * @param buffer buffer
+     * @return the number of bytes read, less than buffer length only at the end of the stream
+     * @throws IOException Exception
+     */
+    public static int read(final InputStream input, final byte[] buffer) throws IOException {
+        int offset = 0;
+        int read;
+        while (offset < buffer.length && (read = input.read(buffer, offset, buffer.length - offset)) != EOF) {
+            offset += read;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads bytes into the remaining space of the buffer until it is full or the end of the stream is reached.
+     *
+     * @param input  InputStream
+     * @param buffer buffer, position is advanced by the number of bytes read
+     * @return the number of bytes read
+     * @throws IOException Exception
+     */
+    public static int read(final InputStream input, final ByteBuffer buffer) throws IOException {
+        int total = 0;
+        int read;
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            while (buffer.hasRemaining()
+                    && (read = input.read(array, buffer.arrayOffset() + buffer.position(), buffer.remaining())) != EOF) {
+                buffer.position(buffer.position() + read);
+                total += read;
+            }
+            return total;
+        }
+        byte[] chunk = new byte[Math.min(DEFAULT_BUFFER_SIZE, buffer.remaining())];
+        while (buffer.hasRemaining() && (read = input.read(chunk, 0, Math.min(chunk.length, buffer.remaining()))) != EOF) {
+            buffer.put(chunk, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
     /**
      * Copies bytes
      *
@@ -100,4 +147,139 @@ public class IoUtils {
         }
         return (int)count;
     }
+
+    /**
+     * Copies bytes from an InputStream to an OutputStream with the given buffer size, supports streams over 2GB.
+     *
+     * @param input      InputStream
+     * @param output     OutputStream
+     * @param bufferSize buffer size
+     * @return the number of bytes copied
+     * @throws IOException Exception
+     */
+    public static long copy(final InputStream input, final OutputStream output, final int bufferSize) throws IOException {
+        long count = 0;
+        int n;
+        byte[] buffer = new byte[bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE];
+        while (EOF != (n = input.read(buffer))) {
+            output.write(buffer, 0, n);
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Copies bytes from an InputStream to a WritableByteChannel with the given buffer size.
+     * The stream already reads into a heap array, so the array is wrapped and written as is.
+     *
+     * @param input      InputStream
+     * @param output     WritableByteChannel
+     * @param bufferSize buffer size
+     * @return the number of bytes copied
+     * @throws IOException Exception
+     */
+    public static long copy(final InputStream input, final WritableByteChannel output, final int bufferSize) throws IOException {
+        long count = 0;
+        int n;
+        byte[] array = new byte[bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        while (EOF != (n = input.read(array))) {
+            buffer.clear().limit(n);
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Copies bytes between channels. When the source is a FileChannel, {@link FileChannel#transferTo} is used so that
+     * the kernel can move the data without a user-space copy, otherwise a direct buffer of the given size is used.
+     *
+     * @param input      ReadableByteChannel
+     * @param output     WritableByteChannel
+     * @param bufferSize buffer size
+     * @return the number of bytes copied
+     * @throws IOException Exception
+     */
+    public static long copy(final ReadableByteChannel input, final WritableByteChannel output, final int bufferSize) throws IOException {
+        if (input instanceof FileChannel) {
+            return transferTo((FileChannel) input, output);
+        }
+        long count = 0;
+        int n;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE);
+        while (EOF != (n = input.read(buffer))) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            buffer.clear();
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Transfers the remaining bytes of a FileChannel, starting at its current position, to the target channel.
+     *
+     * @param input  FileChannel
+     * @param output WritableByteChannel
+     * @return the number of bytes transferred
+     * @throws IOException Exception
+     */
+    public static long transferTo(final FileChannel input, final WritableByteChannel output) throws IOException {
+        long position = input.position();
+        long size = input.size();
+        long count = 0;
+        while (position + count < size) {
+            long n = input.transferTo(position + count, size - position - count, output);
+            if (n <= 0) {
+                break;
+            }
+            count += n;
+        }
+        input.position(position + count);
+        return count;
+    }
+
+    /**
+     * Transfers bytes from a FileChannel to a file via {@link FileChannel#transferTo}.
+     *
+     * @param input FileChannel
+     * @param file  target file, will be created or truncated
+     * @return the number of bytes transferred
+     * @throws IOException Exception
+     */
+    public static long transferTo(final FileChannel input, final File file) throws IOException {
+        try (FileChannel output = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transferTo(input, output);
+        }
+    }
+
+    /**
+     * Transfers bytes from a ReadableByteChannel into a file via {@link FileChannel#transferFrom}.
+     *
+     * @param input ReadableByteChannel
+     * @param file  target file, will be created or truncated
+     * @param size  the number of bytes to transfer
+     * @return the number of bytes transferred
+     * @throws IOException Exception
+     */
+    public static long transferFrom(final ReadableByteChannel input, final File file, final long size) throws IOException {
+        try (FileChannel output = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long count = 0;
+            while (count < size) {
+                long n = output.transferFrom(input, count, size - count);
+                if (n <= 0) {
+                    break;
+                }
+                count += n;
+            }
+            return count;
+        }
+    }
 }
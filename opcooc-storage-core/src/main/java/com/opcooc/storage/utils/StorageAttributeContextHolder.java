@@ -21,6 +21,7 @@ import org.springframework.core.NamedThreadLocal;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.function.Supplier;
 
 /**
  * 核心基于ThreadLocal的切换存储配置工具类
@@ -102,6 +103,28 @@ public final class StorageAttributeContextHolder {
         }
     }
 
+    /**
+     * 包装任务, 在执行任务的线程上恢复当前线程的存储配置, 用于将 {@code @Storage} 路由信息传递到异步线程
+     *
+     * @param task 任务
+     * @param <T>  返回值类型
+     * @return 包装后的任务
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        StorageAttribute attr = peek();
+        if (attr == null) {
+            return task;
+        }
+        return () -> {
+            push(attr);
+            try {
+                return task.get();
+            } finally {
+                poll();
+            }
+        };
+    }
+
     /**
      * 强制清空本地线程
      * <p>
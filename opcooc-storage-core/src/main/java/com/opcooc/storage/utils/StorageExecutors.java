@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2020-2020 organization opcooc
+ * <pre>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <pre/>
+ */
+package com.opcooc.storage.utils;
+
+import com.opcooc.storage.exception.StorageException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池工具类
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+public class StorageExecutors {
+
+    private StorageExecutors() {
+    }
+
+    /**
+     * 创建固定大小的守护线程池
+     *
+     * @param namePrefix 线程名称前缀
+     * @param threads    线程数
+     * @return 线程池
+     */
+    public static ExecutorService newFixedThreadPool(String namePrefix, int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), threadFactory(namePrefix));
+    }
+
+    /**
+     * 创建按需创建线程的守护线程池, 空闲线程 60 秒后回收, 并发数由调用方控制
+     *
+     * @param namePrefix 线程名称前缀
+     * @return 线程池
+     */
+    public static ExecutorService newCachedThreadPool(String namePrefix) {
+        return Executors.newCachedThreadPool(threadFactory(namePrefix));
+    }
+
+    /**
+     * 创建有界队列的守护线程池, 队列满时拒绝提交
+     *
+     * @param namePrefix    线程名称前缀
+     * @param threads       线程数
+     * @param queueCapacity 队列容量
+     * @return 线程池
+     */
+    public static ExecutorService newBoundedThreadPool(String namePrefix, int threads, int queueCapacity) {
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory(namePrefix), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程(JDK 21+)
+     *
+     * @return 是否支持
+     */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadExecutorMethod() != null;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的线程池(JDK 21+), 通过反射调用以兼容低版本 JDK 编译
+     *
+     * @return 线程池
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method method = virtualThreadExecutorMethod();
+        if (method == null) {
+            throw new StorageException("virtual threads are not supported by the current JDK [%s]", System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private static Method virtualThreadExecutorMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建守护线程工厂, 线程名称为 namePrefix-序号
+     *
+     * @param namePrefix 线程名称前缀
+     * @return 线程工厂
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -16,7 +16,6 @@
  */
 package com.opcooc.storage.utils;
 
-import org.apache.tika.Tika;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
@@ -28,8 +27,6 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class StorageUtil {
 
-    public static final Tika TIKA = new Tika();
-
     public static String checkFolder(String path) {
         if (null == path) {
             return "";
@@ -0,0 +1,192 @@
+package com.opcooc.storage;
+
+import com.opcooc.storage.client.FileClient;
+import com.opcooc.storage.client.LocalCacheFileClient;
+import com.opcooc.storage.client.MetadataCacheFileClient;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.LocalCacheProperty;
+import com.opcooc.storage.config.MetadataCacheProperty;
+import com.opcooc.storage.config.MigrationOptions;
+import com.opcooc.storage.config.MigrationResult;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.*;
+
+/**
+ * 跨 client 迁移测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class ObjectMigratorTest {
+
+    private static final int OBJECTS = 20;
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private FileClient source;
+
+    @Mock
+    private FileClient target;
+
+    /**
+     * 已写入目标 client 的对象, key 为 bucketName/objectName
+     */
+    private final Map<String, byte[]> written = new ConcurrentHashMap<>();
+
+    private final MigrationOptions options = new MigrationOptions();
+
+    private Path checkpoint;
+
+    /**
+     * 上传该对象时失败
+     */
+    private volatile String failing;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(source.streamObjects(eq("src"), eq(""), eq(true), nullable(String.class))).thenAnswer(invocation -> {
+            String startAfter = invocation.getArgument(3);
+            return IntStream.range(0, OBJECTS).mapToObj(ObjectMigratorTest::key)
+                    .filter(key -> startAfter == null || key.compareTo(startAfter) > 0)
+                    .map(key -> info(key, content(key).length));
+        });
+        lenient().when(source.getStreamObject(eq("src"), anyString()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(content(invocation.getArgument(1))));
+        lenient().when(target.getObjectMetadata(anyString(), anyString())).thenAnswer(invocation -> {
+            byte[] data = written.get(invocation.getArgument(0) + "/" + invocation.getArgument(1));
+            if (data == null) {
+                throw new ObjectNotFoundException(invocation.getArgument(0), invocation.getArgument(1));
+            }
+            return info(invocation.getArgument(1), data.length);
+        });
+        lenient().when(target.objectExist(anyString(), anyString()))
+                .thenAnswer(invocation -> written.containsKey(invocation.getArgument(0) + "/" + invocation.getArgument(1)));
+        lenient().when(target.uploadObject(anyString(), anyString(), any(InputStream.class))).thenAnswer(invocation -> {
+            String objectName = invocation.getArgument(1);
+            if (objectName.equals(failing)) {
+                throw new StorageException("upload [%s] failed", objectName);
+            }
+            byte[] data = IoUtils.toByteArray(invocation.<InputStream>getArgument(2));
+            written.put(invocation.getArgument(0) + "/" + objectName, data);
+            return info(objectName, data.length);
+        });
+        checkpoint = directory.resolve("migration.properties");
+        options.setCheckpointFile(checkpoint.toString());
+        options.setConcurrency(4);
+        // 桩数据没有 ETag, 只比较大小
+        options.setCompareEtag(false);
+    }
+
+    @Test
+    void migratesEveryObjectAndRecordsCheckpoint() throws Exception {
+        MigrationResult result = migrate("dst");
+
+        assertEquals(OBJECTS, result.getMigratedCount());
+        assertTrue(result.getFailed().isEmpty());
+        assertEquals(key(OBJECTS - 1), result.getLastKey());
+        for (int i = 0; i < OBJECTS; i++) {
+            assertArrayEquals(content(key(i)), written.get("dst/" + key(i)));
+        }
+        assertEquals(key(OBJECTS - 1), checkpoint().getProperty("startAfter"));
+    }
+
+    @Test
+    void checkpointStopsBeforeFailureAndResumeContinuesFromIt() throws Exception {
+        failing = key(10);
+
+        MigrationResult first = migrate("dst");
+
+        assertEquals(OBJECTS - 1, first.getMigratedCount());
+        assertTrue(first.getFailed().containsKey(key(10)));
+        assertEquals(key(9), first.getLastKey());
+        assertEquals(key(9), checkpoint().getProperty("startAfter"));
+
+        failing = null;
+        MigrationResult second = migrate("dst");
+
+        // 从失败对象继续, 之后已迁移的对象被跳过
+        assertEquals(1, second.getMigratedCount());
+        assertEquals(OBJECTS - 11, second.getSkippedCount());
+        assertEquals(key(OBJECTS - 1), second.getLastKey());
+        assertArrayEquals(content(key(10)), written.get("dst/" + key(10)));
+    }
+
+    @Test
+    void checkpointOfAnotherMigrationIsRejected() {
+        migrate("dst");
+
+        StorageException e = assertThrows(StorageException.class, () -> migrate("other"));
+        assertTrue(e.getMessage().contains("belongs to another migration"));
+    }
+
+    @Test
+    void decoratorsAreBypassedAndTargetCacheInvalidated() {
+        LocalCacheProperty cacheProperty = new LocalCacheProperty();
+        cacheProperty.setDirectory(directory.resolve("cache").toString());
+        LocalCacheFileClient cachedSource = new LocalCacheFileClient(source, cacheProperty, "src");
+        MetadataCacheFileClient cachedTarget = new MetadataCacheFileClient(target, new MetadataCacheProperty());
+        // 目标对象不存在的结果已被缓存
+        assertFalse(cachedTarget.objectExist("dst", key(0)));
+
+        MigrationResult result = new ObjectMigrator("SRC", cachedSource, "src", "", "DST", cachedTarget, "dst", options).migrate();
+
+        assertEquals(OBJECTS, result.getMigratedCount());
+        assertEquals(0, cachedSource.getCachedCount());
+        assertTrue(cachedTarget.objectExist("dst", key(0)));
+        cachedSource.shutdown();
+    }
+
+    private MigrationResult migrate(String dstBucketName) {
+        return new ObjectMigrator("SRC", source, "src", "", "DST", target, dstBucketName, options).migrate();
+    }
+
+    private Properties checkpoint() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(checkpoint)) {
+            properties.load(input);
+        }
+        return properties;
+    }
+
+    private static String key(int i) {
+        return String.format("k%02d", i);
+    }
+
+    private static byte[] content(String key) {
+        return ("object-" + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static FileBasicInfo info(String key, long size) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setKey(key);
+        info.setSize(size);
+        return info;
+    }
+}
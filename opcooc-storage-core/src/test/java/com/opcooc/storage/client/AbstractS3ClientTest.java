@@ -0,0 +1,446 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.config.ClientSource;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.StorageProperty;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.support.ContentTypeResolver;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * S3 client 测试, 底层 AmazonS3 使用 mock
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class AbstractS3ClientTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Mock
+    private AmazonS3 s3;
+
+    private final StorageProperty config = new StorageProperty(BUCKET, "http://127.0.0.1:9000", "ak", "sk", null, null, null);
+
+    private final List<AbstractS3Client> clients = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        clients.forEach(AbstractS3Client::shutdown);
+    }
+
+    @Test
+    void httpSettingsAreAppliedToClientConfiguration() {
+        config.setMaxConnections(200);
+        config.setConnectionTtl(60000L);
+        config.setConnectionTimeout(1000);
+        config.setSocketTimeout(2000);
+        config.setRequestTimeout(3000);
+        config.setClientExecutionTimeout(4000);
+        config.setConnectionMaxIdleMillis(5000L);
+        config.setValidateAfterInactivityMillis(6000);
+        config.setTcpKeepAlive(true);
+        config.setMaxErrorRetry(7);
+        config.setUseGzip(true);
+
+        ClientConfiguration configuration = client().buildClientConfiguration(config);
+
+        assertEquals(200, configuration.getMaxConnections());
+        assertEquals(60000L, configuration.getConnectionTTL());
+        assertEquals(1000, configuration.getConnectionTimeout());
+        assertEquals(2000, configuration.getSocketTimeout());
+        assertEquals(3000, configuration.getRequestTimeout());
+        assertEquals(4000, configuration.getClientExecutionTimeout());
+        assertEquals(5000L, configuration.getConnectionMaxIdleMillis());
+        assertEquals(6000, configuration.getValidateAfterInactivityMillis());
+        assertTrue(configuration.useTcpKeepAlive());
+        assertEquals(7, configuration.getMaxErrorRetry());
+        assertTrue(configuration.useGzip());
+    }
+
+    @Test
+    void unsetHttpSettingsKeepSdkDefaults() {
+        ClientConfiguration defaults = new ClientConfiguration();
+
+        ClientConfiguration configuration = client().buildClientConfiguration(config);
+
+        assertEquals(defaults.getMaxConnections(), configuration.getMaxConnections());
+        assertEquals(defaults.getConnectionTimeout(), configuration.getConnectionTimeout());
+        assertEquals(defaults.getSocketTimeout(), configuration.getSocketTimeout());
+        assertEquals(defaults.getRequestTimeout(), configuration.getRequestTimeout());
+        assertEquals(defaults.getMaxErrorRetry(), configuration.getMaxErrorRetry());
+        assertEquals(defaults.useTcpKeepAlive(), configuration.useTcpKeepAlive());
+    }
+
+    @Test
+    void bucketExistenceIsCheckedOncePerTtl() {
+        when(s3.doesBucketExistV2(BUCKET)).thenReturn(true);
+        AbstractS3Client client = client();
+
+        assertEquals(BUCKET, client.getBucketName());
+        assertEquals(BUCKET, client.getBucketName());
+
+        verify(s3).doesBucketExistV2(BUCKET);
+        verify(s3, never()).createBucket(BUCKET);
+    }
+
+    @Test
+    void missingBucketIsCreatedOnce() {
+        when(s3.doesBucketExistV2(BUCKET)).thenReturn(false);
+        when(s3.createBucket(BUCKET)).thenReturn(new Bucket(BUCKET));
+        AbstractS3Client client = client();
+
+        client.getBucketName();
+        client.getBucketName();
+
+        verify(s3).createBucket(BUCKET);
+    }
+
+    @Test
+    void disabledBucketCacheChecksEveryCall() {
+        config.setBucketCacheTtl(0);
+        when(s3.doesBucketExistV2(BUCKET)).thenReturn(true);
+        AbstractS3Client client = client();
+
+        client.getBucketName();
+        client.getBucketName();
+
+        verify(s3, times(2)).doesBucketExistV2(BUCKET);
+    }
+
+    @Test
+    void streamObjectIsReadWithSingleGet() throws Exception {
+        when(s3.getObject(BUCKET, "a")).thenReturn(object(new byte[]{1, 2}, null));
+
+        try (InputStream stream = client().getStreamObject(BUCKET, "a")) {
+            assertEquals(1, stream.read());
+        }
+
+        verify(s3, never()).doesObjectExist(anyString(), anyString());
+        verify(s3, never()).getObjectMetadata(anyString(), anyString());
+    }
+
+    @Test
+    void missingObjectIsReportedAsObjectNotFound() {
+        when(s3.getObject(BUCKET, "missing")).thenThrow(s3Exception(404, "NoSuchKey"));
+        when(s3.getObjectMetadata(BUCKET, "missing")).thenThrow(s3Exception(404, "404 Not Found"));
+        AbstractS3Client client = client();
+
+        ObjectNotFoundException e = assertThrows(ObjectNotFoundException.class, () -> client.getStreamObject(BUCKET, "missing"));
+        assertEquals(BUCKET, e.getBucketName());
+        assertEquals("missing", e.getObjectName());
+        assertThrows(ObjectNotFoundException.class, () -> client.getObjectMetadata(BUCKET, "missing"));
+    }
+
+    @Test
+    void missingBucketIsNotReportedAsObjectNotFound() {
+        when(s3.getObject(BUCKET, "a")).thenThrow(s3Exception(404, "NoSuchBucket"));
+
+        StorageException e = assertThrows(StorageException.class, () -> client().getStreamObject(BUCKET, "a"));
+        assertFalse(e instanceof ObjectNotFoundException);
+    }
+
+    @Test
+    void byteObjectIsReadWithOrWithoutContentLength() {
+        byte[] data = {1, 2, 3};
+        when(s3.getObject(BUCKET, "sized")).thenReturn(object(data, 3L));
+        when(s3.getObject(BUCKET, "chunked")).thenReturn(object(data, null));
+        AbstractS3Client client = client();
+
+        assertArrayEquals(data, client.getByteObject(BUCKET, "sized"));
+        assertArrayEquals(data, client.getByteObject(BUCKET, "chunked"));
+    }
+
+    @Test
+    void truncatedByteObjectFails() {
+        when(s3.getObject(BUCKET, "a")).thenReturn(object(new byte[2], 3L));
+
+        assertThrows(StorageException.class, () -> client().getByteObject(BUCKET, "a"));
+    }
+
+    @Test
+    void byteObjectIsReadIntoBuffer() {
+        when(s3.getObject(BUCKET, "a")).thenReturn(object(new byte[]{1, 2, 3}, 3L));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+        buffer.put((byte) 9);
+
+        ByteBuffer result = client().getByteObject(BUCKET, "a", buffer);
+
+        assertSame(buffer, result);
+        assertEquals(4, result.remaining());
+        assertEquals(9, result.get());
+        assertEquals(1, result.get());
+    }
+
+    @Test
+    void byteObjectLargerThanBufferFails() {
+        when(s3.getObject(BUCKET, "sized")).thenReturn(object(new byte[4], 4L));
+        when(s3.getObject(BUCKET, "chunked")).thenReturn(object(new byte[4], null));
+        AbstractS3Client client = client();
+
+        assertThrows(StorageException.class, () -> client.getByteObject(BUCKET, "sized", ByteBuffer.allocate(3)));
+        assertThrows(StorageException.class, () -> client.getByteObject(BUCKET, "chunked", ByteBuffer.allocate(3)));
+        // 长度未知但恰好填满时不应报错
+        when(s3.getObject(BUCKET, "exact")).thenReturn(object(new byte[3], null));
+        assertEquals(3, client.getByteObject(BUCKET, "exact", ByteBuffer.allocate(3)).remaining());
+    }
+
+    @Test
+    void objectIsTransferredToStreamAndChannel() {
+        byte[] data = {1, 2, 3};
+        when(s3.getObject(BUCKET, "a")).thenReturn(object(data, 3L), object(data, 3L));
+        AbstractS3Client client = client();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteArrayOutputStream channel = new ByteArrayOutputStream();
+
+        assertEquals(3L, client.transferObject(BUCKET, "a", stream));
+        assertEquals(3L, client.transferObject(BUCKET, "a", Channels.newChannel(channel)));
+
+        assertArrayEquals(data, stream.toByteArray());
+        assertArrayEquals(data, channel.toByteArray());
+    }
+
+    @Test
+    void failedTransferAbortsConnection() {
+        HttpRequestBase request = mock(HttpRequestBase.class);
+        S3Object object = new S3Object();
+        object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(new byte[3]), request));
+        when(s3.getObject(BUCKET, "a")).thenReturn(object);
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+
+        assertThrows(StorageException.class, () -> client().transferObject(BUCKET, "a", broken));
+
+        verify(request).abort();
+    }
+
+    @Test
+    void uploadResultIsBuiltFromPutResponse() {
+        PutObjectResult result = new PutObjectResult();
+        result.setETag("etag-a");
+        result.setVersionId("v1");
+        when(s3.putObject(any(PutObjectRequest.class))).thenReturn(result);
+
+        FileBasicInfo info = client().uploadObject(BUCKET, "a.txt", new ByteArrayInputStream(new byte[3]));
+
+        assertEquals(BUCKET, info.getBucketName());
+        assertEquals("a.txt", info.getKey());
+        assertEquals(3L, info.getSize());
+        assertEquals("etag-a", info.getEtag());
+        assertEquals("v1", info.getVersionId());
+        assertNotNull(info.getLastModified());
+        verify(s3, never()).getObjectMetadata(anyString(), anyString());
+    }
+
+    @Test
+    void contentTypeIsResolvedByConfiguredResolver() {
+        config.setContentTypeResolver(FixedContentTypeResolver.class);
+        ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(s3.putObject(captor.capture())).thenReturn(new PutObjectResult());
+
+        client().uploadObject(BUCKET, "a.png", new ByteArrayInputStream(new byte[3]));
+
+        assertEquals("application/x-fixed", captor.getValue().getMetadata().getContentType());
+    }
+
+    @Test
+    void uploadFetchMetadataReadsServerMetadata() {
+        config.setUploadFetchMetadata(true);
+        when(s3.putObject(any(PutObjectRequest.class))).thenReturn(new PutObjectResult());
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(3L);
+        metadata.setHeader("ETag", "server-etag");
+        when(s3.getObjectMetadata(BUCKET, "a.txt")).thenReturn(metadata);
+
+        FileBasicInfo info = client().uploadObject(BUCKET, "a.txt", new ByteArrayInputStream(new byte[3]));
+
+        assertEquals("server-etag", info.getEtag());
+        verify(s3).getObjectMetadata(BUCKET, "a.txt");
+    }
+
+    @Test
+    void deleteBucketAbortsUploadsAndDeletesEveryPage() {
+        MultipartUpload upload = new MultipartUpload();
+        upload.setKey("pending");
+        upload.setUploadId("upload-1");
+        MultipartUploadListing uploads = new MultipartUploadListing();
+        uploads.setMultipartUploads(Collections.singletonList(upload));
+        when(s3.listMultipartUploads(any())).thenReturn(uploads);
+        when(s3.getBucketVersioningConfiguration(BUCKET)).thenReturn(new BucketVersioningConfiguration(BucketVersioningConfiguration.OFF));
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page("t", "a", "b"), page(null, "c"));
+        List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+        when(s3.deleteObjects(any())).thenAnswer(invocation -> delete(invocation.getArgument(0), deleted));
+
+        client().deleteBucket(BUCKET);
+
+        verify(s3).abortMultipartUpload(any());
+        verify(s3, times(2)).deleteObjects(any());
+        assertEquals(Arrays.asList("a", "b", "c"), deleted.stream().sorted().collect(Collectors.toList()));
+        verify(s3).deleteBucket(BUCKET);
+    }
+
+    @Test
+    void deleteVersionedBucketDeletesEveryVersion() {
+        when(s3.listMultipartUploads(any())).thenReturn(new MultipartUploadListing());
+        when(s3.getBucketVersioningConfiguration(BUCKET)).thenReturn(new BucketVersioningConfiguration(BucketVersioningConfiguration.SUSPENDED));
+        VersionListing versions = new VersionListing();
+        versions.setVersionSummaries(Arrays.asList(version("a", "v1"), version("a", "v2")));
+        when(s3.listVersions(any(ListVersionsRequest.class))).thenReturn(versions);
+        List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+        when(s3.deleteObjects(any())).thenAnswer(invocation -> delete(invocation.getArgument(0), deleted));
+
+        client().deleteBucket(BUCKET);
+
+        assertEquals(Arrays.asList("a@v1", "a@v2"), deleted);
+        verify(s3, never()).listObjectsV2(any(ListObjectsV2Request.class));
+        verify(s3).deleteBucket(BUCKET);
+    }
+
+    @Test
+    void failedBatchKeepsBucket() {
+        when(s3.listMultipartUploads(any())).thenReturn(new MultipartUploadListing());
+        when(s3.getBucketVersioningConfiguration(BUCKET)).thenReturn(new BucketVersioningConfiguration(BucketVersioningConfiguration.OFF));
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page(null, "a"));
+        MultiObjectDeleteException.DeleteError error = new MultiObjectDeleteException.DeleteError();
+        error.setKey("a");
+        error.setCode("AccessDenied");
+        when(s3.deleteObjects(any())).thenThrow(new MultiObjectDeleteException(Collections.singletonList(error), Collections.emptyList()));
+        AbstractS3Client client = client();
+
+        StorageException e = assertThrows(StorageException.class, () -> client.deleteBucket(BUCKET));
+
+        assertTrue(e.getMessage().contains("AccessDenied"));
+        verify(s3, never()).deleteBucket(BUCKET);
+    }
+
+    @Test
+    void downloadUrlIsCachedWhenEnabled() throws Exception {
+        config.getPresignCache().setEnabled(true);
+        when(s3.generatePresignedUrl(eq(BUCKET), eq("a"), any(Date.class))).thenReturn(new URL("http://127.0.0.1:9000/bucket/a?sig=1"));
+        AbstractS3Client client = client();
+        Date expiration = new Date(System.currentTimeMillis() + 10 * 60 * 1000L);
+
+        String first = client.getDownloadUrl(BUCKET, "a", expiration);
+        String second = client.getDownloadUrl(BUCKET, "a", new Date(expiration.getTime() + 1));
+
+        assertEquals(first, second);
+        verify(s3).generatePresignedUrl(eq(BUCKET), eq("a"), any(Date.class));
+    }
+
+    @Test
+    void downloadUrlIsSignedPerCallByDefault() throws Exception {
+        when(s3.generatePresignedUrl(eq(BUCKET), eq("a"), any(Date.class))).thenReturn(new URL("http://127.0.0.1:9000/bucket/a?sig=1"));
+        AbstractS3Client client = client();
+        Date expiration = new Date(System.currentTimeMillis() + 10 * 60 * 1000L);
+
+        client.getDownloadUrl(BUCKET, "a", expiration);
+        client.getDownloadUrl(BUCKET, "a", expiration);
+
+        verify(s3, times(2)).generatePresignedUrl(BUCKET, "a", expiration);
+    }
+
+    private AbstractS3Client client() {
+        AbstractS3Client client = new AbstractS3Client(config, ClientSource.S3) {
+            @Override
+            protected AmazonS3 init(StorageProperty config) {
+                return s3;
+            }
+        };
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * 固定返回同一类型的解析器
+     */
+    public static class FixedContentTypeResolver implements ContentTypeResolver {
+
+        @Override
+        public String resolve(String objectName) {
+            return "application/x-fixed";
+        }
+    }
+
+    private static S3Object object(byte[] content, Long contentLength) {
+        S3Object object = new S3Object();
+        object.setObjectContent(new ByteArrayInputStream(content));
+        if (contentLength != null) {
+            object.getObjectMetadata().setContentLength(contentLength);
+        }
+        return object;
+    }
+
+    private static ListObjectsV2Result page(String nextToken, String... keys) {
+        ListObjectsV2Result page = new ListObjectsV2Result();
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            page.getObjectSummaries().add(summary);
+        }
+        page.setTruncated(nextToken != null);
+        page.setNextContinuationToken(nextToken);
+        return page;
+    }
+
+    private static S3VersionSummary version(String key, String versionId) {
+        S3VersionSummary version = new S3VersionSummary();
+        version.setKey(key);
+        version.setVersionId(versionId);
+        return version;
+    }
+
+    private static DeleteObjectsResult delete(DeleteObjectsRequest request, List<String> deleted) {
+        List<DeleteObjectsResult.DeletedObject> objects = new ArrayList<>();
+        for (DeleteObjectsRequest.KeyVersion key : request.getKeys()) {
+            deleted.add(key.getVersion() == null ? key.getKey() : key.getKey() + "@" + key.getVersion());
+            DeleteObjectsResult.DeletedObject object = new DeleteObjectsResult.DeletedObject();
+            object.setKey(key.getKey());
+            object.setVersionId(key.getVersion());
+            objects.add(object);
+        }
+        return new DeleteObjectsResult(objects);
+    }
+
+    private static AmazonS3Exception s3Exception(int statusCode, String errorCode) {
+        AmazonS3Exception e = new AmazonS3Exception(errorCode);
+        e.setStatusCode(statusCode);
+        e.setErrorCode(errorCode);
+        return e;
+    }
+}
@@ -0,0 +1,149 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.opcooc.storage.config.BatchDeleteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量删除测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchDeleterTest {
+
+    @Mock
+    private AmazonS3 client;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void batchesAreDeletedAndCollected() throws Exception {
+        when(client.deleteObjects(any())).thenAnswer(invocation -> deleted(invocation.getArgument(0)));
+
+        BatchDeleter deleter = new BatchDeleter(client, executor, 2, true);
+        deleter.submit("bucket", keys("a", 3));
+        deleter.submit("bucket", keys("b", 2));
+        deleter.submit("bucket", Collections.emptyList());
+        BatchDeleteResult result = deleter.await();
+
+        assertTrue(result.isSuccess());
+        assertEquals(5, result.getDeletedCount());
+        assertEquals(5, result.getDeleted().size());
+        // 空批次不发送请求
+        verify(client, times(2)).deleteObjects(any());
+    }
+
+    @Test
+    void partialFailuresAreRecordedPerKey() throws Exception {
+        when(client.deleteObjects(any())).thenAnswer(invocation -> {
+            MultiObjectDeleteException.DeleteError error = new MultiObjectDeleteException.DeleteError();
+            error.setKey("a1");
+            error.setCode("AccessDenied");
+            error.setMessage("Access Denied");
+            throw new MultiObjectDeleteException(Collections.singletonList(error), Collections.emptyList());
+        });
+
+        BatchDeleter deleter = new BatchDeleter(client, executor, 1, false);
+        deleter.submit("bucket", keys("a", 3));
+        BatchDeleteResult result = deleter.await();
+
+        assertEquals(2, result.getDeletedCount());
+        assertEquals(1, result.getFailed().size());
+        BatchDeleteResult.Failure failure = result.getFailed().get(0);
+        assertEquals("a1", failure.getKey());
+        assertEquals("AccessDenied", failure.getCode());
+    }
+
+    @Test
+    void failedRequestFailsOnlyItsOwnBatch() throws Exception {
+        when(client.deleteObjects(any())).thenAnswer(invocation -> {
+            DeleteObjectsRequest request = invocation.getArgument(0);
+            if (request.getKeys().get(0).getKey().startsWith("b")) {
+                AmazonS3Exception e = new AmazonS3Exception("slow down");
+                e.setErrorCode("SlowDown");
+                throw e;
+            }
+            return deleted(request);
+        });
+
+        BatchDeleter deleter = new BatchDeleter(client, executor, 2, false);
+        deleter.submit("bucket", keys("a", 3));
+        deleter.submit("bucket", keys("b", 2));
+        BatchDeleteResult result = deleter.await();
+
+        assertEquals(3, result.getDeletedCount());
+        assertEquals(2, result.getFailed().size());
+        assertTrue(result.getFailed().stream().allMatch(failure -> "SlowDown".equals(failure.getCode())));
+    }
+
+    @Test
+    void inFlightBatchesAreBounded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(client.deleteObjects(any())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return deleted(invocation.getArgument(0));
+        });
+
+        BatchDeleter deleter = new BatchDeleter(client, executor, 2, false);
+        for (int i = 0; i < 8; i++) {
+            deleter.submit("bucket", keys("k" + i + "-", 10));
+        }
+        BatchDeleteResult result = deleter.await();
+
+        assertEquals(80, result.getDeletedCount());
+        assertTrue(peak.get() <= 2, "peak in-flight batches: " + peak.get());
+    }
+
+    private static List<DeleteObjectsRequest.KeyVersion> keys(String prefix, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new DeleteObjectsRequest.KeyVersion(prefix + i))
+                .collect(Collectors.toList());
+    }
+
+    private static DeleteObjectsResult deleted(DeleteObjectsRequest request) {
+        List<DeleteObjectsResult.DeletedObject> deleted = new ArrayList<>();
+        for (DeleteObjectsRequest.KeyVersion key : request.getKeys()) {
+            DeleteObjectsResult.DeletedObject object = new DeleteObjectsResult.DeletedObject();
+            object.setKey(key.getKey());
+            deleted.add(object);
+        }
+        return new DeleteObjectsResult(deleted);
+    }
+}
@@ -0,0 +1,122 @@
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.BatchUploadResult;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.UploadSource;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.StorageExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量上传测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchUploaderTest {
+
+    @Mock
+    private AbstractS3Client client;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = StorageExecutors.newCachedThreadPool("test-batch");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void eachSourceTypeIsUploadedAndFailuresAreRecorded() {
+        File file = new File("a.txt");
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream stream = new ByteArrayInputStream(new byte[3]) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        when(client.uploadBytes("bucket", "bytes", new byte[2])).thenReturn(info("bytes", 2L));
+        when(client.uploadObject("bucket", "file", file)).thenReturn(info("file", 5L));
+        when(client.uploadObject("bucket", "stream", stream)).thenReturn(info("stream", 3L));
+        when(client.uploadBytes(eq("bucket"), eq("broken"), any())).thenThrow(new StorageException("upload failed"));
+        Map<String, UploadSource> sources = new LinkedHashMap<>();
+        sources.put("bytes", UploadSource.of(new byte[2]));
+        sources.put("broken", UploadSource.of(new byte[1]));
+        sources.put("file", UploadSource.of(file));
+        sources.put("stream", UploadSource.of(stream));
+
+        BatchUploadResult result = new BatchUploader(client, executor, 4).upload("bucket", sources);
+
+        assertEquals(Arrays.asList("bytes", "file", "stream"), new ArrayList<>(result.getSucceeded().keySet()));
+        assertEquals(10L, result.getTotalBytes());
+        assertEquals("upload failed", result.getFailed().get("broken").getMessage());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void concurrencyIsBoundedOnSharedExecutor() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(client.uploadBytes(eq("bucket"), anyString(), any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return info(invocation.getArgument(1), 1L);
+        });
+        Map<String, UploadSource> sources = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            sources.put("key" + i, UploadSource.of(new byte[1]));
+        }
+
+        BatchUploadResult result = new BatchUploader(client, executor, 2).upload("bucket", sources);
+
+        assertEquals(8, result.getSucceeded().size());
+        assertTrue(maxRunning.get() <= 2, "max running: " + maxRunning.get());
+        // 线程池由 client 管理, 上传结束后仍可复用
+        assertFalse(executor.isShutdown());
+    }
+
+    @Test
+    void emptySourcesReturnEmptyResult() {
+        BatchUploadResult result = new BatchUploader(client, executor, 2).upload("bucket", new LinkedHashMap<>());
+
+        assertTrue(result.getSucceeded().isEmpty());
+        verifyNoInteractions(client);
+    }
+
+    private static FileBasicInfo info(String key, long size) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setBucketName("bucket");
+        info.setKey(key);
+        info.setSize(size);
+        return info;
+    }
+}
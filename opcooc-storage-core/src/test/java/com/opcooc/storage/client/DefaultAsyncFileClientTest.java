@@ -0,0 +1,112 @@
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.support.StorageAttribute;
+import com.opcooc.storage.utils.StorageAttributeContextHolder;
+import com.opcooc.storage.utils.StorageExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 异步客户端测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class DefaultAsyncFileClientTest {
+
+    @Mock
+    private FileClient client;
+
+    private ExecutorService executor;
+
+    private AsyncFileClient asyncClient;
+
+    @BeforeEach
+    void setUp() {
+        executor = StorageExecutors.newFixedThreadPool("test-async", 1);
+        asyncClient = new DefaultAsyncFileClient(client, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        StorageAttributeContextHolder.clear();
+    }
+
+    @Test
+    void operationRunsOnExecutor() throws Exception {
+        InputStream stream = new ByteArrayInputStream(new byte[1]);
+        FileBasicInfo info = new FileBasicInfo();
+        AtomicReference<String> thread = new AtomicReference<>();
+        when(client.uploadObject("bucket", "a", stream)).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return info;
+        });
+
+        assertSame(info, asyncClient.uploadObject("bucket", "a", stream).get(5, TimeUnit.SECONDS));
+        assertTrue(thread.get().startsWith("test-async"), thread.get());
+    }
+
+    @Test
+    void routingIsRestoredOnWorkerThread() throws Exception {
+        AtomicReference<String> routed = new AtomicReference<>();
+        when(client.objectExist("a")).thenAnswer(invocation -> {
+            routed.set(StorageAttributeContextHolder.bucket());
+            return true;
+        });
+
+        StorageAttributeContextHolder.push(StorageAttribute.builder().bucket("routed").build());
+        CompletableFuture<Boolean> exist;
+        try {
+            exist = asyncClient.supplyAsync(c -> c.objectExist("a"));
+        } finally {
+            StorageAttributeContextHolder.poll();
+        }
+
+        assertTrue(exist.get(5, TimeUnit.SECONDS));
+        assertEquals("routed", routed.get());
+        // 执行完成后线程池线程不残留路由信息
+        assertNull(CompletableFuture.supplyAsync(StorageAttributeContextHolder::bucket, executor).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failureCompletesExceptionally() {
+        StorageException failure = new StorageException("delete failed");
+        doThrow(failure).when(client).deleteObject("bucket", "a");
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asyncClient.deleteObject("bucket", "a").get(5, TimeUnit.SECONDS));
+
+        assertSame(failure, e.getCause());
+    }
+
+    @Test
+    void rejectedTaskCompletesExceptionally() {
+        executor.shutdown();
+
+        CompletableFuture<Void> future = asyncClient.deleteObject("bucket", "a");
+
+        assertTrue(future.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof StorageException);
+        verifyNoInteractions(client);
+    }
+}
@@ -0,0 +1,89 @@
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.BatchDeleteResult;
+import com.opcooc.storage.config.BatchUploadResult;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.UploadSource;
+import com.opcooc.storage.exception.StorageException;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * FileClient 默认方法测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+class FileClientTest {
+
+    private final FileClient client = mock(DefaultMethodsClient.class, CALLS_REAL_METHODS);
+
+    @Test
+    void defaultBatchDeleteObjectsDeletesOneByOneAndRecordsFailures() {
+        doNothing().when(client).deleteObject("bucket", "a");
+        doThrow(new StorageException("delete failed")).when(client).deleteObject("bucket", "b");
+        doNothing().when(client).deleteObject("bucket", "c");
+
+        BatchDeleteResult result = client.batchDeleteObjects("bucket", Arrays.asList("a", "b", "c"));
+
+        InOrder order = inOrder(client);
+        order.verify(client).deleteObject("bucket", "a");
+        order.verify(client).deleteObject("bucket", "b");
+        order.verify(client).deleteObject("bucket", "c");
+        assertEquals(Arrays.asList("a", "c"), result.getDeleted());
+        assertEquals(2L, result.getDeletedCount());
+        assertEquals(1, result.getFailed().size());
+        assertEquals("b", result.getFailed().get(0).getKey());
+        assertEquals("delete failed", result.getFailed().get(0).getMessage());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    void defaultBatchDeleteObjectsAcceptsNull() {
+        assertTrue(client.batchDeleteObjects("bucket", null).isSuccess());
+        verify(client, never()).deleteObject(anyString(), anyString());
+    }
+
+    @Test
+    void defaultUploadObjectsUploadsSequentiallyAndRecordsFailures() {
+        doReturn(info(2L)).when(client).uploadObject(eq("bucket"), eq("a"), any(InputStream.class));
+        doThrow(new StorageException("upload failed")).when(client).uploadObject(eq("bucket"), eq("b"), any(InputStream.class));
+        doReturn(info(3L)).when(client).uploadObject(eq("bucket"), eq("c"), any(InputStream.class));
+        Map<String, UploadSource> sources = new LinkedHashMap<>();
+        sources.put("a", UploadSource.of(new byte[2]));
+        sources.put("b", UploadSource.of(new byte[1]));
+        sources.put("c", UploadSource.of(new byte[3]));
+
+        BatchUploadResult result = client.uploadObjects("bucket", sources);
+
+        InOrder order = inOrder(client);
+        order.verify(client).uploadObject(eq("bucket"), eq("a"), any(InputStream.class));
+        order.verify(client).uploadObject(eq("bucket"), eq("b"), any(InputStream.class));
+        order.verify(client).uploadObject(eq("bucket"), eq("c"), any(InputStream.class));
+        assertEquals(5L, result.getTotalBytes());
+        assertEquals(2, result.getSucceeded().size());
+        assertTrue(result.getFailed().containsKey("b"));
+    }
+
+    /**
+     * 只保留 FileClient 默认实现的 client
+     */
+    abstract static class DefaultMethodsClient implements FileClient {
+    }
+
+    private static FileBasicInfo info(long size) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setSize(size);
+        return info;
+    }
+}
@@ -0,0 +1,227 @@
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.LocalCacheProperty;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.utils.IoUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 本地磁盘读缓存测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class LocalCacheFileClientTest {
+
+    private static final String BUCKET = "bucket";
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private FileClient delegate;
+
+    private final LocalCacheProperty property = new LocalCacheProperty();
+
+    private LocalCacheFileClient client;
+
+    @BeforeEach
+    void setUp() {
+        property.setDirectory(directory.toString());
+        property.setMaxSize(25);
+        property.setMaxObjectSize(10);
+        property.setTtl(60 * 1000L);
+        client = new LocalCacheFileClient(delegate, property, "test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void repeatedReadsAreServedFromCache() {
+        stored("a", "v1");
+
+        assertEquals("v1", read("a"));
+        assertEquals("v1", read("a"));
+
+        verify(delegate).getFileObject(eq(BUCKET), eq("a"), any(File.class));
+        assertEquals(1, client.getCachedCount());
+    }
+
+    @Test
+    void copyInvalidatesTargetNotSource() {
+        stored("src", "new");
+        stored("dst", "old");
+        assertEquals("new", read("src"));
+        assertEquals("old", read("dst"));
+
+        stored("dst", "new");
+        client.copyObject(BUCKET, "src", BUCKET, "dst");
+
+        assertEquals("new", read("dst"));
+        // 源对象未被修改, 缓存保留
+        assertEquals("new", read("src"));
+        verify(delegate).copyObject(BUCKET, "src", BUCKET, "dst");
+        verify(delegate).getFileObject(eq(BUCKET), eq("src"), any(File.class));
+        verify(delegate, times(2)).getFileObject(eq(BUCKET), eq("dst"), any(File.class));
+    }
+
+    @Test
+    void uploadAndDeleteInvalidate() {
+        stored("a", "v1");
+        assertEquals("v1", read("a"));
+
+        stored("a", "v2");
+        client.uploadObject(BUCKET, "a", new ByteArrayInputStream(bytes("v2")));
+        assertEquals("v2", read("a"));
+
+        doThrow(new ObjectNotFoundException(BUCKET, "a")).when(delegate).getObjectMetadata(BUCKET, "a");
+        client.deleteObject(BUCKET, "a");
+        assertThrows(ObjectNotFoundException.class, () -> read("a"));
+        assertEquals(0, client.getCachedCount());
+    }
+
+    @Test
+    void invalidateHookDropsEntryWrittenElsewhere() {
+        stored("a", "v1");
+        assertEquals("v1", read("a"));
+
+        stored("a", "v2");
+        assertEquals("v1", read("a"));
+        client.invalidate(BUCKET, "a");
+
+        assertEquals("v2", read("a"));
+    }
+
+    @Test
+    void expiredEntryIsRevalidatedByEtag() throws Exception {
+        client.shutdown();
+        property.setTtl(50);
+        client = new LocalCacheFileClient(delegate, property, "test");
+        stored("a", "v1");
+        assertEquals("v1", read("a"));
+
+        Thread.sleep(100);
+        assertEquals("v1", read("a"));
+        verify(delegate).getFileObject(eq(BUCKET), eq("a"), any(File.class));
+
+        stored("a", "v2");
+        Thread.sleep(100);
+        assertEquals("v2", read("a"));
+        verify(delegate, times(2)).getFileObject(eq(BUCKET), eq("a"), any(File.class));
+    }
+
+    @Test
+    void streamMissReadsThroughWithoutCaching() throws Exception {
+        stored("a", "v1");
+        when(delegate.getStreamObject(BUCKET, "a")).thenAnswer(invocation -> new ByteArrayInputStream(bytes("v1")));
+
+        assertEquals("v1", stream("a"));
+        assertEquals(0, client.getCachedCount());
+
+        read("a");
+        assertEquals("v1", stream("a"));
+        verify(delegate).getStreamObject(BUCKET, "a");
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedBySize() {
+        for (int i = 0; i < 3; i++) {
+            stored("e" + i, "123456789");
+        }
+        read("e0");
+        read("e1");
+        read("e0");
+        read("e2");
+
+        assertEquals(2, client.getCachedCount());
+        assertEquals(18, client.getCachedSize());
+        read("e0");
+        read("e1");
+        verify(delegate).getFileObject(eq(BUCKET), eq("e0"), any(File.class));
+        verify(delegate, times(2)).getFileObject(eq(BUCKET), eq("e1"), any(File.class));
+        verify(delegate).getFileObject(eq(BUCKET), eq("e2"), any(File.class));
+    }
+
+    @Test
+    void oversizedObjectIsNotCached() {
+        stored("big", "0123456789abc");
+        when(delegate.getByteObject(BUCKET, "big")).thenReturn(bytes("0123456789abc"));
+
+        assertEquals("0123456789abc", read("big"));
+        assertEquals("0123456789abc", read("big"));
+
+        assertEquals(0, client.getCachedCount());
+        verify(delegate, never()).getFileObject(eq(BUCKET), eq("big"), any(File.class));
+        verify(delegate, times(2)).getByteObject(BUCKET, "big");
+    }
+
+    @Test
+    void instancesWithSameNameUseSeparateDirectories() throws Exception {
+        LocalCacheFileClient other = new LocalCacheFileClient(delegate, property, "test");
+        stored("a", "v1");
+        read("a");
+        other.getByteObject(BUCKET, "a");
+
+        other.shutdown();
+        assertEquals("v1", read("a"));
+        client.shutdown();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * 底层存储中的对象, 元数据 ETag 随内容变化, 下载时写入目标文件
+     */
+    private void stored(String objectName, String content) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setBucketName(BUCKET);
+        info.setKey(objectName);
+        info.setSize((long) content.length());
+        info.setEtag("etag-" + content);
+        lenient().doReturn(info).when(delegate).getObjectMetadata(BUCKET, objectName);
+        lenient().doAnswer(invocation -> {
+            File file = invocation.getArgument(2);
+            Files.write(file.toPath(), bytes(content));
+            return file;
+        }).when(delegate).getFileObject(eq(BUCKET), eq(objectName), any(File.class));
+    }
+
+    private String read(String objectName) {
+        return new String(client.getByteObject(BUCKET, objectName), StandardCharsets.UTF_8);
+    }
+
+    private String stream(String objectName) throws Exception {
+        try (InputStream input = client.getStreamObject(BUCKET, objectName)) {
+            return new String(IoUtils.toByteArray(input), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,209 @@
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.MetadataCacheProperty;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 元数据缓存测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class MetadataCacheFileClientTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Mock
+    private FileClient delegate;
+
+    private final MetadataCacheProperty property = new MetadataCacheProperty();
+
+    private MetadataCacheFileClient client;
+
+    @BeforeEach
+    void setUp() {
+        property.setTtl(60 * 1000L);
+        property.setNegativeTtl(60 * 1000L);
+        client = new MetadataCacheFileClient(delegate, property);
+    }
+
+    @Test
+    void metadataAndExistenceShareCachedEntry() {
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenReturn(info("a", 2L));
+
+        FileBasicInfo info = client.getObjectMetadata(BUCKET, "a");
+        assertTrue(client.objectExist(BUCKET, "a"));
+        assertEquals(info.getEtag(), client.getObjectMetadata(BUCKET, "a").getEtag());
+
+        verify(delegate).getObjectMetadata(BUCKET, "a");
+        verify(delegate, never()).objectExist(anyString(), anyString());
+        assertEquals(2, client.getHitCount());
+        assertEquals(1, client.getMissCount());
+    }
+
+    @Test
+    void returnedInfoIsACopy() {
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenReturn(info("a", 2L));
+
+        client.getObjectMetadata(BUCKET, "a").setSize(-1L);
+
+        assertEquals(2L, client.getObjectMetadata(BUCKET, "a").getSize());
+    }
+
+    @Test
+    void existenceMissUsesDelegateObjectExist() {
+        when(delegate.objectExist(BUCKET, "a")).thenReturn(true);
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenReturn(info("a", 2L));
+
+        assertTrue(client.objectExist(BUCKET, "a"));
+        assertTrue(client.objectExist(BUCKET, "a"));
+        verify(delegate).objectExist(BUCKET, "a");
+        verify(delegate, never()).getObjectMetadata(anyString(), anyString());
+
+        // 只缓存了存在性, 获取元数据时仍需查询一次
+        assertEquals(2L, client.getObjectMetadata(BUCKET, "a").getSize());
+        assertEquals(2L, client.getObjectMetadata(BUCKET, "a").getSize());
+        verify(delegate).getObjectMetadata(BUCKET, "a");
+    }
+
+    @Test
+    void missingObjectIsCachedNegatively() {
+        when(delegate.objectExist(BUCKET, "missing")).thenReturn(false);
+
+        assertFalse(client.objectExist(BUCKET, "missing"));
+        assertFalse(client.objectExist(BUCKET, "missing"));
+        assertThrows(ObjectNotFoundException.class, () -> client.getObjectMetadata(BUCKET, "missing"));
+
+        verify(delegate).objectExist(BUCKET, "missing");
+        verify(delegate, never()).getObjectMetadata(anyString(), anyString());
+    }
+
+    @Test
+    void delegateFailureIsNotCachedAsMissing() {
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenThrow(new StorageException("service unavailable"));
+
+        assertThrows(StorageException.class, () -> client.getObjectMetadata(BUCKET, "a"));
+        assertThrows(StorageException.class, () -> client.getObjectMetadata(BUCKET, "a"));
+
+        verify(delegate, times(2)).getObjectMetadata(BUCKET, "a");
+        assertEquals(0, client.getSize());
+    }
+
+    @Test
+    void negativeEntryExpiresSeparately() throws Exception {
+        property.setNegativeTtl(50);
+        client = new MetadataCacheFileClient(delegate, property);
+        when(delegate.objectExist(BUCKET, "a")).thenReturn(false, true);
+
+        assertFalse(client.objectExist(BUCKET, "a"));
+        Thread.sleep(100);
+
+        assertTrue(client.objectExist(BUCKET, "a"));
+        assertTrue(client.objectExist(BUCKET, "a"));
+        verify(delegate, times(2)).objectExist(BUCKET, "a");
+    }
+
+    @Test
+    void writesInvalidateCachedEntries() {
+        when(delegate.getObjectMetadata(BUCKET, "dst")).thenReturn(info("dst", 2L), info("dst", 6L), info("dst", 4L));
+        when(delegate.objectExist(BUCKET, "dst")).thenReturn(false);
+        InputStream stream = new ByteArrayInputStream(new byte[4]);
+
+        assertEquals(2L, client.getObjectMetadata(BUCKET, "dst").getSize());
+
+        client.copyObject(BUCKET, "src", BUCKET, "dst");
+        assertEquals(6L, client.getObjectMetadata(BUCKET, "dst").getSize());
+
+        client.uploadObject(BUCKET, "dst", stream);
+        assertEquals(4L, client.getObjectMetadata(BUCKET, "dst").getSize());
+
+        client.deleteObject(BUCKET, "dst");
+        assertFalse(client.objectExist(BUCKET, "dst"));
+
+        verify(delegate).copyObject(BUCKET, "src", BUCKET, "dst");
+        verify(delegate).uploadObject(BUCKET, "dst", stream);
+        verify(delegate).deleteObject(BUCKET, "dst");
+    }
+
+    @Test
+    void cachedSourceSizeIsPassedAsCopyHint() {
+        when(delegate.getObjectMetadata(BUCKET, "src")).thenReturn(info("src", 6L));
+        client.getObjectMetadata(BUCKET, "src");
+
+        client.copyObject(BUCKET, "src", BUCKET, "dst");
+        client.copyObject(BUCKET, "other", BUCKET, "dst");
+
+        verify(delegate).copyObject(BUCKET, "src", BUCKET, "dst", 6L);
+        verify(delegate).copyObject(BUCKET, "other", BUCKET, "dst");
+    }
+
+    @Test
+    void failedWriteStillInvalidates() {
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenReturn(info("a", 2L), info("a", 3L));
+        doThrow(new StorageException("delete failed")).when(delegate).deleteObject(BUCKET, "a");
+
+        client.getObjectMetadata(BUCKET, "a");
+        assertThrows(StorageException.class, () -> client.deleteObject(BUCKET, "a"));
+
+        assertEquals(3L, client.getObjectMetadata(BUCKET, "a").getSize());
+    }
+
+    @Test
+    void deleteBucketClearsCache() {
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenReturn(info("a", 2L));
+        client.getObjectMetadata(BUCKET, "a");
+
+        client.deleteBucket(BUCKET);
+
+        assertEquals(0, client.getSize());
+        verify(delegate).deleteBucket(BUCKET);
+    }
+
+    @Test
+    void resultLoadedBeforeInvalidationIsNotCached() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenAnswer(invocation -> {
+            // 读取已拿到旧的元数据, 返回前对象被覆盖
+            loaded.countDown();
+            gate.await();
+            return info("a", 2L);
+        }).thenReturn(info("a", 4L));
+
+        CompletableFuture<FileBasicInfo> loading = CompletableFuture.supplyAsync(() -> client.getObjectMetadata(BUCKET, "a"));
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        client.uploadObject(BUCKET, "a", new ByteArrayInputStream(new byte[4]));
+        gate.countDown();
+
+        assertEquals(2L, loading.get(5, TimeUnit.SECONDS).getSize());
+        assertEquals(4L, client.getObjectMetadata(BUCKET, "a").getSize());
+        verify(delegate, times(2)).getObjectMetadata(BUCKET, "a");
+    }
+
+    private static FileBasicInfo info(String key, long size) {
+        FileBasicInfo info = new FileBasicInfo();
+        info.setBucketName(BUCKET);
+        info.setKey(key);
+        info.setSize(size);
+        info.setEtag("etag-" + size);
+        return info;
+    }
+}
@@ -0,0 +1,192 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.exception.StorageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 服务端复制测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class MultipartCopierTest {
+
+    private static final long PART_SIZE = MultipartUploader.MIN_PART_SIZE;
+
+    private static final long THRESHOLD = MultipartUploader.MIN_PART_SIZE;
+
+    @Mock
+    private AmazonS3 client;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void smallObjectWithSizeHintIsCopiedWithoutHead() throws Exception {
+        when(client.copyObject(any(CopyObjectRequest.class))).thenReturn(new CopyObjectResult());
+
+        new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", 10L, THRESHOLD, PART_SIZE);
+
+        ArgumentCaptor<CopyObjectRequest> captor = ArgumentCaptor.forClass(CopyObjectRequest.class);
+        verify(client).copyObject(captor.capture());
+        assertEquals("dst", captor.getValue().getDestinationBucketName());
+        assertEquals("b", captor.getValue().getDestinationKey());
+        verify(client, never()).getObjectMetadata(any(String.class), any(String.class));
+    }
+
+    @Test
+    void unknownSizeIsResolvedAndSingleCopyUsesIfMatch() throws Exception {
+        when(client.getObjectMetadata("src", "a")).thenReturn(metadata(10L, "etag-a"));
+        when(client.copyObject(any(CopyObjectRequest.class))).thenReturn(new CopyObjectResult());
+
+        new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", -1L, THRESHOLD, PART_SIZE);
+
+        ArgumentCaptor<CopyObjectRequest> captor = ArgumentCaptor.forClass(CopyObjectRequest.class);
+        verify(client).copyObject(captor.capture());
+        assertEquals(Collections.singletonList("\"etag-a\""), captor.getValue().getMatchingETagConstraints());
+        verify(client, never()).initiateMultipartUpload(any());
+    }
+
+    @Test
+    void sourceModifiedBeforeSingleCopyFails() {
+        when(client.getObjectMetadata("src", "a")).thenReturn(metadata(10L, "etag-a"));
+        // If-Match 不满足时 SDK 返回 null
+        when(client.copyObject(any(CopyObjectRequest.class))).thenReturn(null);
+
+        assertThrows(StorageException.class,
+                () -> new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", -1L, THRESHOLD, PART_SIZE));
+    }
+
+    @Test
+    void largeObjectIsCopiedInRangedPartsWithIfMatch() throws Exception {
+        long size = 2 * PART_SIZE + 1;
+        ObjectMetadata source = metadata(size, "etag-a");
+        source.setContentType("image/png");
+        source.addUserMetadata("owner", "test");
+        when(client.getObjectMetadata("src", "a")).thenReturn(source);
+        when(client.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(client.copyPart(any())).thenAnswer(invocation -> copied(invocation.getArgument(0)));
+
+        new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", -1L, THRESHOLD, PART_SIZE);
+
+        ArgumentCaptor<InitiateMultipartUploadRequest> initiate = ArgumentCaptor.forClass(InitiateMultipartUploadRequest.class);
+        verify(client).initiateMultipartUpload(initiate.capture());
+        assertEquals("image/png", initiate.getValue().getObjectMetadata().getContentType());
+        assertEquals("test", initiate.getValue().getObjectMetadata().getUserMetaDataOf("owner"));
+
+        ArgumentCaptor<CopyPartRequest> parts = ArgumentCaptor.forClass(CopyPartRequest.class);
+        verify(client, times(3)).copyPart(parts.capture());
+        List<CopyPartRequest> requests = new ArrayList<>(parts.getAllValues());
+        requests.sort((a, b) -> Integer.compare(a.getPartNumber(), b.getPartNumber()));
+        assertEquals(0L, requests.get(0).getFirstByte());
+        assertEquals(PART_SIZE - 1, requests.get(0).getLastByte());
+        assertEquals(2 * PART_SIZE, requests.get(2).getFirstByte());
+        assertEquals(size - 1, requests.get(2).getLastByte());
+        requests.forEach(request -> assertEquals(Collections.singletonList("\"etag-a\""), request.getMatchingETagConstraints()));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertEquals(3, complete.getValue().getPartETags().size());
+        assertEquals(1, complete.getValue().getPartETags().get(0).getPartNumber());
+        verify(client, never()).copyObject(any(CopyObjectRequest.class));
+    }
+
+    @Test
+    void sourceModifiedDuringMultipartCopyAbortsUpload() {
+        when(client.getObjectMetadata("src", "a")).thenReturn(metadata(3 * PART_SIZE, "etag-a"));
+        when(client.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(client.copyPart(any())).thenAnswer(invocation -> {
+            CopyPartRequest request = invocation.getArgument(0);
+            return request.getPartNumber() == 2 ? null : copied(request);
+        });
+
+        assertThrows(StorageException.class,
+                () -> new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", -1L, THRESHOLD, PART_SIZE));
+
+        verify(client).abortMultipartUpload(any());
+        verify(client, never()).completeMultipartUpload(any());
+    }
+
+    @Test
+    void inFlightPartsAreBounded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(client.getObjectMetadata("src", "a")).thenReturn(metadata(8 * PART_SIZE, "etag-a"));
+        when(client.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(client.copyPart(any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return copied(invocation.getArgument(0));
+        });
+
+        new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", -1L, THRESHOLD, PART_SIZE);
+
+        verify(client, times(8)).copyPart(any());
+        assertTrue(maxRunning.get() <= 2, "max in flight: " + maxRunning.get());
+    }
+
+    @Test
+    void staleSizeHintFallsBackToActualSize() throws Exception {
+        AmazonS3Exception tooLarge = new AmazonS3Exception("The specified copy source is larger than the maximum allowable size");
+        tooLarge.setStatusCode(400);
+        when(client.copyObject(any(CopyObjectRequest.class))).thenThrow(tooLarge);
+        when(client.getObjectMetadata("src", "a")).thenReturn(metadata(2 * PART_SIZE, "etag-a"));
+        when(client.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(client.copyPart(any())).thenAnswer(invocation -> copied(invocation.getArgument(0)));
+
+        new MultipartCopier(client, executor, 2).copy("src", "a", "dst", "b", 10L, THRESHOLD, PART_SIZE);
+
+        verify(client, times(2)).copyPart(any());
+        verify(client).completeMultipartUpload(any());
+    }
+
+    private static ObjectMetadata metadata(long size, String etag) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
+        metadata.setHeader("ETag", etag);
+        return metadata;
+    }
+
+    private static InitiateMultipartUploadResult initiated() {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setUploadId("upload-1");
+        return result;
+    }
+
+    private static CopyPartResult copied(CopyPartRequest request) {
+        CopyPartResult result = new CopyPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("part-" + request.getPartNumber());
+        return result;
+    }
+}
@@ -0,0 +1,320 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 流式分片上传测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class MultipartUploaderTest {
+
+    private static final int PART_SIZE = 1024;
+
+    @Mock
+    private AmazonS3 client;
+
+    private ExecutorService executor;
+
+    /**
+     * 按分片号记录上传的分片内容, 在上传时读取, 分片缓冲区归还后内容可能被覆盖
+     */
+    private final Map<Integer, byte[]> uploadedParts = new ConcurrentHashMap<>();
+
+    /**
+     * 每个分片上传的耗时(毫秒)
+     */
+    private long partDelay;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void smallStreamIsPutWithoutTouchingBufferPool() throws Exception {
+        PartBufferPool pool = new PartBufferPool(PART_SIZE, 1, 100);
+        // 占用唯一的缓冲区, 小文件上传如果使用缓冲区池会等待超时
+        pool.acquire();
+        byte[] data = randomBytes(PART_SIZE - 1);
+        ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(client.putObject(captor.capture())).thenAnswer(invocation -> {
+            assertArrayEquals(data, IoUtils.toByteArray(captor.getValue().getInputStream()));
+            return putResult("small");
+        });
+
+        FileBasicInfo info = new MultipartUploader(client, executor, pool)
+                .upload("bucket", "small.bin", new ByteArrayInputStream(data), new ObjectMetadata());
+
+        assertEquals(PART_SIZE - 1, info.getSize());
+        assertEquals("small", info.getEtag());
+        assertEquals(PART_SIZE - 1, captor.getValue().getMetadata().getContentLength());
+        verify(client, never()).initiateMultipartUpload(any());
+    }
+
+    @Test
+    void largeStreamIsUploadedInParts() throws Exception {
+        mockMultipart();
+        byte[] data = randomBytes(PART_SIZE * 2 + 452);
+
+        FileBasicInfo info = new MultipartUploader(client, executor, new PartBufferPool(PART_SIZE, 2, 0))
+                .upload("bucket", "large.bin", new ByteArrayInputStream(data), new ObjectMetadata());
+
+        assertEquals(data.length, info.getSize());
+        assertEquals(3, uploadedParts.size());
+        assertEquals(PART_SIZE, uploadedParts.get(1).length);
+        assertEquals(452, uploadedParts.get(3).length);
+        assertArrayEquals(data, concatParts());
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(captor.capture());
+        assertEquals(3, captor.getValue().getPartETags().size());
+        verify(client, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    void streamOfExactlyOnePartIsUploadedAsSinglePart() throws Exception {
+        mockMultipart();
+        byte[] data = randomBytes(PART_SIZE);
+
+        new MultipartUploader(client, executor, new PartBufferPool(PART_SIZE, 1, 0))
+                .upload("bucket", "one.bin", new ByteArrayInputStream(data), new ObjectMetadata());
+
+        assertEquals(1, uploadedParts.size());
+        assertArrayEquals(data, uploadedParts.get(1));
+    }
+
+    @Test
+    void slowUploadWaitsForBufferWithoutTimeout() throws Exception {
+        // 分片上传比等待检查间隔慢得多, 默认不限制等待时间, 上传不应失败
+        partDelay = 300;
+        mockMultipart();
+        byte[] data = randomBytes(PART_SIZE * 3);
+
+        new MultipartUploader(client, executor, new PartBufferPool(PART_SIZE, 1, 0))
+                .upload("bucket", "slow.bin", new ByteArrayInputStream(data), new ObjectMetadata());
+
+        assertArrayEquals(data, concatParts());
+    }
+
+    @Test
+    void failedUploadStopsWaitingForBuffer() throws Exception {
+        when(client.initiateMultipartUpload(any())).thenReturn(initiateResult());
+        StorageException failure = new StorageException("part failed");
+        when(client.uploadPart(any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            throw failure;
+        });
+        // 缓冲区被其他上传长期占用, 本次上传的分片失败后不应继续等待
+        PartBufferPool pool = new PartBufferPool(PART_SIZE, 1, 0);
+        pool.acquire();
+
+        MultipartUploader uploader = new MultipartUploader(client, executor, pool);
+        StorageException e = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(StorageException.class,
+                () -> uploader.upload("bucket", "large.bin", new ByteArrayInputStream(randomBytes(PART_SIZE * 3)), new ObjectMetadata())));
+
+        assertSame(failure, e);
+        verify(client).abortMultipartUpload(any());
+    }
+
+    @Test
+    void bufferPoolTimeoutAbortsUpload() throws Exception {
+        when(client.initiateMultipartUpload(any())).thenReturn(initiateResult());
+        lenient().when(client.uploadPart(any())).thenAnswer(invocation -> partResult(invocation.getArgument(0)));
+        PartBufferPool pool = new PartBufferPool(PART_SIZE, 1, 50);
+        pool.acquire();
+
+        MultipartUploader uploader = new MultipartUploader(client, executor, pool);
+        StorageException e = assertThrows(StorageException.class, () -> uploader.upload("bucket", "large.bin",
+                new ByteArrayInputStream(randomBytes(PART_SIZE * 3)), new ObjectMetadata()));
+
+        assertTrue(e.getMessage().contains("timeout"));
+        verify(client).abortMultipartUpload(any());
+        verify(client, never()).completeMultipartUpload(any());
+    }
+
+    @Test
+    void knownLengthStreamIsUploadedSequentiallyWithoutBufferPool() throws Exception {
+        mockMultipart();
+        int bufferSize = 2 * 1024 * 1024;
+        PartBufferPool pool = new PartBufferPool(bufferSize, 1, 100);
+        pool.acquire();
+        byte[] data = randomBytes((int) MultipartUploader.MIN_PART_SIZE + 100);
+        CloseTrackingInputStream stream = new CloseTrackingInputStream(data);
+
+        FileBasicInfo info = new MultipartUploader(client, executor, pool)
+                .upload("bucket", "large.bin", stream, data.length, new ObjectMetadata(), 0);
+
+        assertEquals(data.length, info.getSize());
+        assertEquals(3, uploadedParts.size());
+        assertEquals(bufferSize, uploadedParts.get(1).length);
+        assertArrayEquals(data, concatParts());
+        assertFalse(stream.closed);
+    }
+
+    @Test
+    void knownLengthStreamBelowThresholdIsPut() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 3);
+        ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(client.putObject(captor.capture())).thenAnswer(invocation -> {
+            assertArrayEquals(data, IoUtils.toByteArray(captor.getValue().getInputStream()));
+            return putResult("known");
+        });
+
+        new MultipartUploader(client, executor, new PartBufferPool(PART_SIZE, 1, 100))
+                .upload("bucket", "known.bin", new ByteArrayInputStream(data), data.length, new ObjectMetadata(), 32 * 1024 * 1024L);
+
+        assertEquals(data.length, captor.getValue().getMetadata().getContentLength());
+        verify(client, never()).initiateMultipartUpload(any());
+    }
+
+    @Test
+    void smallFileIsPut(@TempDir Path dir) throws Exception {
+        File file = writeFile(dir, randomBytes(PART_SIZE));
+        when(client.putObject(any(PutObjectRequest.class))).thenReturn(putResult("file"));
+
+        FileBasicInfo info = new MultipartUploader(client, executor, new PartBufferPool(PART_SIZE, 1, 0))
+                .upload("bucket", "small.bin", file, new ObjectMetadata(), 32 * 1024 * 1024L);
+
+        assertEquals(PART_SIZE, info.getSize());
+        assertEquals("file", info.getEtag());
+        verify(client, never()).initiateMultipartUpload(any());
+    }
+
+    @Test
+    void largeFileIsUploadedInParallelParts(@TempDir Path dir) throws Exception {
+        mockMultipart();
+        int partSize = 2 * 1024 * 1024;
+        byte[] data = randomBytes((int) MultipartUploader.MIN_PART_SIZE + 100);
+        File file = writeFile(dir, data);
+
+        FileBasicInfo info = new MultipartUploader(client, executor, new PartBufferPool(partSize, 2, 0))
+                .upload("bucket", "large.bin", file, new ObjectMetadata(), MultipartUploader.MIN_PART_SIZE);
+
+        assertEquals(data.length, info.getSize());
+        assertEquals("multipart-3", info.getEtag());
+        assertEquals(3, uploadedParts.size());
+        assertEquals(partSize, uploadedParts.get(1).length);
+        assertArrayEquals(data, concatParts());
+        verify(client, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    void failedFilePartAbortsUpload(@TempDir Path dir) throws Exception {
+        when(client.initiateMultipartUpload(any())).thenReturn(initiateResult());
+        StorageException failure = new StorageException("part failed");
+        when(client.uploadPart(any())).thenThrow(failure);
+        File file = writeFile(dir, randomBytes((int) MultipartUploader.MIN_PART_SIZE));
+
+        MultipartUploader uploader = new MultipartUploader(client, executor, new PartBufferPool(2 * 1024 * 1024, 2, 0));
+        StorageException e = assertThrows(StorageException.class,
+                () -> uploader.upload("bucket", "large.bin", file, new ObjectMetadata(), MultipartUploader.MIN_PART_SIZE));
+
+        assertSame(failure, e);
+        verify(client).abortMultipartUpload(any());
+        verify(client, never()).completeMultipartUpload(any());
+    }
+
+    private void mockMultipart() {
+        when(client.initiateMultipartUpload(any())).thenReturn(initiateResult());
+        when(client.uploadPart(any())).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            if (partDelay > 0) {
+                Thread.sleep(partDelay);
+            }
+            uploadedParts.put(request.getPartNumber(), IoUtils.toByteArray(request.getInputStream()));
+            return partResult(request);
+        });
+        CompleteMultipartUploadResult complete = new CompleteMultipartUploadResult();
+        complete.setETag("multipart-3");
+        when(client.completeMultipartUpload(any())).thenReturn(complete);
+    }
+
+    private byte[] concatParts() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 1; i <= uploadedParts.size(); i++) {
+            output.write(uploadedParts.get(i), 0, uploadedParts.get(i).length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 记录是否被关闭, 已知长度的上传不应关闭调用方的流
+     */
+    private static final class CloseTrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        private CloseTrackingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static InitiateMultipartUploadResult initiateResult() {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setUploadId("upload-id");
+        return result;
+    }
+
+    private static UploadPartResult partResult(UploadPartRequest request) {
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("part-" + request.getPartNumber());
+        return result;
+    }
+
+    private static PutObjectResult putResult(String etag) {
+        PutObjectResult result = new PutObjectResult();
+        result.setETag(etag);
+        return result;
+    }
+
+    private static File writeFile(Path dir, byte[] data) throws Exception {
+        return Files.write(dir.resolve("upload.bin"), data).toFile();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
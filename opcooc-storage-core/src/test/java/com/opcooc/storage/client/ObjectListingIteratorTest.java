@@ -0,0 +1,157 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 懒加载列举测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class ObjectListingIteratorTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Mock
+    private AmazonS3 client;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pagesAreFetchedOnlyWhenConsumed() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page("t1", "a", "b"), page(null, "c"));
+
+        ObjectListingIterator iterator = new ObjectListingIterator(client, BUCKET, "", true, null);
+        verify(client, never()).listObjectsV2(any(ListObjectsV2Request.class));
+
+        assertEquals("a", iterator.next().getKey());
+        assertEquals("b", iterator.next().getKey());
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+
+        assertEquals("c", iterator.next().getKey());
+        assertFalse(iterator.hasNext());
+        ArgumentCaptor<ListObjectsV2Request> captor = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client, times(2)).listObjectsV2(captor.capture());
+        assertNull(captor.getAllValues().get(0).getContinuationToken());
+        assertEquals("t1", captor.getAllValues().get(1).getContinuationToken());
+    }
+
+    @Test
+    void recursiveListingHasNoDelimiter() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page(null, "a/b"));
+
+        new ObjectListingIterator(client, BUCKET, "a/", true, null).next();
+
+        ArgumentCaptor<ListObjectsV2Request> captor = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client).listObjectsV2(captor.capture());
+        assertEquals("a/", captor.getValue().getPrefix());
+        assertNull(captor.getValue().getDelimiter());
+    }
+
+    @Test
+    void foldersAreMergedWithFilesInKeyOrder() {
+        ListObjectsV2Result page = page(null, "p/a.txt", "p/c.txt");
+        page.setCommonPrefixes(Arrays.asList("p/b/", "p/d/"));
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page);
+
+        List<FileBasicInfo> infos = new ArrayList<>();
+        new ObjectListingIterator(client, BUCKET, "p/", false, null).forEachRemaining(infos::add);
+
+        assertEquals(Arrays.asList("p/a.txt", "p/b/", "p/c.txt", "p/d/"), keys(infos));
+        assertFalse(infos.get(0).isFolder());
+        assertTrue(infos.get(1).isFolder());
+        assertEquals(0L, infos.get(1).getSize());
+        ArgumentCaptor<ListObjectsV2Request> captor = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client).listObjectsV2(captor.capture());
+        assertEquals(ObjectListingIterator.DELIMITER, captor.getValue().getDelimiter());
+    }
+
+    @Test
+    void nextPageIsPrefetchedInBackground() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page("t1", "a"), page(null, "b"));
+
+        ObjectListingIterator iterator = new ObjectListingIterator(client, BUCKET, "", true, executor);
+        assertEquals("a", iterator.next().getKey());
+
+        // 第一页尚未消费完, 下一页已在后台请求
+        verify(client, timeout(5000).times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+        assertEquals("b", iterator.next().getKey());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void closedIteratorStopsListing() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page("t1", "a", "b"));
+
+        ObjectListingIterator iterator = new ObjectListingIterator(client, BUCKET, "", true, null);
+        iterator.next();
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    void listingFailureIsWrapped() {
+        AmazonS3Exception failure = new AmazonS3Exception("access denied");
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenThrow(failure);
+
+        ObjectListingIterator prefetching = new ObjectListingIterator(client, BUCKET, "", true, executor);
+        StorageException e = assertThrows(StorageException.class, prefetching::hasNext);
+        assertTrue(e.getMessage().contains("access denied"));
+        assertThrows(StorageException.class, new ObjectListingIterator(client, BUCKET, "", true, null)::hasNext);
+    }
+
+    private static ListObjectsV2Result page(String nextToken, String... keys) {
+        ListObjectsV2Result page = new ListObjectsV2Result();
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            summary.setSize(1L);
+            page.getObjectSummaries().add(summary);
+        }
+        page.setTruncated(nextToken != null);
+        page.setNextContinuationToken(nextToken);
+        return page;
+    }
+
+    private static List<String> keys(List<FileBasicInfo> infos) {
+        List<String> keys = new ArrayList<>();
+        infos.forEach(info -> keys.add(info.getKey()));
+        return keys;
+    }
+}
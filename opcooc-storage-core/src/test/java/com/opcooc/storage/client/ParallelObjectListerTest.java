@@ -0,0 +1,195 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.StorageExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * 并发列举测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class ParallelObjectListerTest {
+
+    private static final List<String> KEYS = Arrays.asList(
+            "a/1", "a/2", "a/3", "b/1", "b/2/x", "b/2/y", "c/x/1", "c/x/2", "c/y/1", "root1", "root2");
+
+    @Mock
+    private AmazonS3 client;
+
+    private Predicate<String> failing = prefix -> false;
+
+    private RuntimeException exception;
+
+    private Error error;
+
+    /**
+     * 每页返回的最大条数
+     */
+    private int pageSize = 5;
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = StorageExecutors.newCachedThreadPool("test-list");
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> list(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void unorderedListingReturnsEveryObject() {
+        List<String> keys = keys(lister(4).stream("", null, false));
+
+        assertEquals(KEYS.size(), keys.size());
+        assertEquals(new TreeSet<>(KEYS), new TreeSet<>(keys));
+    }
+
+    @Test
+    void sortedListingReturnsKeysInOrder() {
+        assertEquals(KEYS, keys(lister(4).stream("", null, true)));
+    }
+
+    @Test
+    void discoveredObjectsAreNotListedAgain() {
+        assertEquals(KEYS, keys(lister(8).stream("", null, true)));
+
+        // 每个前缀只取一页, 直属文件直接返回, 不再递归列举
+        assertEquals(new TreeSet<>(requests).size(), requests.size());
+        assertEquals(Arrays.asList("", "a/", "b/", "b/2/", "c/", "c/x/", "c/y/"), requests.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void truncatedLevelIsListedAsOneRecursivePartition() {
+        pageSize = 2;
+
+        assertEquals(KEYS, keys(lister(4).stream("", null, true)));
+
+        // 根前缀第一页未取完, 不再细分, 只有第一页被重复获取
+        assertEquals(Arrays.asList("", "<recursive>", "<recursive>", "<recursive>", "<recursive>", "<recursive>", "<recursive>"), requests);
+    }
+
+    @Test
+    void closingStreamKeepsSharedExecutorUsable() {
+        pageSize = 1;
+
+        try (Stream<FileBasicInfo> objects = lister(4).stream("", (bucketName, prefix) -> Arrays.asList("a/", "b/", "c/"), false)) {
+            assertTrue(objects.findFirst().isPresent());
+        }
+
+        assertFalse(executor.isShutdown());
+        assertEquals(KEYS, keys(lister(4).stream("", null, true)));
+    }
+
+    @Test
+    void partitionerLimitsListedPrefixes() {
+        List<String> keys = keys(lister(2)
+                .stream("", (bucketName, prefix) -> Arrays.asList("a/", "c/"), true));
+
+        assertEquals(Arrays.asList("a/1", "a/2", "a/3", "c/x/1", "c/x/2", "c/y/1"), keys);
+    }
+
+    @Test
+    void partitionFailureIsRethrownAsStorageException() {
+        exception = new AmazonS3Exception("internal error");
+        failing = "b/"::equals;
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(StorageException.class,
+                () -> keys(lister(4).stream("", null, false))));
+    }
+
+    @Test
+    void partitionErrorDoesNotBlockConsumer() {
+        error = new OutOfMemoryError("test");
+        failing = "b/"::equals;
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(OutOfMemoryError.class,
+                () -> keys(lister(4).stream("", null, false))));
+    }
+
+    private ParallelObjectLister lister(int concurrency) {
+        return new ParallelObjectLister(client, "bucket", concurrency, executor);
+    }
+
+    private static List<String> keys(Stream<FileBasicInfo> stream) {
+        try (Stream<FileBasicInfo> objects = stream) {
+            return objects.map(FileBasicInfo::getKey).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 在内存中模拟 ListObjectsV2: 支持前缀, "/" 分隔符, 分页和 startAfter
+     */
+    private ListObjectsV2Result list(ListObjectsV2Request request) {
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        requests.add(request.getDelimiter() == null ? "<recursive>" : prefix);
+        if (failing.test(prefix)) {
+            if (error != null) {
+                throw error;
+            }
+            throw exception;
+        }
+        String after = request.getContinuationToken() != null ? request.getContinuationToken() : request.getStartAfter();
+        TreeSet<String> entries = new TreeSet<>();
+        for (String key : KEYS) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            int slash = key.indexOf('/', prefix.length());
+            entries.add("/".equals(request.getDelimiter()) && slash >= 0 ? key.substring(0, slash + 1) : key);
+        }
+        List<String> page = new ArrayList<>(after == null ? entries : entries.tailSet(after, false));
+
+        ListObjectsV2Result result = new ListObjectsV2Result();
+        result.setTruncated(page.size() > pageSize);
+        page = page.subList(0, Math.min(pageSize, page.size()));
+        for (String entry : page) {
+            if (entry.endsWith("/")) {
+                result.getCommonPrefixes().add(entry);
+            } else {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName(request.getBucketName());
+                summary.setKey(entry);
+                result.getObjectSummaries().add(summary);
+            }
+        }
+        if (result.isTruncated()) {
+            result.setNextContinuationToken(page.get(page.size() - 1));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,41 @@
+package com.opcooc.storage.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * POST policy 文档测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+class PostPolicyBuilderTest {
+
+    @Test
+    void conditionsAreWrittenInOrder() {
+        String policy = new PostPolicyBuilder()
+                .eq("bucket", "bucket")
+                .startsWith("key", "up/")
+                .contentLengthRange(0, 10)
+                .build(new Date(1500L));
+
+        assertEquals("{\"expiration\":\"1970-01-01T00:00:01.500Z\",\"conditions\":["
+                + "{\"bucket\":\"bucket\"},[\"starts-with\",\"$key\",\"up/\"],[\"content-length-range\",0,10]]}", decode(policy));
+    }
+
+    @Test
+    void valuesAreEscaped() {
+        String policy = new PostPolicyBuilder().eq("key", "a\"b\\c\n\u0001中").build(new Date(0));
+
+        assertTrue(decode(policy).contains("{\"key\":\"a\\\"b\\\\c\\n\\u0001中\"}"), decode(policy));
+    }
+
+    private static String decode(String policy) {
+        return new String(Base64.getDecoder().decode(policy), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.HttpMethod;
+import com.opcooc.storage.config.PresignCacheProperty;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 签名URL缓存测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+class PresignedUrlCacheTest {
+
+    private static final long STEP = 60 * 1000L;
+
+    private final List<Date> signed = new ArrayList<>();
+
+    private final Function<Date, String> signer = expiration -> {
+        signed.add(expiration);
+        return "url-" + signed.size();
+    };
+
+    @Test
+    void nearbyExpirationsShareAlignedUrl() {
+        PresignedUrlCache cache = cache(100);
+        long base = (System.currentTimeMillis() / STEP + 10) * STEP;
+
+        String first = cache.get(HttpMethod.GET, "bucket", "a", null, new Date(base + 1000), signer);
+        String second = cache.get(HttpMethod.GET, "bucket", "a", null, new Date(base + 20000), signer);
+
+        assertEquals(first, second);
+        assertEquals(1, signed.size());
+        assertEquals(0, signed.get(0).getTime() % STEP);
+        // 实际过期时间不早于请求的过期时间
+        assertTrue(signed.get(0).getTime() - 2000 >= base + 20000);
+    }
+
+    @Test
+    void laterExpirationIsSignedAgain() {
+        PresignedUrlCache cache = cache(100);
+        long base = (System.currentTimeMillis() / STEP + 10) * STEP;
+
+        cache.get(HttpMethod.GET, "bucket", "a", null, new Date(base + 1000), signer);
+        cache.get(HttpMethod.GET, "bucket", "a", null, new Date(base + STEP + 1000), signer);
+
+        assertEquals(2, signed.size());
+    }
+
+    @Test
+    void methodObjectAndContentTypeAreSignedSeparately() {
+        PresignedUrlCache cache = cache(100);
+        Date expiration = new Date(System.currentTimeMillis() + 10 * STEP);
+
+        cache.get(HttpMethod.GET, "bucket", "a", null, expiration, signer);
+        cache.get(HttpMethod.PUT, "bucket", "a", null, expiration, signer);
+        cache.get(HttpMethod.PUT, "bucket", "a", "image/png", expiration, signer);
+        cache.get(HttpMethod.GET, "bucket", "b", null, expiration, signer);
+        cache.get(HttpMethod.PUT, "bucket", "a", "image/png", expiration, signer);
+
+        assertEquals(4, signed.size());
+    }
+
+    @Test
+    void cacheSizeIsBounded() {
+        PresignedUrlCache cache = cache(1);
+        Date expiration = new Date(System.currentTimeMillis() + 10 * STEP);
+
+        cache.get(HttpMethod.GET, "bucket", "a", null, expiration, signer);
+        cache.get(HttpMethod.GET, "bucket", "b", null, expiration, signer);
+        cache.get(HttpMethod.GET, "bucket", "a", null, expiration, signer);
+
+        assertEquals(3, signed.size());
+    }
+
+    private static PresignedUrlCache cache(int maxSize) {
+        PresignCacheProperty property = new PresignCacheProperty();
+        property.setEnabled(true);
+        property.setMaxSize(maxSize);
+        property.setExpirationStep(STEP);
+        return new PresignedUrlCache(property);
+    }
+}
@@ -0,0 +1,125 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.opcooc.storage.exception.StorageException;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分段并发下载测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class RangeDownloaderTest {
+
+    private static final long PART_SIZE = 1024;
+
+    private final byte[] data = new byte[(int) PART_SIZE * 2 + 452];
+
+    @Mock
+    private AmazonS3 client;
+
+    @TempDir
+    Path directory;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        new Random(6).nextBytes(data);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void rangesAreAssembledIntoFile() throws Exception {
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            long[] range = ((GetObjectRequest) invocation.getArgument(0)).getRange();
+            return object((int) range[0], (int) range[1], true);
+        });
+
+        File file = download();
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        verify(client, times(3)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void serverIgnoringRangeWritesWholeObjectOnce() throws Exception {
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> object(0, data.length - 1, false));
+
+        File file = download();
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        verify(client, times(1)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void unexpectedContentRangeFailsInsteadOfCorruptingFile() {
+        // 第一个分段正常, 其余分段返回从 0 开始的内容
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            long[] range = ((GetObjectRequest) invocation.getArgument(0)).getRange();
+            return object(0, (int) (range[1] - range[0]), true);
+        });
+        File file = directory.resolve("object.bin").toFile();
+
+        StorageException e = assertThrows(StorageException.class,
+                () -> new RangeDownloader(client, executor, PART_SIZE, 1).download("bucket", "object.bin", file));
+
+        assertTrue(e.getMessage().contains("unexpected Content-Range"));
+        assertFalse(file.exists());
+    }
+
+    private File download() throws Exception {
+        File file = directory.resolve("object.bin").toFile();
+        return new RangeDownloader(client, executor, PART_SIZE, 1).download("bucket", "object.bin", file);
+    }
+
+    /**
+     * 返回 [start, end] 范围的内容, ranged 为 false 时模拟服务端忽略 Range
+     */
+    private S3Object object(int start, int end, boolean ranged) {
+        int last = Math.min(end, data.length - 1);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(last - start + 1);
+        metadata.setHeader(Headers.ETAG, "etag");
+        if (ranged) {
+            metadata.setHeader(Headers.CONTENT_RANGE, "bytes " + start + "-" + last + "/" + data.length);
+        }
+        S3Object object = new S3Object();
+        object.setObjectMetadata(metadata);
+        object.setObjectContent(new S3ObjectInputStream(
+                new ByteArrayInputStream(Arrays.copyOfRange(data, start, last + 1)), new HttpGet()));
+        return object;
+    }
+}
@@ -0,0 +1,241 @@
+package com.opcooc.storage.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.opcooc.storage.config.ClientSource;
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.StorageProperty;
+import com.opcooc.storage.exception.StorageException;
+import com.opcooc.storage.utils.IoUtils;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 响应式客户端测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveFileClientTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final int PART_SIZE = (int) MultipartUploader.MIN_PART_SIZE;
+
+    @Mock
+    private AmazonS3 s3;
+
+    private final StorageProperty config = new StorageProperty(BUCKET, "http://127.0.0.1:9000", "ak", "sk", null, null, null);
+
+    private final Scheduler scheduler = Schedulers.newBoundedElastic(4, 100, "test-reactive");
+
+    /**
+     * 按分片号记录上传的分片大小
+     */
+    private final Map<Integer, Integer> uploadedParts = new ConcurrentHashMap<>();
+
+    private AbstractS3Client client;
+
+    private ReactiveFileClient reactiveClient;
+
+    @BeforeEach
+    void setUp() {
+        config.setMultipartPartSize(PART_SIZE);
+        client = new AbstractS3Client(config, ClientSource.S3) {
+            @Override
+            protected AmazonS3 init(StorageProperty config) {
+                return s3;
+            }
+        };
+        reactiveClient = new ReactiveFileClient(client, scheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+        client.shutdown();
+    }
+
+    @Test
+    void smallUploadIsPut() {
+        PutObjectResult result = new PutObjectResult();
+        result.setETag("small");
+        when(s3.putObject(any(PutObjectRequest.class))).thenReturn(result);
+
+        FileBasicInfo info = reactiveClient.uploadObject(BUCKET, "a.txt", Flux.just(ByteBuffer.wrap(new byte[2]), ByteBuffer.wrap(new byte[1])))
+                .block();
+
+        assertEquals(3L, info.getSize());
+        assertEquals("small", info.getEtag());
+        verify(s3, never()).initiateMultipartUpload(any());
+    }
+
+    @Test
+    void largeUploadIsSplitIntoParts() {
+        mockMultipart();
+
+        FileBasicInfo info = reactiveClient.uploadObject(BUCKET, "a.bin", chunks(3, PART_SIZE / 2)).block();
+
+        assertEquals(3L * PART_SIZE / 2, info.getSize());
+        assertEquals(PART_SIZE, uploadedParts.get(1));
+        assertEquals(PART_SIZE / 2, uploadedParts.get(2));
+        verify(s3).completeMultipartUpload(any());
+        verify(s3, never()).abortMultipartUpload(any());
+    }
+
+    @Test
+    void failedPartAbortsUpload() {
+        when(s3.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(s3.uploadPart(any())).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            if (request.getPartNumber() == 2) {
+                throw new AmazonS3Exception("part failed");
+            }
+            return uploaded(request);
+        });
+
+        Flux<ByteBuffer> data = chunks(4, PART_SIZE / 2);
+        assertThrows(StorageException.class, () -> reactiveClient.uploadObject(BUCKET, "a.bin", data).block());
+
+        verify(s3).abortMultipartUpload(any());
+        verify(s3, never()).completeMultipartUpload(any());
+    }
+
+    @Test
+    void sourceErrorAbortsAfterInFlightPartsFinish() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        when(s3.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(s3.uploadPart(any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            events.add("part");
+            return uploaded(invocation.getArgument(0));
+        });
+        doAnswer(invocation -> events.add("abort")).when(s3).abortMultipartUpload(any());
+
+        Flux<ByteBuffer> data = chunks(2, PART_SIZE / 2).concatWith(Flux.error(new IllegalStateException("source failed")));
+        assertThrows(StorageException.class, () -> reactiveClient.uploadObject(BUCKET, "a.bin", data).block());
+
+        // 进行中的分片结束后才中止, 避免中止后分片仍被写入
+        assertEquals(Arrays.asList("part", "abort"), events);
+        verify(s3, never()).completeMultipartUpload(any());
+    }
+
+    @Test
+    void cancelledUploadIsAborted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(s3.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(s3.uploadPart(any())).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(100);
+            return uploaded(invocation.getArgument(0));
+        });
+
+        Disposable upload = reactiveClient.uploadObject(BUCKET, "a.bin", chunks(2, PART_SIZE / 2).concatWith(Flux.never())).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        upload.dispose();
+
+        verify(s3, timeout(5000)).abortMultipartUpload(any());
+        verify(s3, never()).completeMultipartUpload(any());
+    }
+
+    @Test
+    void cancelledDownloadAbortsConnection() {
+        config.setIoBufferSize(2);
+        HttpRequestBase request = mock(HttpRequestBase.class);
+        S3Object object = new S3Object();
+        object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}), request));
+        when(s3.getObject(BUCKET, "a")).thenReturn(object);
+
+        ByteBuffer first = reactiveClient.getObject(BUCKET, "a").blockFirst();
+
+        assertEquals(2, first.remaining());
+        verify(request).abort();
+    }
+
+    @Test
+    void downloadIsReadInChunks() {
+        config.setIoBufferSize(2);
+        S3Object object = new S3Object();
+        object.setObjectContent(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+        when(s3.getObject(BUCKET, "a")).thenReturn(object);
+
+        List<Integer> sizes = reactiveClient.getObject(BUCKET, "a").map(ByteBuffer::remaining).collectList().block();
+
+        assertEquals(Arrays.asList(2, 2, 1), sizes);
+    }
+
+    @Test
+    void listingFollowsContinuationTokens() {
+        when(s3.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page("t1", "a", "b"), page(null, "c"));
+
+        List<String> keys = reactiveClient.listObjects(BUCKET, "", true).map(FileBasicInfo::getKey).collectList().block();
+
+        assertEquals(Arrays.asList("a", "b", "c"), keys);
+        verify(s3, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    private void mockMultipart() {
+        when(s3.initiateMultipartUpload(any())).thenReturn(initiated());
+        when(s3.uploadPart(any())).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            uploadedParts.put(request.getPartNumber(), IoUtils.toByteArray(request.getInputStream()).length);
+            return uploaded(request);
+        });
+        when(s3.completeMultipartUpload(any())).thenReturn(new CompleteMultipartUploadResult());
+    }
+
+    private static Flux<ByteBuffer> chunks(int count, int size) {
+        return Flux.range(0, count).map(i -> ByteBuffer.wrap(new byte[size]));
+    }
+
+    private static InitiateMultipartUploadResult initiated() {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setUploadId("upload-1");
+        return result;
+    }
+
+    private static UploadPartResult uploaded(UploadPartRequest request) {
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("part-" + request.getPartNumber());
+        return result;
+    }
+
+    private static ListObjectsV2Result page(String nextToken, String... keys) {
+        ListObjectsV2Result page = new ListObjectsV2Result();
+        page.getObjectSummaries().addAll(Arrays.stream(keys).map(key -> {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            return summary;
+        }).collect(Collectors.toList()));
+        page.setTruncated(nextToken != null);
+        page.setNextContinuationToken(nextToken);
+        return page;
+    }
+}
@@ -0,0 +1,160 @@
+package com.opcooc.storage.client;
+
+import com.opcooc.storage.config.FileBasicInfo;
+import com.opcooc.storage.config.SingleFlightProperty;
+import com.opcooc.storage.exception.ObjectNotFoundException;
+import com.opcooc.storage.exception.StorageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 并发相同读取合并测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+@ExtendWith(MockitoExtension.class)
+class SingleFlightFileClientTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final int CALLERS = 4;
+
+    @Mock
+    private FileClient delegate;
+
+    private final SingleFlightProperty property = new SingleFlightProperty();
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentReadsShareOneRequest() throws Exception {
+        when(delegate.getByteObject(BUCKET, "a")).thenAnswer(invocation -> {
+            awaitGate();
+            return "v1".getBytes(StandardCharsets.UTF_8);
+        });
+        SingleFlightFileClient client = new SingleFlightFileClient(delegate, property);
+
+        List<Future<byte[]>> results = submit(() -> client.getByteObject(BUCKET, "a"));
+        awaitUntil(() -> client.getSharedCount() == CALLERS - 1);
+        gate.countDown();
+
+        List<byte[]> values = new ArrayList<>();
+        for (Future<byte[]> result : results) {
+            values.add(result.get(5, TimeUnit.SECONDS));
+        }
+        verify(delegate).getByteObject(BUCKET, "a");
+        for (byte[] value : values) {
+            assertEquals("v1", new String(value, StandardCharsets.UTF_8));
+        }
+        // 共享的可变结果返回副本
+        values.get(0)[0] = 'x';
+        assertEquals('v', values.get(1)[0]);
+    }
+
+    @Test
+    void failureIsSharedWithWaitingCallers() throws Exception {
+        when(delegate.getByteObject(BUCKET, "missing")).thenAnswer(invocation -> {
+            awaitGate();
+            throw new ObjectNotFoundException(BUCKET, "missing");
+        });
+        SingleFlightFileClient client = new SingleFlightFileClient(delegate, property);
+
+        List<Future<byte[]>> results = submit(() -> client.getByteObject(BUCKET, "missing"));
+        awaitUntil(() -> client.getSharedCount() == CALLERS - 1);
+        gate.countDown();
+
+        for (Future<byte[]> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof ObjectNotFoundException);
+        }
+        verify(delegate).getByteObject(BUCKET, "missing");
+    }
+
+    @Test
+    void sequentialReadsAreNotCoalesced() {
+        when(delegate.objectExist(BUCKET, "a")).thenReturn(true);
+        SingleFlightFileClient client = new SingleFlightFileClient(delegate, property);
+
+        assertTrue(client.objectExist(BUCKET, "a"));
+        assertTrue(client.objectExist(BUCKET, "a"));
+
+        verify(delegate, times(2)).objectExist(BUCKET, "a");
+        assertEquals(0, client.getSharedCount());
+    }
+
+    @Test
+    void waitingCallerTimesOut() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        when(delegate.getObjectMetadata(BUCKET, "a")).thenAnswer(invocation -> {
+            loading.countDown();
+            awaitGate();
+            return new FileBasicInfo();
+        });
+        property.setMaxWait(50);
+        SingleFlightFileClient client = new SingleFlightFileClient(delegate, property);
+
+        Future<?> leader = executor.submit(() -> client.getObjectMetadata(BUCKET, "a"));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        StorageException e = assertThrows(StorageException.class, () -> client.getObjectMetadata(BUCKET, "a"));
+        assertTrue(e.getMessage().contains("timeout"));
+        gate.countDown();
+        leader.get(5, TimeUnit.SECONDS);
+    }
+
+    private <T> List<Future<T>> submit(Callable<T> call) {
+        List<Future<T>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        return results;
+    }
+
+    /**
+     * 读取请求在返回前等待, 用于制造并发读取
+     */
+    private void awaitGate() throws InterruptedException {
+        assertTrue(gate.await(5, TimeUnit.SECONDS), "gate not opened");
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.opcooc.storage.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 配置测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+class StoragePropertyTest {
+
+    @Test
+    void connectionConstructorKeepsDefaultsForOtherSettings() {
+        StorageProperty property = new StorageProperty("bucket", "http://127.0.0.1:9000", "ak", "sk", "path-style", "cdn.test", "/base");
+
+        assertEquals("bucket", property.getBucketName());
+        assertEquals("http://127.0.0.1:9000", property.getEndPoint());
+        assertEquals("ak", property.getAccessKey());
+        assertEquals("sk", property.getSecretKey());
+        assertEquals("path-style", property.getPathStyle());
+        assertEquals("cdn.test", property.getDomain());
+        assertEquals("/base", property.getBasePath());
+        assertEquals(new StorageProperty().getBucketCacheTtl(), property.getBucketCacheTtl());
+        assertNull(property.getMaxConnections());
+    }
+}
@@ -0,0 +1,84 @@
+package com.opcooc.storage.support;
+
+import org.apache.tika.Tika;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Content-Type 解析测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+class DefaultContentTypeResolverTest {
+
+    private final DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
+
+    @Test
+    void extensionIsResolvedFromTable() {
+        assertEquals("image/png", resolver.resolve("a.png"));
+        assertEquals("image/jpeg", resolver.resolve("dir.v1/photo.JPG"));
+        assertEquals("application/gzip", resolver.resolve("backup.tar.gz"));
+    }
+
+    @Test
+    void tableAgreesWithTika() {
+        Tika tika = new Tika();
+        for (String name : Arrays.asList("a.txt", "a.html", "a.json", "a.pdf", "a.docx", "a.xlsx", "a.zip",
+                "a.jpg", "a.png", "a.gif", "a.svg", "a.mp3", "a.mp4", "a.mov", "a.csv")) {
+            assertEquals(tika.detect(name), resolver.resolve(name), name);
+        }
+    }
+
+    @Test
+    void emptyNameUsesDefault() {
+        assertEquals(ContentTypeResolver.DEFAULT_CONTENT_TYPE, resolver.resolve(null));
+        assertEquals(ContentTypeResolver.DEFAULT_CONTENT_TYPE, resolver.resolve(""));
+    }
+
+    @Test
+    void unknownExtensionFallsBackOncePerExtension() {
+        List<String> fallbacks = new ArrayList<>();
+        DefaultContentTypeResolver counting = new DefaultContentTypeResolver() {
+            @Override
+            protected String fallback(String name) {
+                fallbacks.add(name);
+                return "application/x-test";
+            }
+        };
+
+        assertEquals("application/x-test", counting.resolve("a.unknown"));
+        assertEquals("application/x-test", counting.resolve("dir/b.UNKNOWN"));
+        assertEquals("image/png", counting.resolve("c.png"));
+
+        assertEquals(Arrays.asList("a.unknown"), fallbacks);
+    }
+
+    @Test
+    void fallbackCacheIsBounded() {
+        List<String> fallbacks = new ArrayList<>();
+        DefaultContentTypeResolver counting = new DefaultContentTypeResolver(1) {
+            @Override
+            protected String fallback(String name) {
+                fallbacks.add(name);
+                return DEFAULT_CONTENT_TYPE;
+            }
+        };
+
+        counting.resolve("a.x1");
+        counting.resolve("a.x2");
+        counting.resolve("a.x1");
+
+        assertEquals(Arrays.asList("a.x1", "a.x2", "a.x1"), fallbacks);
+    }
+
+    @Test
+    void fallbackUsesTika() {
+        assertEquals(new Tika().detect("a.py"), resolver.resolve("a.py"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.opcooc.storage.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IO 工具测试
+ *
+ * @author shenqicheng
+ * @since 2020-08-22 10:30
+ */
+class IoUtilsTest {
+
+    @Test
+    void sizedReadReturnsExactContent() throws Exception {
+        byte[] data = {1, 2, 3, 4};
+
+        assertArrayEquals(data, IoUtils.toByteArray(new ChunkedInputStream(data, 1), 4));
+        assertEquals(0, IoUtils.toByteArray(new ByteArrayInputStream(data), 0).length);
+    }
+
+    @Test
+    void sizedReadOfShortStreamFails() {
+        assertThrows(IOException.class, () -> IoUtils.toByteArray(new ByteArrayInputStream(new byte[2]), 3));
+        assertThrows(IllegalArgumentException.class, () -> IoUtils.toByteArray(new ByteArrayInputStream(new byte[2]), -1));
+    }
+
+    @Test
+    void readFillsHeapAndDirectBuffers() throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(4), ByteBuffer.allocateDirect(4)}) {
+            buffer.put((byte) 9);
+
+            assertEquals(3, IoUtils.read(new ChunkedInputStream(data, 2), buffer));
+
+            assertFalse(buffer.hasRemaining());
+            buffer.flip();
+            assertEquals(9, buffer.get());
+            assertEquals(1, buffer.get());
+        }
+    }
+
+    @Test
+    void readStopsAtEndOfStream() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+
+        assertEquals(2, IoUtils.read(new ByteArrayInputStream(new byte[2]), buffer));
+        assertEquals(6, buffer.remaining());
+    }
+
+    @Test
+    void streamIsCopiedToChannel() throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(5L, IoUtils.copy(new ChunkedInputStream(data, 3), Channels.newChannel(output), 2));
+
+        assertArrayEquals(data, output.toByteArray());
+    }
+
+    @Test
+    void channelIsCopiedToChannel() throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(5L, IoUtils.copy(Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(output), 2));
+
+        assertArrayEquals(data, output.toByteArray());
+    }
+
+    @Test
+    void fileChannelIsTransferredFromCurrentPosition(@TempDir Path dir) throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        Path source = Files.write(dir.resolve("source"), data);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (FileChannel channel = FileChannel.open(source)) {
+            channel.position(1);
+            assertEquals(4L, IoUtils.copy(channel, Channels.newChannel(output), 2));
+            assertEquals(5L, channel.position());
+        }
+
+        assertArrayEquals(new byte[]{2, 3, 4, 5}, output.toByteArray());
+    }
+
+    @Test
+    void channelsAreTransferredToAndFromFiles(@TempDir Path dir) throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        Path source = Files.write(dir.resolve("source"), data);
+        File copy = dir.resolve("copy").toFile();
+        File partial = dir.resolve("partial").toFile();
+
+        try (FileChannel channel = FileChannel.open(source)) {
+            assertEquals(5L, IoUtils.transferTo(channel, copy));
+        }
+        assertEquals(3L, IoUtils.transferFrom(Channels.newChannel(new ByteArrayInputStream(data)), partial, 3));
+
+        assertArrayEquals(data, Files.readAllBytes(copy.toPath()));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(partial.toPath()));
+    }
+
+    /**
+     * 每次最多返回 chunk 字节的输入流, 模拟网络流的短读
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final ByteArrayInputStream in;
+
+        private final int chunk;
+
+        private ChunkedInputStream(byte[] data, int chunk) {
+            this.in = new ByteArrayInputStream(data);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, chunk));
+        }
+    }
+}